@@ -22,6 +22,8 @@ public class ClusterEngine {
         clusterStrategyMap.put(ClusterStrategyEnum.Polling, new PollingClusterStrategyImpl());
         clusterStrategyMap.put(ClusterStrategyEnum.WeightPolling, new WeightPollingClusterStrategyImpl());
         clusterStrategyMap.put(ClusterStrategyEnum.Hash, new HashClusterStrategyImpl());
+        clusterStrategyMap.put(ClusterStrategyEnum.LeastActive, new LeastActiveClusterStrategyImpl());
+        clusterStrategyMap.put(ClusterStrategyEnum.P2C, new P2CClusterStrategyImpl());
     }
 
 
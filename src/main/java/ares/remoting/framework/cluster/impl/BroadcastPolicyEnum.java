@@ -0,0 +1,43 @@
+package ares.remoting.framework.cluster.impl;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * 广播调用部分失败时的处理策略
+ *
+ * @version $Id$
+ */
+public enum BroadcastPolicyEnum {
+
+    //任意一个服务提供者失败或超时,整体失败
+    AllOrFail("AllOrFail"),
+    //合并截止时间内成功返回的结果,全部失败时才整体失败
+    Partial("Partial");
+
+    private BroadcastPolicyEnum(String code) {
+        this.code = code;
+    }
+
+
+    public static BroadcastPolicyEnum queryByCode(String code) {
+        if (StringUtils.isBlank(code)) {
+            return null;
+        }
+        for (BroadcastPolicyEnum policy : values()) {
+            if (StringUtils.equals(code, policy.getCode())) {
+                return policy;
+            }
+        }
+        return null;
+    }
+
+    private String code;
+
+    public String getCode() {
+        return code;
+    }
+
+    public void setCode(String code) {
+        this.code = code;
+    }
+}
@@ -0,0 +1,47 @@
+package ares.remoting.framework.cluster.impl;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * 集群调用模式
+ *
+ * @version $Id$
+ */
+public enum ClusterModeEnum {
+
+    //失败自动切换到其他服务提供者重试(适用于幂等的读操作)
+    Failover("Failover"),
+    //快速失败,只发起一次调用
+    Failfast("Failfast"),
+    //并行调用多个服务提供者,取第一个成功的结果
+    Forking("Forking"),
+    //广播调用所有服务提供者,合并各自的结果
+    Broadcast("Broadcast");
+
+    private ClusterModeEnum(String code) {
+        this.code = code;
+    }
+
+
+    public static ClusterModeEnum queryByCode(String code) {
+        if (StringUtils.isBlank(code)) {
+            return null;
+        }
+        for (ClusterModeEnum mode : values()) {
+            if (StringUtils.equals(code, mode.getCode())) {
+                return mode;
+            }
+        }
+        return null;
+    }
+
+    private String code;
+
+    public String getCode() {
+        return code;
+    }
+
+    public void setCode(String code) {
+        this.code = code;
+    }
+}
@@ -17,7 +17,11 @@ public enum ClusterStrategyEnum {
     //权重轮询算法
     WeightPolling("WeightPolling"),
     //源地址hash算法
-    Hash("Hash");
+    Hash("Hash"),
+    //最少活跃调用数算法
+    LeastActive("LeastActive"),
+    //P2C(Power of Two Choices)算法
+    P2C("P2C");
 
     private ClusterStrategyEnum(String code) {
         this.code = code;
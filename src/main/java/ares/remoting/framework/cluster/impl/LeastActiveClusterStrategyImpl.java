@@ -0,0 +1,53 @@
+package ares.remoting.framework.cluster.impl;
+
+import ares.remoting.framework.cluster.ClusterStrategy;
+import ares.remoting.framework.cluster.status.EndpointStatus;
+import ares.remoting.framework.model.ProviderService;
+import com.google.common.collect.Lists;
+import org.apache.commons.lang3.RandomUtils;
+
+import java.util.List;
+
+/**
+ * 软负载最少活跃调用数算法实现
+ *
+ * 选取在途请求数最少的服务提供者，在途数相同时按权重随机，慢节点的请求堆积后自然分到更少的流量。
+ *
+ * @version $Id$
+ */
+public class LeastActiveClusterStrategyImpl implements ClusterStrategy {
+
+    @Override
+    public ProviderService select(List<ProviderService> providerServices) {
+        int leastActive = Integer.MAX_VALUE;
+        //在途请求数最少的服务提供者列表
+        List<ProviderService> leastActiveList = Lists.newArrayList();
+        int totalWeight = 0;
+        for (ProviderService provider : providerServices) {
+            int active = EndpointStatus.of(provider).getActive();
+            if (active < leastActive) {
+                leastActive = active;
+                leastActiveList.clear();
+                totalWeight = 0;
+            }
+            if (active == leastActive) {
+                leastActiveList.add(provider);
+                totalWeight += Math.max(provider.getWeight(), 1);
+            }
+        }
+
+        if (leastActiveList.size() == 1) {
+            return leastActiveList.get(0);
+        }
+
+        //在途请求数相同,按权重随机选取
+        int offset = RandomUtils.nextInt(0, totalWeight);
+        for (ProviderService provider : leastActiveList) {
+            offset -= Math.max(provider.getWeight(), 1);
+            if (offset < 0) {
+                return provider;
+            }
+        }
+        return leastActiveList.get(0);
+    }
+}
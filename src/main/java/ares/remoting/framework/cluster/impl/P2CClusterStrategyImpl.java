@@ -0,0 +1,39 @@
+package ares.remoting.framework.cluster.impl;
+
+import ares.remoting.framework.cluster.ClusterStrategy;
+import ares.remoting.framework.cluster.status.EndpointStatus;
+import ares.remoting.framework.model.ProviderService;
+import org.apache.commons.lang3.RandomUtils;
+
+import java.util.List;
+
+/**
+ * 软负载P2C(Power of Two Choices)算法实现
+ *
+ * 随机选取两个服务提供者，比较(在途请求数 * EWMA耗时)打分，选取分数较低者。
+ *
+ * @version $Id$
+ */
+public class P2CClusterStrategyImpl implements ClusterStrategy {
+
+    @Override
+    public ProviderService select(List<ProviderService> providerServices) {
+        int size = providerServices.size();
+        if (size == 1) {
+            return providerServices.get(0);
+        }
+
+        //随机选取两个不同的服务提供者
+        int first = RandomUtils.nextInt(0, size);
+        int second = RandomUtils.nextInt(0, size - 1);
+        if (second >= first) {
+            second++;
+        }
+
+        ProviderService firstProvider = providerServices.get(first);
+        ProviderService secondProvider = providerServices.get(second);
+        double firstScore = EndpointStatus.of(firstProvider).score() / Math.max(firstProvider.getWeight(), 1);
+        double secondScore = EndpointStatus.of(secondProvider).score() / Math.max(secondProvider.getWeight(), 1);
+        return firstScore <= secondScore ? firstProvider : secondProvider;
+    }
+}
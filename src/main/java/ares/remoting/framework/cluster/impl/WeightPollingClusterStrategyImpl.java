@@ -33,7 +33,7 @@ public class WeightPollingClusterStrategyImpl implements ClusterStrategy {
             for (ProviderService provider : providerServices) {
                 int weight = provider.getWeight();
                 for (int i = 0; i < weight; i++) {
-                    providerList.add(provider.copy());
+                    providerList.add(provider);
                 }
             }
             //若计数大于服务提供者个数,将计数器归0
@@ -23,7 +23,7 @@ public class WeightRandomClusterStrategyImpl implements ClusterStrategy {
         for (ProviderService provider : providerServices) {
             int weight = provider.getWeight();
             for (int i = 0; i < weight; i++) {
-                providerList.add(provider.copy());
+                providerList.add(provider);
             }
         }
 
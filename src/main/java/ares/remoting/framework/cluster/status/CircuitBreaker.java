@@ -0,0 +1,183 @@
+package ares.remoting.framework.cluster.status;
+
+import ares.remoting.framework.helper.PropertyConfigeHelper;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 服务提供者端点熔断器(无锁，状态CAS切换)。
+ *
+ * CLOSED：正常放行，按固定时间窗口统计失败率与慢调用率，超过阈值切换到OPEN；
+ * OPEN：拒绝调用，路由时跳过该端点，熔断时长过后允许一个探测请求并切换到HALF_OPEN；
+ * HALF_OPEN：探测请求成功则恢复CLOSED，失败则重新OPEN；只有持有探测许可的调用能结束HALF_OPEN，
+ * 熔断前发出、之后才结束的调用不参与统计。探测请求没有得到可判定成败的结果(被放弃、服务端过载拒绝)时
+ * 交还探测许可回到OPEN，下一个调用可以立即重新探测。
+ *
+ * @version $Id$
+ */
+public class CircuitBreaker {
+
+    private static final int CLOSED = 0;
+    private static final int OPEN = 1;
+    private static final int HALF_OPEN = 2;
+
+    /** 未获得许可 */
+    public static final long DENIED = -1L;
+    /** 普通调用许可，大于该值的许可为探测许可 */
+    public static final long PERMITTED = 0L;
+
+    /** 统计窗口(毫秒) */
+    private final long window;
+    /** 窗口内最少调用数，不足时不熔断 */
+    private final int minRequests;
+    /** 失败率阈值 */
+    private final double errorRate;
+    /** 慢调用耗时阈值(毫秒) */
+    private final long slowCallThreshold;
+    /** 慢调用率阈值 */
+    private final double slowCallRate;
+    /** 熔断时长(毫秒) */
+    private final long openDuration;
+
+    private final AtomicInteger state = new AtomicInteger(CLOSED);
+    /** 熔断截止时间 */
+    private volatile long openUntil = 0L;
+    /** 探测许可序号 */
+    private final AtomicLong probeSeq = new AtomicLong(PERMITTED);
+    /** 当前HALF_OPEN状态的探测许可 */
+    private volatile long probe = DENIED;
+
+    /** 当前统计窗口起始时间 */
+    private final AtomicLong windowStart = new AtomicLong(System.currentTimeMillis());
+    private final AtomicInteger totalCount = new AtomicInteger(0);
+    private final AtomicInteger failureCount = new AtomicInteger(0);
+    private final AtomicInteger slowCount = new AtomicInteger(0);
+
+    /**
+     * 按配置生成熔断器
+     */
+    public CircuitBreaker() {
+        this(PropertyConfigeHelper.getClientBreakerWindow(), PropertyConfigeHelper.getClientBreakerMinRequests(),
+                PropertyConfigeHelper.getClientBreakerErrorRate(), PropertyConfigeHelper.getClientBreakerSlowCallThreshold(),
+                PropertyConfigeHelper.getClientBreakerSlowCallRate(), PropertyConfigeHelper.getClientBreakerOpenDuration());
+    }
+
+    CircuitBreaker(long window, int minRequests, double errorRate, long slowCallThreshold, double slowCallRate, long openDuration) {
+        this.window = window;
+        this.minRequests = minRequests;
+        this.errorRate = errorRate;
+        this.slowCallThreshold = slowCallThreshold;
+        this.slowCallRate = slowCallRate;
+        this.openDuration = openDuration;
+    }
+
+    /**
+     * 路由时判断端点是否可选(只读，不改变状态)
+     *
+     * @return
+     */
+    public boolean isAvailable() {
+        int current = state.get();
+        if (current == CLOSED) {
+            return true;
+        }
+        return current == OPEN && System.currentTimeMillis() >= openUntil;
+    }
+
+    /**
+     * 发起调用前获取许可，OPEN状态熔断时长已过时只有一个调用能拿到探测许可
+     *
+     * @return {@link #DENIED}表示拒绝，{@link #PERMITTED}表示普通许可，其他值为探测许可，调用结束时原样传给{@link #record}
+     */
+    public long tryAcquire() {
+        int current = state.get();
+        if (current == CLOSED) {
+            return PERMITTED;
+        }
+        if (current == OPEN && System.currentTimeMillis() >= openUntil && state.compareAndSet(OPEN, HALF_OPEN)) {
+            long token = probeSeq.incrementAndGet();
+            probe = token;
+            return token;
+        }
+        return DENIED;
+    }
+
+    /**
+     * 记录一次调用结果
+     *
+     * @param elapsed 调用耗时(毫秒)
+     * @param success 调用是否成功
+     * @param permit  发起调用时获取的许可
+     */
+    public void record(long elapsed, boolean success, long permit) {
+        if (permit > PERMITTED) {
+            //探测调用:只有当前的探测许可能结束HALF_OPEN
+            if (permit != probe || state.get() != HALF_OPEN) {
+                return;
+            }
+            if (success) {
+                resetWindow(System.currentTimeMillis());
+                state.compareAndSet(HALF_OPEN, CLOSED);
+            } else {
+                open();
+            }
+            return;
+        }
+        if (state.get() != CLOSED) {
+            //熔断前发出的调用不影响熔断状态
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        long start = windowStart.get();
+        if (now - start >= window && windowStart.compareAndSet(start, now)) {
+            resetCounters();
+        }
+
+        int total = totalCount.incrementAndGet();
+        int failures = success ? failureCount.get() : failureCount.incrementAndGet();
+        int slows = elapsed >= slowCallThreshold ? slowCount.incrementAndGet() : slowCount.get();
+        if (total < minRequests) {
+            return;
+        }
+        if (failures >= total * errorRate || slows >= total * slowCallRate) {
+            //先写熔断截止时间再发布OPEN状态,并发的tryAcquire不会读到过期的截止时间
+            openUntil = now + openDuration;
+            state.compareAndSet(CLOSED, OPEN);
+        }
+    }
+
+    /**
+     * 释放许可但不记录调用结果(调用被放弃或服务端过载拒绝，无法判定端点是否恢复)
+     *
+     * @param permit 发起调用时获取的许可
+     */
+    public void release(long permit) {
+        if (permit > PERMITTED && permit == probe && state.get() == HALF_OPEN) {
+            //交还探测许可,熔断截止时间已过,下一个调用即可重新探测
+            probe = DENIED;
+            state.compareAndSet(HALF_OPEN, OPEN);
+        }
+    }
+
+    private void open() {
+        openUntil = System.currentTimeMillis() + openDuration;
+        state.set(OPEN);
+    }
+
+    private void resetWindow(long now) {
+        windowStart.set(now);
+        resetCounters();
+    }
+
+    private void resetCounters() {
+        totalCount.set(0);
+        failureCount.set(0);
+        slowCount.set(0);
+    }
+
+    public boolean isOpen() {
+        return state.get() != CLOSED;
+    }
+}
@@ -0,0 +1,188 @@
+package ares.remoting.framework.cluster.status;
+
+import ares.remoting.framework.helper.PropertyConfigeHelper;
+import ares.remoting.framework.model.ProviderService;
+import com.google.common.collect.Maps;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 服务提供者端点(IP+端口)的实时调用状态：在途请求数 + 调用耗时的指数加权移动平均(EWMA)。
+ *
+ * 状态由消费端调用链路采集，供`LeastActive`、`P2C`等动态负载均衡算法打分使用；
+ * 同时承担端点的在途请求数上限、过载惩罚与熔断，不可用的端点在路由时被跳过。服务提供者从注册中心下线后移除其状态。
+ *
+ * @version $Id$
+ */
+public class EndpointStatus {
+
+    /** 端点状态Map，key为`ip:port` */
+    private static final ConcurrentMap<String, EndpointStatus> endpointStatusMap = Maps.newConcurrentMap();
+
+    /** EWMA平滑系数，越大越偏向最新的耗时样本 */
+    private static final double EWMA_ALPHA = 0.3D;
+    /** 无新样本时EWMA向0衰减的时间窗口(毫秒)，保证慢节点恢复后还能重新分到流量 */
+    private static final double EWMA_DECAY_WINDOW = 10000D;
+    /** 服务端返回过载后，该端点被路由避开的时长(毫秒) */
+    private static final long OVERLOAD_PENALTY_WINDOW = 1000L;
+    /** 端点最大在途请求数 */
+    private static final int MAX_INFLIGHT = PropertyConfigeHelper.getClientEndpointMaxInflight();
+
+    /** 当前在途(已发出未返回)的请求数 */
+    private final AtomicInteger active = new AtomicInteger(0);
+    /** EWMA耗时(毫秒)，以double的bit形式存放，CAS更新 */
+    private final AtomicLong ewmaLatencyBits = new AtomicLong(Double.doubleToLongBits(0D));
+    /** EWMA最后一次更新时间 */
+    private volatile long lastUpdateTime = System.currentTimeMillis();
+    /** 过载惩罚截止时间 */
+    private volatile long overloadUntil = 0L;
+    /** 端点熔断器 */
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+    private EndpointStatus() {
+    }
+
+    public static EndpointStatus of(ProviderService providerService) {
+        return of(providerService.getServerIp(), providerService.getServerPort());
+    }
+
+    public static EndpointStatus of(String serverIp, int serverPort) {
+        String key = serverIp + ":" + serverPort;
+        EndpointStatus status = endpointStatusMap.get(key);
+        if (status == null) {
+            EndpointStatus newStatus = new EndpointStatus();
+            status = endpointStatusMap.putIfAbsent(key, newStatus);
+            if (status == null) {
+                status = newStatus;
+            }
+        }
+        return status;
+    }
+
+    /**
+     * 服务提供者下线后移除端点状态，避免已下线的端点一直占用内存
+     *
+     * @param serverIp
+     * @param serverPort
+     */
+    public static void remove(String serverIp, int serverPort) {
+        endpointStatusMap.remove(serverIp + ":" + serverPort);
+    }
+
+    /**
+     * 路由时判断端点是否可选：未熔断、不在过载惩罚期且在途请求数未达上限
+     *
+     * @return
+     */
+    public boolean isAvailable() {
+        return circuitBreaker.isAvailable() && !isOverloaded() && active.get() < MAX_INFLIGHT;
+    }
+
+    /**
+     * 调用发起前占用一个在途名额并获取熔断许可，失败时不发起调用
+     *
+     * @return 熔断许可，{@link CircuitBreaker#DENIED}表示不能发起调用
+     */
+    public long tryBeginInvoke() {
+        while (true) {
+            int current = active.get();
+            if (current >= MAX_INFLIGHT) {
+                return CircuitBreaker.DENIED;
+            }
+            if (active.compareAndSet(current, current + 1)) {
+                break;
+            }
+        }
+        long permit = circuitBreaker.tryAcquire();
+        if (permit == CircuitBreaker.DENIED) {
+            active.decrementAndGet();
+        }
+        return permit;
+    }
+
+    /**
+     * 调用结束后(无论成功、失败还是超时)计数并记录本次耗时
+     *
+     * @param elapsed 本次调用耗时(毫秒)
+     * @param success 本次调用是否成功，供熔断统计
+     * @param permit  发起调用时获取的熔断许可
+     */
+    public void endInvoke(long elapsed, boolean success, long permit) {
+        active.decrementAndGet();
+        circuitBreaker.record(elapsed, success, permit);
+        recordLatency(elapsed);
+    }
+
+    /**
+     * 调用没有得到可判定成败的结果(被放弃的并行调用、服务端过载拒绝)时结束调用：
+     * 计数并记录耗时，交还熔断许可但不计入熔断统计
+     *
+     * @param elapsed 本次调用耗时(毫秒)
+     * @param permit  发起调用时获取的熔断许可
+     */
+    public void releaseInvoke(long elapsed, long permit) {
+        active.decrementAndGet();
+        circuitBreaker.release(permit);
+        recordLatency(elapsed);
+    }
+
+    private void recordLatency(long elapsed) {
+        long now = System.currentTimeMillis();
+        while (true) {
+            long currentBits = ewmaLatencyBits.get();
+            double current = decay(Double.longBitsToDouble(currentBits), now);
+            double updated = current == 0D ? elapsed : current + EWMA_ALPHA * (elapsed - current);
+            if (ewmaLatencyBits.compareAndSet(currentBits, Double.doubleToLongBits(updated))) {
+                break;
+            }
+        }
+        lastUpdateTime = now;
+    }
+
+    /**
+     * 服务端返回过载响应，在惩罚窗口内路由避开该端点
+     */
+    public void markOverload() {
+        overloadUntil = System.currentTimeMillis() + OVERLOAD_PENALTY_WINDOW;
+    }
+
+    public boolean isOverloaded() {
+        return overloadUntil > System.currentTimeMillis();
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public int getActive() {
+        return active.get();
+    }
+
+    /**
+     * 获取(按时间衰减后的)EWMA耗时
+     *
+     * @return
+     */
+    public double getEwmaLatency() {
+        return decay(Double.longBitsToDouble(ewmaLatencyBits.get()), System.currentTimeMillis());
+    }
+
+    /**
+     * 端点负载打分，越小越优：(在途请求数+1) * (EWMA耗时+1)
+     *
+     * @return
+     */
+    public double score() {
+        return (getActive() + 1) * (getEwmaLatency() + 1);
+    }
+
+    private double decay(double latency, long now) {
+        long idle = now - lastUpdateTime;
+        if (idle <= 0) {
+            return latency;
+        }
+        return latency * Math.exp(-idle / EWMA_DECAY_WINDOW);
+    }
+}
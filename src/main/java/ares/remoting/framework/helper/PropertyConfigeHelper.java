@@ -30,6 +30,80 @@ public class PropertyConfigeHelper {
     private static SerializeType serializeType;
     //每个服务端提供者的Netty的连接数
     private static int channelConnectSize;
+    //建立单个Netty连接的超时时间(毫秒)
+    private static int channelConnectTimeout;
+    //通道池预热时同时进行中的最大连接数
+    private static int channelConnectParallelism;
+    //消费端启动时等待通道池预热的最长时间(毫秒)
+    private static int channelWarmupTimeout;
+    //心跳间隔(毫秒)
+    private static int heartbeatInterval;
+    //连续未收到心跳响应的最大次数,超过后关闭连接
+    private static int heartbeatMaxMiss;
+    //服务端业务线程池线程数
+    private static int serverBusinessThreads;
+    //服务端业务线程池队列长度
+    private static int serverBusinessQueueSize;
+    //服务端自适应限流最大限额
+    private static int serverLimitMaxLimit;
+    //服务端自适应限流耗时容忍系数
+    private static double serverLimitRttTolerance;
+    //消费端单个服务提供者端点的最大在途请求数
+    private static int clientEndpointMaxInflight;
+    //消费端熔断统计窗口(毫秒)
+    private static long clientBreakerWindow;
+    //消费端熔断窗口内最少调用数
+    private static int clientBreakerMinRequests;
+    //消费端熔断失败率阈值
+    private static double clientBreakerErrorRate;
+    //消费端熔断慢调用耗时阈值(毫秒)
+    private static long clientBreakerSlowCallThreshold;
+    //消费端熔断慢调用率阈值
+    private static double clientBreakerSlowCallRate;
+    //消费端熔断时长(毫秒)
+    private static long clientBreakerOpenDuration;
+    //消费端重试预算:每次首发调用存入的令牌数
+    private static double clientRetryBudgetRatio;
+    //消费端重试预算:令牌桶容量
+    private static int clientRetryBudgetMaxTokens;
+    //消费端对冲请求的延迟分位(0-100)
+    private static double clientHedgingPercentile;
+    //消费端对冲预算:每次首发调用存入的令牌数
+    private static double clientHedgingBudgetRatio;
+    //消费端对冲预算:令牌桶容量
+    private static int clientHedgingBudgetMaxTokens;
+    //消费端单个通道每批写入的最大请求数
+    private static int clientWriteBatchSize;
+    //服务端合并flush时最多积累的flush次数
+    private static int serverFlushConsolidationLimit;
+    //服务端批量调用的并行度
+    private static int serverBatchParallelism;
+    //消费端批量调用单个请求最多携带的参数组数,超过后拆分到多个服务提供者
+    private static int clientBatchSplitSize;
+    //流式调用每个分块的元素数
+    private static int serverStreamChunkSize;
+    //流式调用空闲(未收到授信)超时时间(毫秒),超过后服务端丢弃该流
+    private static int serverStreamIdleTimeout;
+    //流式调用消费端授信窗口(分块数)
+    private static int clientStreamWindow;
+    //上传调用每个参数分块的元素数
+    private static int clientUploadChunkSize;
+    //上传调用服务端授信窗口(分块数),即每个上传在服务端最多缓存的分块数
+    private static int serverUploadWindow;
+    //服务端接收的最大请求报文长度(字节)
+    private static int serverMaxFrameLength;
+    //消费端接收的最大响应报文长度(字节)
+    private static int clientMaxFrameLength;
+    //消费端调用结果缓存有效期(毫秒)
+    private static int clientResultCacheTtl;
+    //消费端调用结果缓存最大条目数(每个服务引用)
+    private static int clientResultCacheSize;
+    //服务端Unix域套接字目录,为空时不监听
+    private static String serverUdsDir;
+    //消费端是否优先经由Unix域套接字连接同一主机上的服务提供者
+    private static boolean clientPreferUds;
+    //消费端注册中心本地快照目录
+    private static String registrySnapshotDir;
 
 
     /**
@@ -48,6 +122,43 @@ public class PropertyConfigeHelper {
             zkSessionTimeout = Integer.parseInt(properties.getProperty("zk_sessionTimeout", "500"));
             zkConnectionTimeout = Integer.parseInt(properties.getProperty("zk_connectionTimeout", "500"));
             channelConnectSize = Integer.parseInt(properties.getProperty("channel_connect_size", "10"));
+            channelConnectTimeout = Integer.parseInt(properties.getProperty("channel_connect_timeout", "3000"));
+            channelConnectParallelism = Integer.parseInt(properties.getProperty("channel_connect_parallelism", "64"));
+            channelWarmupTimeout = Integer.parseInt(properties.getProperty("channel_warmup_timeout", "5000"));
+            heartbeatInterval = Integer.parseInt(properties.getProperty("heartbeat_interval", "10000"));
+            heartbeatMaxMiss = Integer.parseInt(properties.getProperty("heartbeat_max_miss", "3"));
+            serverBusinessThreads = Integer.parseInt(properties.getProperty("server_business_threads", "200"));
+            serverBusinessQueueSize = Integer.parseInt(properties.getProperty("server_business_queue_size", "10000"));
+            serverLimitMaxLimit = Integer.parseInt(properties.getProperty("server_limit_max_limit", "1000"));
+            serverLimitRttTolerance = Double.parseDouble(properties.getProperty("server_limit_rtt_tolerance", "2.0"));
+            clientEndpointMaxInflight = Integer.parseInt(properties.getProperty("client_endpoint_max_inflight", "200"));
+            clientBreakerWindow = Long.parseLong(properties.getProperty("client_breaker_window", "10000"));
+            clientBreakerMinRequests = Integer.parseInt(properties.getProperty("client_breaker_min_requests", "20"));
+            clientBreakerErrorRate = Double.parseDouble(properties.getProperty("client_breaker_error_rate", "0.5"));
+            clientBreakerSlowCallThreshold = Long.parseLong(properties.getProperty("client_breaker_slow_call_threshold", "1000"));
+            clientBreakerSlowCallRate = Double.parseDouble(properties.getProperty("client_breaker_slow_call_rate", "0.8"));
+            clientBreakerOpenDuration = Long.parseLong(properties.getProperty("client_breaker_open_duration", "5000"));
+            clientRetryBudgetRatio = Double.parseDouble(properties.getProperty("client_retry_budget_ratio", "0.1"));
+            clientRetryBudgetMaxTokens = Integer.parseInt(properties.getProperty("client_retry_budget_max_tokens", "10"));
+            clientHedgingPercentile = Double.parseDouble(properties.getProperty("client_hedging_percentile", "95"));
+            clientHedgingBudgetRatio = Double.parseDouble(properties.getProperty("client_hedging_budget_ratio", "0.1"));
+            clientHedgingBudgetMaxTokens = Integer.parseInt(properties.getProperty("client_hedging_budget_max_tokens", "10"));
+            clientWriteBatchSize = Integer.parseInt(properties.getProperty("client_write_batch_size", "128"));
+            serverFlushConsolidationLimit = Integer.parseInt(properties.getProperty("server_flush_consolidation_limit", "256"));
+            serverBatchParallelism = Integer.parseInt(properties.getProperty("server_batch_parallelism", "1"));
+            clientBatchSplitSize = Integer.parseInt(properties.getProperty("client_batch_split_size", "500"));
+            serverStreamChunkSize = Integer.parseInt(properties.getProperty("server_stream_chunk_size", "256"));
+            serverStreamIdleTimeout = Integer.parseInt(properties.getProperty("server_stream_idle_timeout", "60000"));
+            clientStreamWindow = Integer.parseInt(properties.getProperty("client_stream_window", "8"));
+            clientUploadChunkSize = Integer.parseInt(properties.getProperty("client_upload_chunk_size", "256"));
+            serverUploadWindow = Integer.parseInt(properties.getProperty("server_upload_window", "8"));
+            serverMaxFrameLength = Integer.parseInt(properties.getProperty("server_max_frame_length", "16777216"));
+            clientMaxFrameLength = Integer.parseInt(properties.getProperty("client_max_frame_length", "67108864"));
+            clientResultCacheTtl = Integer.parseInt(properties.getProperty("client_result_cache_ttl", "5000"));
+            clientResultCacheSize = Integer.parseInt(properties.getProperty("client_result_cache_size", "10000"));
+            serverUdsDir = properties.getProperty("server_uds_dir", "");
+            clientPreferUds = Boolean.parseBoolean(properties.getProperty("client_prefer_uds", "true"));
+            registrySnapshotDir = properties.getProperty("registry_snapshot_dir", System.getProperty("user.home") + "/.ares");
             String seriType = properties.getProperty("serialize_type");
             serializeType = SerializeType.queryByType(seriType);
             if (serializeType == null) {
@@ -85,6 +196,154 @@ public class PropertyConfigeHelper {
         return channelConnectSize;
     }
 
+    public static int getChannelConnectTimeout() {
+        return channelConnectTimeout;
+    }
+
+    public static int getChannelConnectParallelism() {
+        return channelConnectParallelism;
+    }
+
+    public static int getChannelWarmupTimeout() {
+        return channelWarmupTimeout;
+    }
+
+    public static int getHeartbeatInterval() {
+        return heartbeatInterval;
+    }
+
+    public static int getHeartbeatMaxMiss() {
+        return heartbeatMaxMiss;
+    }
+
+    public static int getServerBusinessThreads() {
+        return serverBusinessThreads;
+    }
+
+    public static int getServerBusinessQueueSize() {
+        return serverBusinessQueueSize;
+    }
+
+    public static int getServerLimitMaxLimit() {
+        return serverLimitMaxLimit;
+    }
+
+    public static double getServerLimitRttTolerance() {
+        return serverLimitRttTolerance;
+    }
+
+    public static int getClientEndpointMaxInflight() {
+        return clientEndpointMaxInflight;
+    }
+
+    public static long getClientBreakerWindow() {
+        return clientBreakerWindow;
+    }
+
+    public static int getClientBreakerMinRequests() {
+        return clientBreakerMinRequests;
+    }
+
+    public static double getClientBreakerErrorRate() {
+        return clientBreakerErrorRate;
+    }
+
+    public static long getClientBreakerSlowCallThreshold() {
+        return clientBreakerSlowCallThreshold;
+    }
+
+    public static double getClientBreakerSlowCallRate() {
+        return clientBreakerSlowCallRate;
+    }
+
+    public static long getClientBreakerOpenDuration() {
+        return clientBreakerOpenDuration;
+    }
+
+    public static double getClientRetryBudgetRatio() {
+        return clientRetryBudgetRatio;
+    }
+
+    public static int getClientRetryBudgetMaxTokens() {
+        return clientRetryBudgetMaxTokens;
+    }
+
+    public static double getClientHedgingPercentile() {
+        return clientHedgingPercentile;
+    }
+
+    public static double getClientHedgingBudgetRatio() {
+        return clientHedgingBudgetRatio;
+    }
+
+    public static int getClientHedgingBudgetMaxTokens() {
+        return clientHedgingBudgetMaxTokens;
+    }
+
+    public static int getClientWriteBatchSize() {
+        return clientWriteBatchSize;
+    }
+
+    public static int getServerFlushConsolidationLimit() {
+        return serverFlushConsolidationLimit;
+    }
+
+    public static int getServerBatchParallelism() {
+        return serverBatchParallelism;
+    }
+
+    public static int getClientBatchSplitSize() {
+        return clientBatchSplitSize;
+    }
+
+    public static int getServerStreamChunkSize() {
+        return serverStreamChunkSize;
+    }
+
+    public static int getServerStreamIdleTimeout() {
+        return serverStreamIdleTimeout;
+    }
+
+    public static int getClientStreamWindow() {
+        return clientStreamWindow;
+    }
+
+    public static int getClientUploadChunkSize() {
+        return clientUploadChunkSize;
+    }
+
+    public static int getServerUploadWindow() {
+        return serverUploadWindow;
+    }
+
+    public static int getServerMaxFrameLength() {
+        return serverMaxFrameLength;
+    }
+
+    public static int getClientMaxFrameLength() {
+        return clientMaxFrameLength;
+    }
+
+    public static int getClientResultCacheTtl() {
+        return clientResultCacheTtl;
+    }
+
+    public static int getClientResultCacheSize() {
+        return clientResultCacheSize;
+    }
+
+    public static String getServerUdsDir() {
+        return serverUdsDir;
+    }
+
+    public static boolean isClientPreferUds() {
+        return clientPreferUds;
+    }
+
+    public static String getRegistrySnapshotDir() {
+        return registrySnapshotDir;
+    }
+
     public static SerializeType getSerializeType() {
         return serializeType;
     }
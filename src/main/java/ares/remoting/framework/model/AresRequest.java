@@ -1,6 +1,7 @@
 package ares.remoting.framework.model;
 
 import java.io.Serializable;
+import java.util.List;
 
 /**
  * @author liyebing created on 17/2/10.
@@ -20,7 +21,34 @@ public class AresRequest implements Serializable {
     private String appName;
     //消费请求超时时长
     private long invokeTimeout;
+    //发送时剩余的超时预算(毫秒),已扣除消费端排队、获取通道等耗时
+    private long remainingTimeout;
+    //消息类型
+    private MessageTypeEnum messageType = MessageTypeEnum.Normal;
+    //是否单向调用(消费端不等待结果,服务端不回写响应)
+    private boolean oneway;
+    //批量调用的多组参数
+    private List<Object[]> batchArgs;
+    //流式调用授信的分块数(流式调用请求中为初始窗口,授信消息中为新增的授信)
+    private int streamCredit;
+    //上传调用中分块上传的参数下标
+    private int uploadArgIndex;
+
+
+    /**
+     * 生成心跳请求
+     *
+     * @return
+     */
+    public static AresRequest heartbeat() {
+        AresRequest request = new AresRequest();
+        request.setMessageType(MessageTypeEnum.Heartbeat);
+        return request;
+    }
 
+    public boolean isHeartbeat() {
+        return messageType == MessageTypeEnum.Heartbeat;
+    }
 
     public String getUniqueKey() {
         return uniqueKey;
@@ -69,4 +97,64 @@ public class AresRequest implements Serializable {
     public void setInvokeTimeout(long invokeTimeout) {
         this.invokeTimeout = invokeTimeout;
     }
+
+    public long getRemainingTimeout() {
+        return remainingTimeout;
+    }
+
+    public void setRemainingTimeout(long remainingTimeout) {
+        this.remainingTimeout = remainingTimeout;
+    }
+
+    public boolean isBatch() {
+        return messageType == MessageTypeEnum.Batch;
+    }
+
+    public boolean isStream() {
+        return messageType == MessageTypeEnum.Stream;
+    }
+
+    public boolean isUpload() {
+        return messageType == MessageTypeEnum.Upload;
+    }
+
+    public int getUploadArgIndex() {
+        return uploadArgIndex;
+    }
+
+    public void setUploadArgIndex(int uploadArgIndex) {
+        this.uploadArgIndex = uploadArgIndex;
+    }
+
+    public int getStreamCredit() {
+        return streamCredit;
+    }
+
+    public void setStreamCredit(int streamCredit) {
+        this.streamCredit = streamCredit;
+    }
+
+    public List<Object[]> getBatchArgs() {
+        return batchArgs;
+    }
+
+    public void setBatchArgs(List<Object[]> batchArgs) {
+        this.batchArgs = batchArgs;
+    }
+
+    public boolean isOneway() {
+        return oneway;
+    }
+
+    public void setOneway(boolean oneway) {
+        this.oneway = oneway;
+    }
+
+    public MessageTypeEnum getMessageType() {
+        return messageType;
+    }
+
+    public void setMessageType(MessageTypeEnum messageType) {
+        this.messageType = messageType;
+    }
 }
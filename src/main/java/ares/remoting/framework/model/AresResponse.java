@@ -14,6 +14,50 @@ public class AresResponse implements Serializable {
     private long invokeTimeout;
     //接口调用返回的结果对象
     private Object result;
+    //消息类型
+    private MessageTypeEnum messageType = MessageTypeEnum.Normal;
+    //响应状态
+    private ResponseStatusEnum status = ResponseStatusEnum.Success;
+
+
+    /**
+     * 生成心跳响应
+     *
+     * @return
+     */
+    public static AresResponse heartbeat() {
+        AresResponse response = new AresResponse();
+        response.setMessageType(MessageTypeEnum.Heartbeat);
+        return response;
+    }
+
+    public boolean isHeartbeat() {
+        return messageType == MessageTypeEnum.Heartbeat;
+    }
+
+    /**
+     * 生成未执行的失败响应
+     *
+     * @param request
+     * @param status
+     * @return
+     */
+    public static AresResponse of(AresRequest request, ResponseStatusEnum status) {
+        AresResponse response = new AresResponse();
+        response.setUniqueKey(request.getUniqueKey());
+        response.setInvokeTimeout(request.getInvokeTimeout());
+        response.setStatus(status);
+        return response;
+    }
+
+    /**
+     * 是否流式调用的结果分块或结束消息
+     *
+     * @return
+     */
+    public boolean isStreamFrame() {
+        return messageType == MessageTypeEnum.StreamChunk || messageType == MessageTypeEnum.StreamEnd;
+    }
 
     public String getUniqueKey() {
         return uniqueKey;
@@ -38,4 +82,20 @@ public class AresResponse implements Serializable {
     public void setResult(Object result) {
         this.result = result;
     }
+
+    public ResponseStatusEnum getStatus() {
+        return status;
+    }
+
+    public void setStatus(ResponseStatusEnum status) {
+        this.status = status;
+    }
+
+    public MessageTypeEnum getMessageType() {
+        return messageType;
+    }
+
+    public void setMessageType(MessageTypeEnum messageType) {
+        this.messageType = messageType;
+    }
 }
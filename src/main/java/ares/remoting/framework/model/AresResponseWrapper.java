@@ -1,5 +1,7 @@
 package ares.remoting.framework.model;
 
+import io.netty.channel.Channel;
+
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 
@@ -19,6 +21,12 @@ public class AresResponseWrapper {
     /** 容量只有1的阻塞队列 */
     private BlockingQueue<AresResponse> responseQueue = new ArrayBlockingQueue<AresResponse>(1);
 
+    /** 发送请求的通道，连接断开时以此找到等待响应的调用 */
+    private volatile Channel channel;
+
+    /** 调用超时时间 */
+    private volatile long invokeTimeout;
+
     /**
      * 静态工厂方式生成对象。
      *
@@ -50,6 +58,22 @@ public class AresResponseWrapper {
         return responseQueue;
     }
 
+    public Channel getChannel() {
+        return channel;
+    }
+
+    public void setChannel(Channel channel) {
+        this.channel = channel;
+    }
+
+    public long getInvokeTimeout() {
+        return invokeTimeout;
+    }
+
+    public void setInvokeTimeout(long invokeTimeout) {
+        this.invokeTimeout = invokeTimeout;
+    }
+
     public long getResponseTime() {
         return responseTime;
     }
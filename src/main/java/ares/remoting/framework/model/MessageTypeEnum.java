@@ -0,0 +1,59 @@
+package ares.remoting.framework.model;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * 通信消息类型
+ *
+ * @version $Id$
+ */
+public enum MessageTypeEnum {
+
+    //普通服务调用
+    Normal("Normal"),
+    //心跳
+    Heartbeat("Heartbeat"),
+    //批量服务调用(同一方法的多组参数,结果按顺序放在一个响应中返回)
+    Batch("Batch"),
+    //流式调用请求(服务方法返回Iterator,结果分块推送)
+    Stream("Stream"),
+    //流式调用的结果分块
+    StreamChunk("StreamChunk"),
+    //流式调用结束(正常结束或携带异常)
+    StreamEnd("StreamEnd"),
+    //流式调用的消费端授信(允许服务端继续推送的分块数)
+    StreamCredit("StreamCredit"),
+    //流式调用的消费端取消(调用方不再迭代,服务端停止推送)
+    StreamCancel("StreamCancel"),
+    //上传调用请求(服务方法的Iterator参数由消费端分块上传)
+    Upload("Upload"),
+    //上传调用的参数分块
+    UploadChunk("UploadChunk"),
+    //上传调用的参数上传完毕
+    UploadEnd("UploadEnd"),
+    //上传调用的服务端授信(允许消费端继续上传的分块数)
+    UploadCredit("UploadCredit");
+
+    private MessageTypeEnum(String code) {
+        this.code = code;
+    }
+
+
+    public static MessageTypeEnum queryByCode(String code) {
+        if (StringUtils.isBlank(code)) {
+            return null;
+        }
+        for (MessageTypeEnum messageType : values()) {
+            if (StringUtils.equals(code, messageType.getCode())) {
+                return messageType;
+            }
+        }
+        return null;
+    }
+
+    private String code;
+
+    public String getCode() {
+        return code;
+    }
+}
@@ -33,6 +33,11 @@ public class ProviderService implements Serializable {
     private String appKey;
     //服务分组组名
     private String groupName;
+    //服务提供者监听的Unix域套接字路径(未监听时为空)
+    private String udsPath;
+    //是否合并执行相同的并发请求(只在服务端本地生效,不注册到注册中心)
+    @JsonIgnore
+    private transient boolean singleFlight;
 
     public ProviderService copy() {
         ProviderService providerService = new ProviderService();
@@ -46,6 +51,8 @@ public class ProviderService implements Serializable {
         providerService.setWorkerThreads(workerThreads);
         providerService.setAppKey(appKey);
         providerService.setGroupName(groupName);
+        providerService.setUdsPath(udsPath);
+        providerService.setSingleFlight(singleFlight);
         return providerService;
     }
 
@@ -128,4 +135,20 @@ public class ProviderService implements Serializable {
     public void setGroupName(String groupName) {
         this.groupName = groupName;
     }
+
+    public String getUdsPath() {
+        return udsPath;
+    }
+
+    public void setUdsPath(String udsPath) {
+        this.udsPath = udsPath;
+    }
+
+    public boolean isSingleFlight() {
+        return singleFlight;
+    }
+
+    public void setSingleFlight(boolean singleFlight) {
+        this.singleFlight = singleFlight;
+    }
 }
@@ -0,0 +1,45 @@
+package ares.remoting.framework.model;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * 服务调用响应状态
+ *
+ * @version $Id$
+ */
+public enum ResponseStatusEnum {
+
+    //调用完成(业务异常也视为调用完成,异常对象放在result中)
+    Success("Success"),
+    //请求在服务端执行前已超过消费端的超时预算,未执行
+    DeadlineExceeded("DeadlineExceeded"),
+    //服务端超过并发限额,未执行,消费端可路由到其他服务提供者
+    Overload("Overload"),
+    //消费端写入通道失败,请求未发出
+    SendFailed("SendFailed"),
+    //请求已写出,响应返回前连接断开(如报文超过对端的最大报文长度被拒绝),只在消费端本地产生
+    ChannelClosed("ChannelClosed");
+
+    private ResponseStatusEnum(String code) {
+        this.code = code;
+    }
+
+
+    public static ResponseStatusEnum queryByCode(String code) {
+        if (StringUtils.isBlank(code)) {
+            return null;
+        }
+        for (ResponseStatusEnum status : values()) {
+            if (StringUtils.equals(code, status.getCode())) {
+                return status;
+            }
+        }
+        return null;
+    }
+
+    private String code;
+
+    public String getCode() {
+        return code;
+    }
+}
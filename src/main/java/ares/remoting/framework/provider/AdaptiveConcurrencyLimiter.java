@@ -0,0 +1,129 @@
+package ares.remoting.framework.provider;
+
+import ares.remoting.framework.helper.PropertyConfigeHelper;
+import com.google.common.collect.Maps;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 服务端自适应并发限流器(梯度算法)。
+ *
+ * 以观测到的最小耗时作为基线，按 基线耗时*容忍系数/本次耗时 计算梯度：
+ * 耗时接近基线时限额按sqrt(limit)增长，耗时明显上升(请求开始排队)时限额按梯度收缩。
+ * 超过限额的请求直接拒绝，不排队等待。
+ *
+ * @version $Id$
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    /** 服务限流器Map，key为服务接口名 */
+    private static final ConcurrentMap<String, AdaptiveConcurrencyLimiter> limiterMap = Maps.newConcurrentMap();
+
+    /** 最小限额 */
+    private static final int MIN_LIMIT = 1;
+    /** 限额平滑系数 */
+    private static final double SMOOTHING = 0.2D;
+    /** 梯度下限，单次最多收缩一半 */
+    private static final double MIN_GRADIENT = 0.5D;
+    /** 每采集若干个样本后重新测量基线耗时，以跟踪服务本身耗时的变化 */
+    private static final int BASELINE_RESET_SAMPLES = 1000;
+
+    /** 最大限额 */
+    private final int maxLimit;
+    /** 耗时容忍系数，本次耗时在基线的该倍数以内不收缩限额 */
+    private final double rttTolerance;
+
+    /** 当前在途请求数 */
+    private final AtomicInteger inflight = new AtomicInteger(0);
+    /** 当前限额，调用链路无锁读取 */
+    private volatile int limit;
+
+    /** 以下字段只在update中加锁读写 */
+    private double estimatedLimit;
+    private long minRtt = Long.MAX_VALUE;
+    private int sampleCount;
+
+    private AdaptiveConcurrencyLimiter(int initialLimit) {
+        this.maxLimit = Math.max(PropertyConfigeHelper.getServerLimitMaxLimit(), MIN_LIMIT);
+        this.rttTolerance = Math.max(PropertyConfigeHelper.getServerLimitRttTolerance(), 1D);
+        this.estimatedLimit = Math.min(Math.max(initialLimit, MIN_LIMIT), maxLimit);
+        this.limit = (int) estimatedLimit;
+    }
+
+    /**
+     * 获取服务的限流器，首次获取时以服务发布时配置的workerThreads作为初始限额
+     *
+     * @param serviceKey
+     * @param initialLimit
+     * @return
+     */
+    public static AdaptiveConcurrencyLimiter of(String serviceKey, int initialLimit) {
+        AdaptiveConcurrencyLimiter limiter = limiterMap.get(serviceKey);
+        if (limiter == null) {
+            AdaptiveConcurrencyLimiter newLimiter = new AdaptiveConcurrencyLimiter(initialLimit);
+            limiter = limiterMap.putIfAbsent(serviceKey, newLimiter);
+            if (limiter == null) {
+                limiter = newLimiter;
+            }
+        }
+        return limiter;
+    }
+
+    /**
+     * 尝试获取调用权利，超过限额立即返回false
+     *
+     * @return
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inflight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 调用结束后释放调用权利
+     *
+     * @param rtt    获取调用权利到调用结束的耗时(纳秒)，包含业务线程池排队耗时
+     * @param sample 是否作为耗时样本调整限额(未真正执行的请求不采样)
+     */
+    public void release(long rtt, boolean sample) {
+        int current = inflight.getAndDecrement();
+        if (sample && rtt > 0) {
+            update(rtt, current);
+        }
+    }
+
+    private synchronized void update(long rtt, int inflightAtRelease) {
+        if (++sampleCount >= BASELINE_RESET_SAMPLES) {
+            sampleCount = 0;
+            minRtt = rtt;
+        } else if (rtt < minRtt) {
+            minRtt = rtt;
+        }
+
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1D, rttTolerance * minRtt / rtt));
+        double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        //在途请求远未达到限额时不再增长,避免低负载时限额无限膨胀
+        if (newLimit > estimatedLimit && inflightAtRelease * 2 < estimatedLimit) {
+            return;
+        }
+        newLimit = estimatedLimit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        estimatedLimit = Math.min(Math.max(newLimit, MIN_LIMIT), maxLimit);
+        limit = (int) estimatedLimit;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInflight() {
+        return inflight.get();
+    }
+}
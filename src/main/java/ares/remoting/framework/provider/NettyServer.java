@@ -10,20 +10,36 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerDomainSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.unix.DomainSocketAddress;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
+import io.netty.handler.timeout.IdleStateHandler;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 单例netty服务端。
  *
+ * 在服务端口上监听TCP连接；配置了server_uds_dir且平台支持epoll时，额外监听一个Unix域套接字，
+ * 其路径随服务节点注册，同一主机上的消费端优先经由它连接。
+ *
  * @author liyebing created on 17/2/11.
  * @version $Id$
  */
 public class NettyServer {
 
+    private static final Logger logger = LoggerFactory.getLogger(NettyServer.class);
+
     private static NettyServer nettyServer = new NettyServer();
 
     private Channel channel;
@@ -31,8 +47,24 @@ public class NettyServer {
     private EventLoopGroup bossGroup;
     //服务端worker线程组
     private EventLoopGroup workerGroup;
+    //Unix域套接字监听通道与线程组(未开启时为空)
+    private Channel udsChannel;
+    private EventLoopGroup udsBossGroup;
+    private EventLoopGroup udsWorkerGroup;
+    //监听的Unix域套接字路径
+    private volatile String udsPath;
     //序列化类型配置信息
     private SerializeType serializeType = PropertyConfigeHelper.getSerializeType();
+    //客户端读空闲超时时间:超过(最大未响应心跳数+1)个心跳间隔未收到任何数据则关闭连接
+    private long clientIdleTimeout = (long) PropertyConfigeHelper.getHeartbeatInterval() * (PropertyConfigeHelper.getHeartbeatMaxMiss() + 1);
+    //合并flush时最多积累的flush次数
+    private int flushConsolidationLimit = Math.max(PropertyConfigeHelper.getServerFlushConsolidationLimit(), 1);
+    //接收的最大请求报文长度
+    private int serverMaxFrameLength = PropertyConfigeHelper.getServerMaxFrameLength();
+    //消费端接收的最大响应报文长度
+    private int clientMaxFrameLength = PropertyConfigeHelper.getClientMaxFrameLength();
+    //心跳处理器(无状态,所有连接共享)
+    private NettyServerHeartbeatHandler heartbeatHandler = new NettyServerHeartbeatHandler();
 
     /**
      * 启动Netty服务
@@ -55,25 +87,91 @@ public class NettyServer {
                     .childOption(ChannelOption.SO_KEEPALIVE, true)
                     .childOption(ChannelOption.TCP_NODELAY, true)
                     .handler(new LoggingHandler(LogLevel.INFO))
-                    .childHandler(new ChannelInitializer<SocketChannel>() {
-                        @Override
-                        protected void initChannel(SocketChannel ch) throws Exception {
-                            //注册解码器NettyDecoderHandler
-                            ch.pipeline().addLast(new NettyDecoderHandler(AresRequest.class, serializeType));
-                            //注册编码器NettyEncoderHandler
-                            ch.pipeline().addLast(new NettyEncoderHandler(serializeType));
-                            //注册服务端业务逻辑处理器NettyServerInvokeHandler
-                            ch.pipeline().addLast(new NettyServerInvokeHandler());
-                        }
-                    });
+                    .childHandler(channelInitializer());
             try {
                 channel = serverBootstrap.bind(port).sync().channel();
             } catch (InterruptedException e) {
                 throw new RuntimeException(e);
             }
+
+            //同时监听Unix域套接字,供同一主机上的消费端绕过TCP协议栈
+            startDomainSocket(port);
+        }
+    }
+
+    /**
+     * 配置了server_uds_dir且当前平台支持epoll时，在`server_uds_dir/ares-端口号.sock`上额外监听Unix域套接字，
+     * 连接的处理器与TCP连接相同。监听失败只记录日志，不影响TCP服务。
+     *
+     * @param port
+     */
+    private void startDomainSocket(int port) {
+        String udsDir = PropertyConfigeHelper.getServerUdsDir();
+        if (StringUtils.isBlank(udsDir)) {
+            return;
+        }
+        if (!Epoll.isAvailable()) {
+            logger.warn("epoll is not available, skip unix domain socket. cause:" + Epoll.unavailabilityCause());
+            return;
+        }
+        String path = new File(udsDir, "ares-" + port + ".sock").getAbsolutePath();
+        //清理上次进程退出遗留的套接字文件
+        new File(path).delete();
+
+        udsBossGroup = new EpollEventLoopGroup(1);
+        udsWorkerGroup = new EpollEventLoopGroup();
+        ServerBootstrap udsBootstrap = new ServerBootstrap();
+        udsBootstrap
+                .group(udsBossGroup, udsWorkerGroup)
+                .channel(EpollServerDomainSocketChannel.class)
+                .childHandler(channelInitializer());
+        try {
+            udsChannel = udsBootstrap.bind(new DomainSocketAddress(path)).sync().channel();
+            udsPath = path;
+            logger.info("listen on unix domain socket:" + path);
+        } catch (Exception e) {
+            logger.error("listen on unix domain socket failed:" + path, e);
+            udsBossGroup.shutdownGracefully();
+            udsWorkerGroup.shutdownGracefully();
+            udsBossGroup = null;
+            udsWorkerGroup = null;
         }
     }
 
+    /**
+     * TCP连接与Unix域套接字连接共用的通道初始化器
+     *
+     * @return
+     */
+    private ChannelInitializer<Channel> channelInitializer() {
+        return new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) throws Exception {
+                //注册flush合并:业务线程写回的响应不立即flush,同一EventLoop轮次内合并为一次flush(最多积累flushConsolidationLimit次)
+                ch.pipeline().addLast(new FlushConsolidationHandler(flushConsolidationLimit, true));
+                //注册空闲检测
+                ch.pipeline().addLast(new IdleStateHandler(clientIdleTimeout, 0, 0, TimeUnit.MILLISECONDS));
+                //注册解码器NettyDecoderHandler(分配内存前校验请求报文长度)
+                ch.pipeline().addLast(new NettyDecoderHandler(AresRequest.class, serializeType, serverMaxFrameLength));
+                //注册编码器NettyEncoderHandler(超过消费端限制的响应不写出)
+                ch.pipeline().addLast(new NettyEncoderHandler(serializeType, clientMaxFrameLength));
+                //注册心跳处理器
+                ch.pipeline().addLast(heartbeatHandler);
+                //注册服务端业务逻辑处理器NettyServerInvokeHandler
+                ch.pipeline().addLast(new NettyServerInvokeHandler());
+            }
+        };
+    }
+
+    /**
+     * 获取监听的Unix域套接字路径
+     *
+     * @return 未监听时返回null
+     */
+    public String getUdsPath() {
+        return udsPath;
+    }
+
 
     /**
      * 停止Netty服务
@@ -84,6 +182,12 @@ public class NettyServer {
         }
         bossGroup.shutdownGracefully();
         workerGroup.shutdownGracefully();
+        if (udsChannel != null) {
+            udsBossGroup.shutdownGracefully();
+            udsWorkerGroup.shutdownGracefully();
+            udsChannel.closeFuture().syncUninterruptibly();
+            new File(udsPath).delete();
+        }
         channel.closeFuture().syncUninterruptibly();
     }
 
@@ -0,0 +1,41 @@
+package ares.remoting.framework.provider;
+
+import ares.remoting.framework.model.AresRequest;
+import ares.remoting.framework.model.AresResponse;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.timeout.IdleState;
+import io.netty.handler.timeout.IdleStateEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 服务端心跳处理器：应答客户端心跳；读空闲超时(客户端已不再发送任何数据)则关闭连接，回收文件句柄与缓冲区。
+ *
+ * @version $Id$
+ */
+@ChannelHandler.Sharable
+public class NettyServerHeartbeatHandler extends ChannelInboundHandlerAdapter {
+
+    private static final Logger logger = LoggerFactory.getLogger(NettyServerHeartbeatHandler.class);
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof AresRequest && ((AresRequest) msg).isHeartbeat()) {
+            ctx.writeAndFlush(AresResponse.heartbeat());
+            return;
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt instanceof IdleStateEvent && ((IdleStateEvent) evt).state() == IdleState.READER_IDLE) {
+            logger.warn("client idle timeout, close channel:" + ctx.channel());
+            ctx.close();
+            return;
+        }
+        ctx.fireUserEventTriggered(evt);
+    }
+}
@@ -1,26 +1,38 @@
 package ares.remoting.framework.provider;
 
+import ares.remoting.framework.helper.PropertyConfigeHelper;
 import ares.remoting.framework.model.AresRequest;
 import ares.remoting.framework.model.AresResponse;
+import ares.remoting.framework.model.MessageTypeEnum;
 import ares.remoting.framework.model.ProviderService;
+import ares.remoting.framework.model.ResponseStatusEnum;
 import ares.remoting.framework.zookeeper.IRegisterCenter4Provider;
 import ares.remoting.framework.zookeeper.RegisterCenter;
 import com.alibaba.fastjson.JSON;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Collections2;
-import com.google.common.collect.Maps;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.EncoderException;
+import io.netty.handler.codec.TooLongFrameException;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Method;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 监听在服务生产方服务器端口上的netty通道处理器，主要处理服务端的逻辑。
@@ -33,12 +45,14 @@ public class NettyServerInvokeHandler extends SimpleChannelInboundHandler<AresRe
 
     private static final Logger logger = LoggerFactory.getLogger(NettyServerInvokeHandler.class);
 
-    //服务端限流
-    private static final Map<String, Semaphore> serviceKeySemaphoreMap = Maps.newConcurrentMap();
+    //服务端业务线程池,服务调用不占用Netty IO线程
+    private static final ThreadPoolExecutor businessExecutor = new ThreadPoolExecutor(
+            PropertyConfigeHelper.getServerBusinessThreads(), PropertyConfigeHelper.getServerBusinessThreads(),
+            60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(PropertyConfigeHelper.getServerBusinessQueueSize()),
+            new ThreadFactoryBuilder().setNameFormat("ares-server-business-%d").setDaemon(true).build());
 
-    @Override
-    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
-        ctx.flush();
+    static {
+        businessExecutor.allowCoreThreadTimeOut(true);
     }
 
     @Override
@@ -51,96 +65,347 @@ public class NettyServerInvokeHandler extends SimpleChannelInboundHandler<AresRe
     /**
      * netty通道可读的时候处理业务逻辑，这里是服务方通道。
      *
+     * 服务调用不在Netty IO线程中执行，而是交给业务线程池；请求携带消费端发送时剩余的超时预算，
+     * 服务端以收到请求的时刻为起点计算截止时间，任务开始执行时若已超过截止时间则直接返回超时响应、不再调用服务。
+     * 进入业务线程池前先经过服务的自适应限流器，超过限额的请求立即返回过载响应。
+     *
      * @param ctx
      * @param request
      * @throws Exception
      */
     @Override
-    protected void channelRead0(ChannelHandlerContext ctx, AresRequest request) throws Exception {
+    protected void channelRead0(final ChannelHandlerContext ctx, final AresRequest request) throws Exception {
+
+        //消费端对流式调用的授信,直接交给对应的流继续推送
+        if (request.getMessageType() == MessageTypeEnum.StreamCredit) {
+            NettyServerStream.grant(request.getUniqueKey(), request.getStreamCredit());
+            return;
+        }
+        //消费端取消流式调用,停止推送
+        if (request.getMessageType() == MessageTypeEnum.StreamCancel) {
+            NettyServerStream.cancel(request.getUniqueKey());
+            return;
+        }
+        //上传调用的参数分块,交给对应的上传迭代器(不经过限流与业务线程池,按到达顺序入队)
+        if (request.getMessageType() == MessageTypeEnum.UploadChunk || request.getMessageType() == MessageTypeEnum.UploadEnd) {
+            NettyServerUpload.onFrame(request);
+            return;
+        }
 
         if (ctx.channel().isWritable()) {
-            //从服务调用对象里获取服务提供者信息
+            //以收到请求的时刻为起点,按消费端剩余预算计算截止时间(老版本消费端未携带剩余预算,按超时时长计算)
+            long receiveTime = System.currentTimeMillis();
+            long remainingTimeout = request.getRemainingTimeout() > 0 ? request.getRemainingTimeout() : request.getInvokeTimeout();
+            final long deadline = receiveTime + remainingTimeout;
+
+            //获取服务的自适应限流器(以服务发布时配置的workerThreads为初始限额),超过限额快速失败
             ProviderService metaDataModel = request.getProviderService();
-            long consumeTimeOut = request.getInvokeTimeout();
-            final String methodName = request.getInvokedMethodName();
-
-            //根据方法名称定位到具体某一个服务提供者
-            String serviceKey = metaDataModel.getServiceItf().getName();
-            //获取限流工具类
-            int workerThread = metaDataModel.getWorkerThreads();
-            Semaphore semaphore = serviceKeySemaphoreMap.get(serviceKey);
-            if (semaphore == null) {
-                synchronized (serviceKeySemaphoreMap) {
-                    semaphore = serviceKeySemaphoreMap.get(serviceKey);
-                    if (semaphore == null) {
-                        semaphore = new Semaphore(workerThread);
-                        serviceKeySemaphoreMap.put(serviceKey, semaphore);
-                    }
-                }
+            final AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.of(
+                    metaDataModel.getServiceItf().getName(), metaDataModel.getWorkerThreads());
+            if (!limiter.tryAcquire()) {
+                writeResponse(ctx, request, AresResponse.of(request, ResponseStatusEnum.Overload));
+                return;
+            }
+            final long acquireTime = System.nanoTime();
+            //上传调用在提交业务线程池前登记,之后到达的分块直接进入上传迭代器
+            if (request.isUpload() && !NettyServerUpload.open(ctx, request)) {
+                limiter.release(0, false);
+                AresResponse response = AresResponse.of(request, ResponseStatusEnum.Success);
+                response.setResult(new IllegalArgumentException("illegal upload arg index:" + request.getUploadArgIndex()));
+                writeResponse(ctx, request, response);
+                return;
             }
-
-            /**
-             * !!!特别注意：
-             * 一次远程服务调用重要步骤：
-             * 当服务生产者机器在部署应用的时候，spring扫描xml生成bean工厂时，会解析自定义的服务信息（接口、实现类、集群地址等）。
-             * 接着这个bean被注册到context环境中、第一次从bean工厂doGetBean依赖注入时候，这个bean会向Zookeeper集群注册自身的服务信息。
-             * 此时Zookeeper的某个临时结点中就有了这个生产者发布的服务信息。
-             * 而后这个服务生产者实例化了Netty服务端，并将它绑定在本机的IP地址和端口号上持续监听。
-             * 每当有某个客户端通过netty的client、使用IP地址+端口号调用到这个生产者的netty服务端时——
-             * 服务生产者的netty服务端就会先解码、获取客户端想要调用的服务、使用反射去执行目标方法、将产生的结果写入通道中，客户端就会收到服务端执行的结果。
-             */
-
-            // 获取注册中心服务：从单例Zookeeper包装类`RegisterCenter`注册中心中根据`serviceKey`拿到这个服务方提供的所有方法
-            IRegisterCenter4Provider registerCenter4Provider = RegisterCenter.singleton();
-            List<ProviderService> localProviderCaches = registerCenter4Provider.getProviderServiceMap().get(serviceKey);
-
-            // 服务调用结果
-            Object result = null;
-            // 限流令牌，true代表获得
-            boolean acquire = false;
 
             try {
-                // 找到要调用的目标服务
-                ProviderService localProviderCache = Collections2.filter(localProviderCaches, new Predicate<ProviderService>() {
+                businessExecutor.execute(new Runnable() {
                     @Override
-                    public boolean apply(ProviderService input) {
-                        return StringUtils.equals(input.getServiceMethod().getName(), methodName);
+                    public void run() {
+                        boolean invoked = false;
+                        try {
+                            //排队期间已超过截止时间,消费端已放弃等待,直接返回超时响应
+                            if (System.currentTimeMillis() >= deadline) {
+                                logger.warn("request expired before invoke, drop it. uniqueKey:{}", request.getUniqueKey());
+                                writeResponse(ctx, request, AresResponse.of(request, ResponseStatusEnum.DeadlineExceeded));
+                                return;
+                            }
+                            invoked = true;
+                            if (request.isStream()) {
+                                invokeStream(ctx, request);
+                                return;
+                            }
+                            //开启合并执行的方法,相同请求只执行一次(合并到其他请求的不计入限流器耗时样本)
+                            if (!request.isBatch() && !request.isUpload() && isSingleFlight(request)) {
+                                invoked = invokeSingleFlight(ctx, request);
+                                return;
+                            }
+                            // 将服务调用返回对象回写到消费端(使用netty上下文写入通道中并且flush出去)
+                            writeResponse(ctx, request, request.isBatch() ? invokeBatch(request) : invoke(request));
+                        } finally {
+                            limiter.release(System.nanoTime() - acquireTime, invoked);
+                            if (request.isUpload()) {
+                                NettyServerUpload.close(request.getUniqueKey());
+                            }
+                        }
                     }
-                }).iterator().next();
-                Object serviceObject = localProviderCache.getServiceObject();
-
-                // !!!最重要的核心是在服务提供方这里使用反射调用服务。
-                //利用反射发起服务调用
-                Method method = localProviderCache.getServiceMethod();
-                //利用semaphore实现限流(能获得调用权利才可以调用)
-                acquire = semaphore.tryAcquire(consumeTimeOut, TimeUnit.MILLISECONDS);
-                if (acquire) {
-                    result = method.invoke(serviceObject, request.getArgs());
-                    //System.out.println("---------------"+result);
-                }
-            } catch (Exception e) {
-                System.out.println(JSON.toJSONString(localProviderCaches) + "  " + methodName+" "+e.getMessage());
-                result = e;
-            } finally {
-                if (acquire) {
-                    semaphore.release();
+                });
+            } catch (RejectedExecutionException e) {
+                limiter.release(0, false);
+                NettyServerUpload.close(request.getUniqueKey());
+                logger.error("business executor is full, reject request. uniqueKey:{}", request.getUniqueKey());
+                writeResponse(ctx, request, AresResponse.of(request, ResponseStatusEnum.Overload));
+            }
+
+        } else {
+            logger.error("------------channel closed!---------------");
+        }
+
+
+    }
+
+    /**
+     * 将服务调用返回对象回写到消费端，单向调用不回写；流式调用被拒绝或超时时以流结束消息回写
+     *
+     * @param ctx
+     * @param request
+     * @param response
+     */
+    private void writeResponse(final ChannelHandlerContext ctx, AresRequest request, final AresResponse response) {
+        if (request.isOneway()) {
+            return;
+        }
+        if (request.isStream() && response.getMessageType() == MessageTypeEnum.Normal) {
+            response.setMessageType(MessageTypeEnum.StreamEnd);
+        }
+        ctx.writeAndFlush(response).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                //响应超过消费端最大报文长度未写出,改为回写异常,消费端不必等到超时
+                if (future.cause() instanceof EncoderException && future.cause().getCause() instanceof TooLongFrameException) {
+                    logger.error("response too large, uniqueKey:{}", response.getUniqueKey(), future.cause());
+                    AresResponse errorResponse = new AresResponse();
+                    errorResponse.setUniqueKey(response.getUniqueKey());
+                    errorResponse.setInvokeTimeout(response.getInvokeTimeout());
+                    errorResponse.setMessageType(response.isStreamFrame() ? MessageTypeEnum.StreamEnd : MessageTypeEnum.Normal);
+                    errorResponse.setResult(new RuntimeException(future.cause().getCause().getMessage()));
+                    ctx.writeAndFlush(errorResponse);
                 }
             }
+        });
+    }
 
-            // 根据服务调用结果组装调用返回对象(约定的服务通信对象)
-            AresResponse response = new AresResponse();
-            response.setInvokeTimeout(consumeTimeOut);
-            response.setUniqueKey(request.getUniqueKey());
-            response.setResult(result);
+    /**
+     * 在业务线程中反射调用目标服务
+     *
+     * @param request
+     * @return
+     */
+    private AresResponse invoke(AresRequest request) {
+        // 服务调用结果
+        Object result = invokeMethod(request.getProviderService(), request.getInvokedMethodName(), request.getArgs());
+        return resultResponse(request, result);
+    }
 
-            // 将服务调用返回对象回写到消费端(使用netty上下文写入通道中并且flush出去)
-            ctx.writeAndFlush(response);
+    /**
+     * 根据服务调用结果组装调用返回对象(约定的服务通信对象)
+     *
+     * @param request
+     * @param result
+     * @return
+     */
+    private AresResponse resultResponse(AresRequest request, Object result) {
+        AresResponse response = new AresResponse();
+        response.setInvokeTimeout(request.getInvokeTimeout());
+        response.setUniqueKey(request.getUniqueKey());
+        response.setResult(result);
+        return response;
+    }
 
+    /**
+     * 在业务线程中合并执行相同请求：执行中已有相同请求时登记后直接返回，否则执行服务调用并把结果回写给所有合并的请求
+     *
+     * @param ctx
+     * @param request
+     * @return 当前请求是否执行了服务调用
+     */
+    private boolean invokeSingleFlight(ChannelHandlerContext ctx, AresRequest request) {
+        SingleFlightGroup.Flight flight = SingleFlightGroup.join(ctx, request);
+        if (flight == null) {
+            return false;
+        }
+        Object result;
+        List<SingleFlightGroup.Follower> followers;
+        try {
+            result = invokeMethod(request.getProviderService(), request.getInvokedMethodName(), request.getArgs());
+        } finally {
+            followers = SingleFlightGroup.complete(flight);
+        }
 
-        } else {
-            logger.error("------------channel closed!---------------");
+        writeResponse(ctx, request, resultResponse(request, result));
+        for (SingleFlightGroup.Follower follower : followers) {
+            writeResponse(follower.getCtx(), follower.getRequest(), resultResponse(follower.getRequest(), result));
+        }
+        return true;
+    }
+
+    /**
+     * 本地发布的服务方法是否开启了相同请求合并执行
+     *
+     * @param request
+     * @return
+     */
+    private boolean isSingleFlight(AresRequest request) {
+        ProviderService localProvider = findLocalProvider(request.getProviderService().getServiceItf().getName(), request.getInvokedMethodName());
+        return localProvider != null && localProvider.isSingleFlight();
+    }
+
+    /**
+     * 在业务线程中执行流式调用：服务方法返回`Iterator`(或`Iterable`)时按授信分块推送，
+     * 返回其他对象(如调用异常)时直接以流结束消息回写。
+     *
+     * @param ctx
+     * @param request
+     */
+    private void invokeStream(ChannelHandlerContext ctx, AresRequest request) {
+        Object result = invokeMethod(request.getProviderService(), request.getInvokedMethodName(), request.getArgs());
+        if (result instanceof Iterable) {
+            result = ((Iterable<?>) result).iterator();
+        }
+        if (result instanceof Iterator) {
+            NettyServerStream.open(ctx, request, (Iterator<?>) result, businessExecutor);
+            return;
+        }
+        AresResponse response = AresResponse.of(request, ResponseStatusEnum.Success);
+        response.setResult(result);
+        writeResponse(ctx, request, response);
+    }
+
+    /**
+     * 在业务线程中执行批量调用：各组参数的调用结果按顺序放入一个列表返回。
+     *
+     * 并行度大于1时额外向业务线程池提交若干个协助任务，与当前线程一起按下标领取参数执行；
+     * 协助任务排队未执行时由当前线程执行剩余参数，不会因等待协助任务而阻塞业务线程池。
+     *
+     * @param request
+     * @return
+     */
+    private AresResponse invokeBatch(AresRequest request) {
+        final ProviderService metaDataModel = request.getProviderService();
+        final String methodName = request.getInvokedMethodName();
+        final List<Object[]> batchArgs = request.getBatchArgs() == null ? Lists.<Object[]>newArrayList() : request.getBatchArgs();
+        final int size = batchArgs.size();
+        final Object[] results = new Object[size];
+        final AtomicInteger nextIndex = new AtomicInteger(0);
+        final CountDownLatch latch = new CountDownLatch(size);
+
+        Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                int index;
+                while ((index = nextIndex.getAndIncrement()) < size) {
+                    results[index] = invokeMethod(metaDataModel, methodName, batchArgs.get(index));
+                    latch.countDown();
+                }
+            }
+        };
+        int helpers = Math.min(PropertyConfigeHelper.getServerBatchParallelism(), size) - 1;
+        for (int i = 0; i < helpers; i++) {
+            try {
+                businessExecutor.execute(worker);
+            } catch (RejectedExecutionException e) {
+                break;
+            }
         }
+        worker.run();
 
+        //等待协助任务中正在执行的调用完成
+        boolean interrupted = false;
+        while (latch.getCount() > 0) {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        AresResponse response = new AresResponse();
+        response.setInvokeTimeout(request.getInvokeTimeout());
+        response.setUniqueKey(request.getUniqueKey());
+        response.setMessageType(MessageTypeEnum.Batch);
+        response.setResult(Lists.newArrayList(results));
+        return response;
+    }
 
+    /**
+     * 查找本地发布的服务方法
+     *
+     * @param serviceKey 服务接口名
+     * @param methodName 方法名
+     * @return 未发布时返回null
+     */
+    private ProviderService findLocalProvider(String serviceKey, String methodName) {
+        List<ProviderService> localProviderCaches = RegisterCenter.singleton().getProviderServiceMap().get(serviceKey);
+        if (localProviderCaches == null) {
+            return null;
+        }
+        for (ProviderService localProviderCache : localProviderCaches) {
+            if (StringUtils.equals(localProviderCache.getServiceMethod().getName(), methodName)) {
+                return localProviderCache;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 反射调用目标服务方法
+     *
+     * @param metaDataModel 服务提供者信息
+     * @param methodName    方法名
+     * @param args          调用参数
+     * @return 调用结果, 调用异常时返回异常对象
+     */
+    private Object invokeMethod(ProviderService metaDataModel, final String methodName, Object[] args) {
+        //根据方法名称定位到具体某一个服务提供者
+        String serviceKey = metaDataModel.getServiceItf().getName();
+
+        /**
+         * !!!特别注意：
+         * 一次远程服务调用重要步骤：
+         * 当服务生产者机器在部署应用的时候，spring扫描xml生成bean工厂时，会解析自定义的服务信息（接口、实现类、集群地址等）。
+         * 接着这个bean被注册到context环境中、第一次从bean工厂doGetBean依赖注入时候，这个bean会向Zookeeper集群注册自身的服务信息。
+         * 此时Zookeeper的某个临时结点中就有了这个生产者发布的服务信息。
+         * 而后这个服务生产者实例化了Netty服务端，并将它绑定在本机的IP地址和端口号上持续监听。
+         * 每当有某个客户端通过netty的client、使用IP地址+端口号调用到这个生产者的netty服务端时——
+         * 服务生产者的netty服务端就会先解码、获取客户端想要调用的服务、使用反射去执行目标方法、将产生的结果写入通道中，客户端就会收到服务端执行的结果。
+         */
+
+        // 获取注册中心服务：从单例Zookeeper包装类`RegisterCenter`注册中心中根据`serviceKey`拿到这个服务方提供的所有方法
+        IRegisterCenter4Provider registerCenter4Provider = RegisterCenter.singleton();
+        List<ProviderService> localProviderCaches = registerCenter4Provider.getProviderServiceMap().get(serviceKey);
+
+        // 服务调用结果
+        Object result = null;
+
+        try {
+            // 找到要调用的目标服务
+            ProviderService localProviderCache = Collections2.filter(localProviderCaches, new Predicate<ProviderService>() {
+                @Override
+                public boolean apply(ProviderService input) {
+                    return StringUtils.equals(input.getServiceMethod().getName(), methodName);
+                }
+            }).iterator().next();
+            Object serviceObject = localProviderCache.getServiceObject();
+
+            // !!!最重要的核心是在服务提供方这里使用反射调用服务。
+            //利用反射发起服务调用
+            Method method = localProviderCache.getServiceMethod();
+            result = method.invoke(serviceObject, args);
+        } catch (Exception e) {
+            System.out.println(JSON.toJSONString(localProviderCaches) + "  " + methodName+" "+e.getMessage());
+            result = e;
+        }
+        return result;
     }
 }
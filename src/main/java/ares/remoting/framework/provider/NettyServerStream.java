@@ -0,0 +1,231 @@
+package ares.remoting.framework.provider;
+
+import ares.remoting.framework.helper.PropertyConfigeHelper;
+import ares.remoting.framework.model.AresRequest;
+import ares.remoting.framework.model.AresResponse;
+import ares.remoting.framework.model.MessageTypeEnum;
+import ares.remoting.framework.model.ResponseStatusEnum;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 服务端的一次流式调用。
+ *
+ * 服务方法返回的`Iterator`不会一次性序列化，而是按server_stream_chunk_size个元素一块，
+ * 以同一个请求唯一标识逐块写回消费端，最后写一个结束消息(迭代异常时携带异常对象)。
+ * 推送受消费端授信控制：每推送一块消耗一个授信，授信用完即暂停，收到消费端新的授信后在业务线程池中继续推送，
+ * 服务端与消费端同时在内存中的分块数不超过授信窗口。消费端取消时停止推送；长时间未收到授信的流视为消费端已放弃，
+ * 由后台线程以超时结束消息结束，消费端据此释放该调用。
+ *
+ * @version $Id$
+ */
+public class NettyServerStream implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(NettyServerStream.class);
+
+    /** 进行中的流式调用，key为请求唯一标识 */
+    private static final Map<String, NettyServerStream> streamMap = Maps.newConcurrentMap();
+
+    /** 清理空闲流的单线程池 */
+    private static final ScheduledExecutorService idleStreamCleaner = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("ares-server-stream-cleaner-%d").setDaemon(true).build());
+
+    static {
+        long period = Math.max(PropertyConfigeHelper.getServerStreamIdleTimeout() / 2, 1000);
+        idleStreamCleaner.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                endIdleStreams(System.currentTimeMillis(), PropertyConfigeHelper.getServerStreamIdleTimeout());
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 以超时结束消息结束长时间未收到授信的流
+     *
+     * @param now
+     * @param idleTimeout
+     */
+    static void endIdleStreams(long now, long idleTimeout) {
+        for (NettyServerStream stream : streamMap.values()) {
+            if (now - stream.lastActiveTime > idleTimeout) {
+                logger.warn("stream idle timeout, end it. uniqueKey:{}", stream.request.getUniqueKey());
+                stream.end(ResponseStatusEnum.DeadlineExceeded, new RuntimeException("stream idle timeout"));
+            }
+        }
+    }
+
+    private final ChannelHandlerContext ctx;
+    private final AresRequest request;
+    private final Iterator<?> iterator;
+    private final Executor executor;
+    /** 剩余授信(可推送的分块数) */
+    private final AtomicInteger credits = new AtomicInteger(0);
+    /** 是否已有推送任务在执行或排队 */
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    /** 流是否已结束 */
+    private volatile boolean closed = false;
+    /** 最近一次推送或收到授信的时间 */
+    private volatile long lastActiveTime = System.currentTimeMillis();
+    /** 连接断开时结束流的监听，流结束时移除 */
+    private final ChannelFutureListener closeListener = new ChannelFutureListener() {
+        @Override
+        public void operationComplete(ChannelFuture future) throws Exception {
+            close();
+        }
+    };
+
+    /** 分块写出失败(如超过消费端最大报文长度)时以异常结束流，消费端不会漏收分块 */
+    private final ChannelFutureListener chunkWriteListener = new ChannelFutureListener() {
+        @Override
+        public void operationComplete(ChannelFuture future) throws Exception {
+            if (!future.isSuccess()) {
+                logger.error("write stream chunk failed. uniqueKey:" + request.getUniqueKey(), future.cause());
+                end(ResponseStatusEnum.Success, new RuntimeException("write stream chunk failed: " + future.cause().getMessage()));
+            }
+        }
+    };
+
+    private NettyServerStream(ChannelHandlerContext ctx, AresRequest request, Iterator<?> iterator, Executor executor) {
+        this.ctx = ctx;
+        this.request = request;
+        this.iterator = iterator;
+        this.executor = executor;
+    }
+
+    /**
+     * 开始一次流式调用，按请求携带的初始授信开始推送
+     *
+     * @param ctx
+     * @param request
+     * @param iterator 服务方法返回的迭代器
+     * @param executor 执行推送的业务线程池
+     */
+    public static void open(ChannelHandlerContext ctx, AresRequest request, Iterator<?> iterator, Executor executor) {
+        NettyServerStream stream = new NettyServerStream(ctx, request, iterator, executor);
+        streamMap.put(request.getUniqueKey(), stream);
+        //连接断开时结束流,不再继续迭代
+        ctx.channel().closeFuture().addListener(stream.closeListener);
+        stream.grant(Math.max(request.getStreamCredit(), 1));
+    }
+
+    /**
+     * 收到消费端的授信，继续推送
+     *
+     * @param uniqueKey 流式调用的请求唯一标识
+     * @param credit    新增授信
+     */
+    public static void grant(String uniqueKey, int credit) {
+        NettyServerStream stream = streamMap.get(uniqueKey);
+        if (stream == null) {
+            //流已结束或已被清理,忽略迟到的授信
+            return;
+        }
+        stream.grant(credit);
+    }
+
+    /**
+     * 消费端取消流式调用，停止推送(消费端已释放该调用，不再写结束消息)
+     *
+     * @param uniqueKey 流式调用的请求唯一标识
+     */
+    public static void cancel(String uniqueKey) {
+        NettyServerStream stream = streamMap.get(uniqueKey);
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    private void grant(int credit) {
+        lastActiveTime = System.currentTimeMillis();
+        credits.addAndGet(Math.max(credit, 0));
+        schedule();
+    }
+
+    private void schedule() {
+        if (closed || credits.get() <= 0 || !running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(this);
+        } catch (RejectedExecutionException e) {
+            running.set(false);
+            logger.error("business executor is full, fail stream. uniqueKey:{}", request.getUniqueKey());
+            end(ResponseStatusEnum.Overload, null);
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            int chunkSize = Math.max(PropertyConfigeHelper.getServerStreamChunkSize(), 1);
+            while (!closed && credits.get() > 0) {
+                List<Object> chunk = Lists.newArrayListWithCapacity(chunkSize);
+                while (chunk.size() < chunkSize && iterator.hasNext()) {
+                    chunk.add(iterator.next());
+                }
+                if (!chunk.isEmpty()) {
+                    credits.decrementAndGet();
+                    lastActiveTime = System.currentTimeMillis();
+                    ctx.writeAndFlush(frame(MessageTypeEnum.StreamChunk, ResponseStatusEnum.Success, chunk)).addListener(chunkWriteListener);
+                }
+                if (!iterator.hasNext()) {
+                    end(ResponseStatusEnum.Success, null);
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            logger.error("stream iterate error. uniqueKey:" + request.getUniqueKey(), e);
+            end(ResponseStatusEnum.Success, e);
+            return;
+        } finally {
+            running.set(false);
+        }
+        //先清除标记再检查授信,保证清除标记前到达的授信不会被遗漏
+        schedule();
+    }
+
+    /**
+     * 写出结束消息并结束流
+     *
+     * @param status
+     * @param result 迭代异常时为异常对象
+     */
+    private synchronized void end(ResponseStatusEnum status, Object result) {
+        if (closed) {
+            return;
+        }
+        close();
+        ctx.writeAndFlush(frame(MessageTypeEnum.StreamEnd, status, result));
+    }
+
+    private void close() {
+        closed = true;
+        streamMap.remove(request.getUniqueKey());
+        ctx.channel().closeFuture().removeListener(closeListener);
+    }
+
+    private AresResponse frame(MessageTypeEnum messageType, ResponseStatusEnum status, Object result) {
+        AresResponse response = AresResponse.of(request, status);
+        response.setMessageType(messageType);
+        response.setResult(result);
+        return response;
+    }
+}
@@ -0,0 +1,201 @@
+package ares.remoting.framework.provider;
+
+import ares.remoting.framework.helper.PropertyConfigeHelper;
+import ares.remoting.framework.model.AresRequest;
+import ares.remoting.framework.model.AresResponse;
+import ares.remoting.framework.model.MessageTypeEnum;
+import ares.remoting.framework.model.ResponseStatusEnum;
+import com.google.common.collect.Maps;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 服务端的一次上传调用，作为服务方法的`Iterator`参数。
+ *
+ * 消费端把该参数按分块逐帧上传，NIO线程收到的分块放入容量为授信窗口的有界队列，服务方法在业务线程中边迭代边消费；
+ * 每消费掉半个窗口的分块，就向消费端补发同样数量的授信，单个上传在服务端缓存的分块数不超过server_upload_window。
+ * 消费端不按授信发送(队列溢出)、连接断开或超过server_stream_idle_timeout未收到分块时，迭代过程中抛出运行时异常。
+ *
+ * @version $Id$
+ */
+public class NettyServerUpload implements Iterator<Object> {
+
+    private static final Logger logger = LoggerFactory.getLogger(NettyServerUpload.class);
+
+    /** 进行中的上传调用，key为请求唯一标识 */
+    private static final Map<String, NettyServerUpload> uploadMap = Maps.newConcurrentMap();
+
+    private final ChannelHandlerContext ctx;
+    private final AresRequest request;
+    /** 授信窗口(分块数) */
+    private final int window;
+    /** 已收到、尚未消费的分块与结束消息(多留一个位置给结束或中止消息) */
+    private final BlockingQueue<AresRequest> frames;
+    /** 当前分块 */
+    private Iterator<?> current = Collections.emptyList().iterator();
+    /** 自上次补发授信后消费的分块数 */
+    private int consumed = 0;
+    /** 是否已收到结束消息 */
+    private boolean finished = false;
+    /** 中止原因，不为空时迭代失败 */
+    private volatile String abortReason;
+    /** 连接断开时中止上传的监听，上传结束时移除 */
+    private final ChannelFutureListener closeListener = new ChannelFutureListener() {
+        @Override
+        public void operationComplete(ChannelFuture future) throws Exception {
+            abort("channel closed");
+        }
+    };
+
+    private NettyServerUpload(ChannelHandlerContext ctx, AresRequest request, int window) {
+        this.ctx = ctx;
+        this.request = request;
+        this.window = window;
+        this.frames = new ArrayBlockingQueue<AresRequest>(window + 1);
+    }
+
+    /**
+     * 登记一次上传调用：把请求参数中上传参数的位置替换为本迭代器，并向消费端发放初始授信。
+     * 需在NIO线程中、提交业务线程池之前登记，保证之后到达的分块不会丢失。
+     *
+     * @param ctx
+     * @param request
+     * @return 上传参数下标不合法时返回false
+     */
+    public static boolean open(ChannelHandlerContext ctx, AresRequest request) {
+        int window = Math.max(PropertyConfigeHelper.getServerUploadWindow(), 1);
+        NettyServerUpload upload = new NettyServerUpload(ctx, request, window);
+        Object[] args = request.getArgs();
+        if (args == null || request.getUploadArgIndex() < 0 || request.getUploadArgIndex() >= args.length) {
+            logger.error("illegal upload arg index:{}, uniqueKey:{}", request.getUploadArgIndex(), request.getUniqueKey());
+            return false;
+        }
+        args[request.getUploadArgIndex()] = upload;
+        uploadMap.put(request.getUniqueKey(), upload);
+        //连接断开时中止上传
+        ctx.channel().closeFuture().addListener(upload.closeListener);
+        upload.grant(window);
+        return true;
+    }
+
+    /**
+     * NIO线程收到上传调用的分块或结束消息
+     *
+     * @param frame
+     */
+    public static void onFrame(AresRequest frame) {
+        NettyServerUpload upload = uploadMap.get(frame.getUniqueKey());
+        if (upload == null) {
+            //调用已结束或已被拒绝,丢弃迟到的分块
+            return;
+        }
+        if (!upload.frames.offer(frame)) {
+            upload.abort("upload window exceeded");
+        }
+    }
+
+    /**
+     * 结束上传调用(服务方法返回、调用被拒绝或超时)
+     *
+     * @param uniqueKey
+     */
+    public static void close(String uniqueKey) {
+        NettyServerUpload upload = uploadMap.remove(uniqueKey);
+        if (upload != null) {
+            upload.ctx.channel().closeFuture().removeListener(upload.closeListener);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext()) {
+            if (finished) {
+                return false;
+            }
+            AresRequest frame = take();
+            if (frame.getMessageType() == MessageTypeEnum.UploadEnd) {
+                finished = true;
+                close(request.getUniqueKey());
+                return false;
+            }
+            current = frame.getArgs() == null ? Collections.emptyList().iterator() : Arrays.asList(frame.getArgs()).iterator();
+            onChunkConsumed();
+        }
+        return true;
+    }
+
+    @Override
+    public Object next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("remove");
+    }
+
+    private AresRequest take() {
+        AresRequest frame = null;
+        if (abortReason == null) {
+            try {
+                frame = frames.poll(PropertyConfigeHelper.getServerStreamIdleTimeout(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                abort("interrupted");
+            }
+        }
+        if (frame == null && abortReason == null) {
+            abort("upload idle timeout");
+        }
+        if (abortReason != null) {
+            finished = true;
+            throw new RuntimeException("upload aborted: " + abortReason + ", uniqueKey:" + request.getUniqueKey());
+        }
+        return frame;
+    }
+
+    private void abort(String reason) {
+        if (abortReason != null) {
+            return;
+        }
+        logger.warn("upload aborted: {}, uniqueKey:{}", reason, request.getUniqueKey());
+        abortReason = reason;
+        close(request.getUniqueKey());
+        //唤醒等待分块的业务线程
+        frames.clear();
+        frames.offer(request);
+    }
+
+    /**
+     * 每消费半个窗口的分块，补发同样数量的授信
+     */
+    private void onChunkConsumed() {
+        consumed++;
+        if (consumed >= Math.max(window / 2, 1)) {
+            grant(consumed);
+            consumed = 0;
+        }
+    }
+
+    private void grant(int credit) {
+        AresResponse response = AresResponse.of(request, ResponseStatusEnum.Success);
+        response.setMessageType(MessageTypeEnum.UploadCredit);
+        response.setResult(credit);
+        ctx.writeAndFlush(response);
+    }
+}
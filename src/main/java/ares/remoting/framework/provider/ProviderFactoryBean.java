@@ -5,11 +5,14 @@ import ares.remoting.framework.model.ProviderService;
 import ares.remoting.framework.zookeeper.IRegisterCenter4Provider;
 import ares.remoting.framework.zookeeper.RegisterCenter;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.FactoryBean;
 import org.springframework.beans.factory.InitializingBean;
 
 import java.lang.reflect.Method;
 import java.util.List;
+import java.util.Set;
 
 /**
  * 服务Bean发布入口
@@ -37,6 +40,8 @@ public class ProviderFactoryBean implements FactoryBean, InitializingBean {
     private int weight = 1;
     //服务端线程数,默认10个线程
     private int workerThreads = 10;
+    //合并执行相同并发请求的方法名,多个以逗号分隔
+    private String singleFlightMethods;
 
     @Override
     public Object getObject() throws Exception {
@@ -82,6 +87,12 @@ public class ProviderFactoryBean implements FactoryBean, InitializingBean {
     private List<ProviderService> buildProviderServiceInfos() {
         List<ProviderService> providerList = Lists.newArrayList();
         Method[] methods = serviceObject.getClass().getDeclaredMethods();
+        Set<String> singleFlightMethodNames = Sets.newHashSet();
+        for (String methodName : StringUtils.split(StringUtils.defaultString(singleFlightMethods), ',')) {
+            if (StringUtils.isNotBlank(methodName)) {
+                singleFlightMethodNames.add(StringUtils.trim(methodName));
+            }
+        }
         for (Method method : methods) {
             ProviderService providerService = new ProviderService();
             providerService.setServiceItf(serviceItf);
@@ -94,6 +105,8 @@ public class ProviderFactoryBean implements FactoryBean, InitializingBean {
             providerService.setWorkerThreads(workerThreads);
             providerService.setAppKey(appKey);
             providerService.setGroupName(groupName);
+            providerService.setUdsPath(NettyServer.singleton().getUdsPath());
+            providerService.setSingleFlight(singleFlightMethodNames.contains(method.getName()));
             providerList.add(providerService);
         }
         return providerList;
@@ -171,4 +184,12 @@ public class ProviderFactoryBean implements FactoryBean, InitializingBean {
     public void setGroupName(String groupName) {
         this.groupName = groupName;
     }
+
+    public String getSingleFlightMethods() {
+        return singleFlightMethods;
+    }
+
+    public void setSingleFlightMethods(String singleFlightMethods) {
+        this.singleFlightMethods = singleFlightMethods;
+    }
 }
@@ -0,0 +1,148 @@
+package ares.remoting.framework.provider;
+
+import ares.remoting.framework.model.AresRequest;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import io.netty.channel.ChannelHandlerContext;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 服务端相同请求合并执行(single-flight)。
+ *
+ * 开启合并的方法，同一时刻服务、方法与参数(按数组内容比较)都相同的请求只执行一次：
+ * 第一个请求执行服务调用，执行期间到达的相同请求登记后直接返回、不占用业务线程，
+ * 执行完成后调用结果按各自的请求唯一标识分别回写。执行完成后到达的请求重新执行，不缓存结果。
+ *
+ * @version $Id$
+ */
+public class SingleFlightGroup {
+
+    /** 执行中的调用 */
+    private static final ConcurrentMap<FlightKey, Flight> inFlight = Maps.newConcurrentMap();
+
+    /**
+     * 加入相同请求的执行
+     *
+     * @param ctx
+     * @param request
+     * @return 当前请求需要自己执行时返回执行中的调用(执行完成后需调用{@link #complete})，已合并到其他请求时返回null
+     */
+    public static Flight join(ChannelHandlerContext ctx, AresRequest request) {
+        FlightKey key = new FlightKey(request);
+        while (true) {
+            Flight flight = inFlight.get(key);
+            if (flight == null) {
+                Flight newFlight = new Flight(key);
+                flight = inFlight.putIfAbsent(key, newFlight);
+                if (flight == null) {
+                    return newFlight;
+                }
+            }
+            if (flight.follow(ctx, request)) {
+                return null;
+            }
+            //该调用刚好执行完成,移除后重新加入
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * 结束执行，返回合并到本次执行的请求
+     *
+     * @param flight
+     * @return
+     */
+    public static List<Follower> complete(Flight flight) {
+        List<Follower> followers = flight.finish();
+        inFlight.remove(flight.key, flight);
+        return followers;
+    }
+
+    /**
+     * 一次执行中的调用
+     */
+    public static class Flight {
+
+        private final FlightKey key;
+        private final List<Follower> followers = Lists.newArrayList();
+        private boolean finished = false;
+
+        private Flight(FlightKey key) {
+            this.key = key;
+        }
+
+        private synchronized boolean follow(ChannelHandlerContext ctx, AresRequest request) {
+            if (finished) {
+                return false;
+            }
+            followers.add(new Follower(ctx, request));
+            return true;
+        }
+
+        private synchronized List<Follower> finish() {
+            finished = true;
+            return followers;
+        }
+    }
+
+    /**
+     * 合并到其他请求执行的请求
+     */
+    public static class Follower {
+
+        private final ChannelHandlerContext ctx;
+        private final AresRequest request;
+
+        private Follower(ChannelHandlerContext ctx, AresRequest request) {
+            this.ctx = ctx;
+            this.request = request;
+        }
+
+        public ChannelHandlerContext getCtx() {
+            return ctx;
+        }
+
+        public AresRequest getRequest() {
+            return request;
+        }
+    }
+
+    /**
+     * 合并key：服务接口名+方法名+参数
+     */
+    private static class FlightKey {
+
+        private final String serviceKey;
+        private final String methodName;
+        private final Object[] args;
+        private final int hashCode;
+
+        private FlightKey(AresRequest request) {
+            this.serviceKey = request.getProviderService().getServiceItf().getName();
+            this.methodName = request.getInvokedMethodName();
+            this.args = request.getArgs() == null ? new Object[0] : request.getArgs();
+            this.hashCode = (31 * serviceKey.hashCode() + methodName.hashCode()) * 31 + Arrays.deepHashCode(this.args);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof FlightKey)) {
+                return false;
+            }
+            FlightKey other = (FlightKey) o;
+            return hashCode == other.hashCode && serviceKey.equals(other.serviceKey)
+                    && methodName.equals(other.methodName) && Arrays.deepEquals(args, other.args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package ares.remoting.framework.revoker;
+
+import java.util.List;
+
+/**
+ * 批量调用接口，服务引用的代理对象均实现了该接口。
+ *
+ * 同一方法的多组参数合并为一个批量请求发送(参数组数超过client_batch_split_size时拆分后并发发送到多个服务提供者)，
+ * 结果按参数顺序返回，使用方式：((BatchInvoker) helloService).invokeAll("sayHello", argsList)，
+ * 方法有重载时需指定参数类型：((BatchInvoker) helloService).invokeAll("sayHello", new Class[]{String.class}, argsList)。
+ *
+ * @version $Id$
+ */
+public interface BatchInvoker {
+
+    /**
+     * 批量调用服务接口的某个方法(方法名在服务接口上唯一，有重载时抛出异常)
+     *
+     * @param methodName 方法名
+     * @param argsList   多组调用参数
+     * @return 按参数顺序排列的调用结果
+     */
+    List<Object> invokeAll(String methodName, List<Object[]> argsList);
+
+    /**
+     * 按方法名与参数类型批量调用服务接口的某个方法
+     *
+     * @param methodName     方法名
+     * @param parameterTypes 参数类型
+     * @param argsList       多组调用参数
+     * @return 按参数顺序排列的调用结果
+     */
+    List<Object> invokeAll(String methodName, Class<?>[] parameterTypes, List<Object[]> argsList);
+}
@@ -0,0 +1,71 @@
+package ares.remoting.framework.revoker;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 默认的广播调用结果合并器：
+ * void方法返回null；返回值为List/Set/Map时合并所有结果；返回值为boolean时全部为true才返回true；
+ * 其余类型返回第一个非null结果。
+ *
+ * @version $Id$
+ */
+public class DefaultResultMerger implements ResultMerger {
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object merge(Method method, List<Object> results) {
+        Class<?> returnType = method.getReturnType();
+        if (returnType == void.class) {
+            return null;
+        }
+        if (List.class.isAssignableFrom(returnType)) {
+            List<Object> merged = Lists.newArrayList();
+            for (Object result : results) {
+                if (result != null) {
+                    merged.addAll((Collection<Object>) result);
+                }
+            }
+            return merged;
+        }
+        if (Set.class.isAssignableFrom(returnType)) {
+            Set<Object> merged = Sets.newHashSet();
+            for (Object result : results) {
+                if (result != null) {
+                    merged.addAll((Collection<Object>) result);
+                }
+            }
+            return merged;
+        }
+        if (Map.class.isAssignableFrom(returnType)) {
+            Map<Object, Object> merged = Maps.newHashMap();
+            for (Object result : results) {
+                if (result != null) {
+                    merged.putAll((Map<Object, Object>) result);
+                }
+            }
+            return merged;
+        }
+        if (returnType == boolean.class || returnType == Boolean.class) {
+            for (Object result : results) {
+                if (!Boolean.TRUE.equals(result)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        for (Object result : results) {
+            if (result != null) {
+                return result;
+            }
+        }
+        return null;
+    }
+}
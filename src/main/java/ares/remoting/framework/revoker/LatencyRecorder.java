@@ -0,0 +1,67 @@
+package ares.remoting.framework.revoker;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 调用耗时记录器：环形缓冲区保存最近的耗时样本，定期计算指定分位的耗时。
+ *
+ * 写入只做一次原子自增和一次数组写，分位值每积累若干个样本才重新排序计算一次，调用链路上直接读取缓存值。
+ *
+ * @version $Id$
+ */
+public class LatencyRecorder {
+
+    /** 环形缓冲区容量 */
+    private static final int CAPACITY = 256;
+    /** 样本数不足时不计算分位值 */
+    private static final int MIN_SAMPLES = 32;
+    /** 每积累多少个样本重新计算一次分位值 */
+    private static final int REFRESH_INTERVAL = 32;
+
+    private final AtomicLongArray samples = new AtomicLongArray(CAPACITY);
+    private final AtomicLong count = new AtomicLong(0);
+    /** 分位(0-100) */
+    private final double percentile;
+    /** 缓存的分位耗时，样本不足时为-1 */
+    private volatile long percentileLatency = -1L;
+
+    public LatencyRecorder(double percentile) {
+        this.percentile = Math.min(Math.max(percentile, 1D), 100D);
+    }
+
+    /**
+     * 记录一次调用耗时
+     *
+     * @param elapsed 耗时(毫秒)
+     */
+    public void record(long elapsed) {
+        long current = count.getAndIncrement();
+        samples.set((int) (current % CAPACITY), elapsed);
+        long total = current + 1;
+        if (total >= MIN_SAMPLES && total % REFRESH_INTERVAL == 0) {
+            refresh(total);
+        }
+    }
+
+    private void refresh(long total) {
+        int size = (int) Math.min(total, CAPACITY);
+        long[] copy = new long[size];
+        for (int i = 0; i < size; i++) {
+            copy[i] = samples.get(i);
+        }
+        Arrays.sort(copy);
+        int index = (int) Math.ceil(percentile / 100D * size) - 1;
+        percentileLatency = copy[Math.min(Math.max(index, 0), size - 1)];
+    }
+
+    /**
+     * 获取分位耗时
+     *
+     * @return 样本不足时返回-1
+     */
+    public long getPercentileLatency() {
+        return percentileLatency;
+    }
+}
@@ -1,110 +1,393 @@
 package ares.remoting.framework.revoker;
 
+import ares.remoting.framework.cluster.status.EndpointStatus;
+import ares.remoting.framework.helper.IPHelper;
 import ares.remoting.framework.helper.PropertyConfigeHelper;
 import ares.remoting.framework.model.AresResponse;
 import ares.remoting.framework.model.ProviderService;
 import ares.remoting.framework.serialization.NettyDecoderHandler;
 import ares.remoting.framework.serialization.NettyEncoderHandler;
 import ares.remoting.framework.serialization.common.SerializeType;
-import com.google.common.collect.Lists;
+import ares.remoting.framework.zookeeper.ProviderChangeListener;
+import ares.remoting.framework.zookeeper.RegisterCenter;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.*;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollDomainSocketChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.unix.DomainSocketAddress;
+import io.netty.handler.timeout.IdleStateHandler;
 import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.lang3.RandomUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetSocketAddress;
-import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Netty通道池工厂，队列使用`ArrayBlockingQueue`来存放生产者。
  *
+ * 所有连接共用一个`EventLoopGroup`与`Bootstrap`，异步建立：同时进行中的连接数受`channel_connect_parallelism`限制，
+ * 超出的连接排队，由进行中的连接完成时依次发起，
+ * 单个连接受`channel_connect_timeout`限制，失败后按带随机抖动的指数退避在后台重连，部分预热完成的通道池即可对外服务。
+ * 调用线程从不参与建连：归还的不可用通道被异步关闭，由后台任务补充新连接。
+ *
+ * 通道池订阅注册中心的服务提供者变更：新上线的服务提供者异步建立连接，彻底下线的服务提供者摘除通道池、
+ * 关闭空闲通道，正在使用中的通道在归还时关闭。
+ *
+ * 同一主机上监听了Unix域套接字的服务提供者优先经由套接字文件连接(需要epoll)，连接失败后回退到TCP；通道池仍以TCP地址为key。
+ *
+ * 每个通道带有空闲检测与心跳，连续多次未收到心跳响应的半开连接会被主动关闭、移出通道池并异步补充新连接。
  *
  * @author liyebing created on 17/2/8.
  * @version $Id$
  */
-public class NettyChannelPoolFactory {
+public class NettyChannelPoolFactory implements ProviderChangeListener {
 
     private static final Logger logger = LoggerFactory.getLogger(NettyChannelPoolFactory.class);
 
     private static final NettyChannelPoolFactory channelPoolFactory = new NettyChannelPoolFactory();
 
     //Key为服务提供者地址,value为Netty Channel阻塞队列(核心数据结构)
-    private static final Map<InetSocketAddress, ArrayBlockingQueue<Channel>> channelPoolMap = Maps.newConcurrentMap();
+    private static final ConcurrentMap<InetSocketAddress, ArrayBlockingQueue<Channel>> channelPoolMap = Maps.newConcurrentMap();
     //初始化Netty Channel阻塞队列的长度,该值为可配置信息
     private static final int channelConnectSize = PropertyConfigeHelper.getChannelConnectSize();
     //初始化序列化协议类型,该值为可配置信息
     private static final SerializeType serializeType = PropertyConfigeHelper.getSerializeType();
-    //服务提供者列表
-    private List<ProviderService> serviceMetaDataList = Lists.newArrayList();
+    //单个连接建立超时时间
+    private static final int channelConnectTimeout = PropertyConfigeHelper.getChannelConnectTimeout();
+    //启动时等待通道池预热的最长时间
+    private static final int channelWarmupTimeout = PropertyConfigeHelper.getChannelWarmupTimeout();
+    //心跳间隔与最大未响应心跳数
+    private static final int heartbeatInterval = PropertyConfigeHelper.getHeartbeatInterval();
+    private static final int heartbeatMaxMiss = PropertyConfigeHelper.getHeartbeatMaxMiss();
+    //服务端接收的最大请求报文长度
+    private static final int serverMaxFrameLength = PropertyConfigeHelper.getServerMaxFrameLength();
+    //接收的最大响应报文长度
+    private static final int clientMaxFrameLength = PropertyConfigeHelper.getClientMaxFrameLength();
+    //重连退避的初始间隔与最大间隔(毫秒)
+    private static final long RECONNECT_BASE_DELAY = 100L;
+    private static final long RECONNECT_MAX_DELAY = 30000L;
+
+    //所有客户端连接共用的NIO线程组
+    private final EventLoopGroup group = new NioEventLoopGroup();
+    //所有客户端连接共用的Bootstrap
+    private final Bootstrap bootstrap = new Bootstrap();
+    //Unix域套接字连接的线程组与Bootstrap(平台不支持epoll或未开启时为空)
+    private EventLoopGroup udsGroup;
+    private Bootstrap udsBootstrap;
+    //同一主机上监听了Unix域套接字的服务提供者,key为服务提供者TCP地址(通道池仍以TCP地址为key)
+    private final ConcurrentMap<InetSocketAddress, String> udsPathMap = Maps.newConcurrentMap();
+    //限制同时进行中的连接数
+    private final Semaphore connectPermits = new Semaphore(PropertyConfigeHelper.getChannelConnectParallelism());
+    //并行连接数已满时排队等待的连接,由进行中的连接完成后依次发起
+    private final Queue<PendingConnect> pendingConnects = new ConcurrentLinkedQueue<PendingConnect>();
+    //发起排队中的连接
+    private final Runnable connectPendingTask = new Runnable() {
+        @Override
+        public void run() {
+            connectPending();
+        }
+    };
+    //是否已订阅注册中心变更
+    private final AtomicBoolean subscribed = new AtomicBoolean(false);
 
 
     private NettyChannelPoolFactory() {
+        bootstrap.group(group)
+                .channel(NioSocketChannel.class)
+                .option(ChannelOption.TCP_NODELAY, true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, channelConnectTimeout)
+                .handler(channelInitializer());
+
+        //同一主机上的服务提供者优先经由Unix域套接字连接,绕过TCP协议栈
+        if (PropertyConfigeHelper.isClientPreferUds() && Epoll.isAvailable()) {
+            udsGroup = new EpollEventLoopGroup();
+            udsBootstrap = new Bootstrap();
+            udsBootstrap.group(udsGroup)
+                    .channel(EpollDomainSocketChannel.class)
+                    .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, channelConnectTimeout)
+                    .handler(channelInitializer());
+        }
+    }
+
+    /**
+     * TCP连接与Unix域套接字连接共用的通道初始化器
+     *
+     * @return
+     */
+    private ChannelInitializer<Channel> channelInitializer() {
+        return new ChannelInitializer<Channel>() {
+            @Override
+            public void initChannel(Channel ch) throws Exception {
+                //注册空闲检测,一个心跳间隔未读到数据即触发心跳(持续写出不会掩盖半开连接)
+                ch.pipeline().addLast(new IdleStateHandler(heartbeatInterval, 0, 0, TimeUnit.MILLISECONDS));
+                //注册Netty编码器(超过服务端限制的请求不写出,写入失败即以发送失败结束调用)
+                ch.pipeline().addLast(new NettyEncoderHandler(serializeType, serverMaxFrameLength));
+                //注册Netty解码器(分配内存前校验响应报文长度)
+                ch.pipeline().addLast(new NettyDecoderHandler(AresResponse.class, serializeType, clientMaxFrameLength));
+                //注册心跳处理器
+                ch.pipeline().addLast(new NettyClientHeartbeatHandler(heartbeatMaxMiss));
+                //注册客户端业务逻辑处理handler
+                ch.pipeline().addLast(new NettyClientInvokeHandler());
+            }
+        };
     }
 
 
     /**
      * 初始化Netty channel 连接队列Map
      *
+     * 所有连接并行异步建立，最多等待`channel_warmup_timeout`让每个服务提供者至少有一个可用通道，
+     * 未完成的连接在后台继续建立，不阻塞启动。
+     *
      * @param providerMap
      */
     public void initChannelPoolFactory(Map<String, List<ProviderService>> providerMap) {
-        //将服务提供者信息存入serviceMetaDataList列表
-        Collection<List<ProviderService>> collectionServiceMetaDataList = providerMap.values();
-        for (List<ProviderService> serviceMetaDataModels : collectionServiceMetaDataList) {
+        //获取服务提供者地址列表
+        Set<InetSocketAddress> socketAddressSet = Sets.newHashSet();
+        for (List<ProviderService> serviceMetaDataModels : providerMap.values()) {
             if (CollectionUtils.isEmpty(serviceMetaDataModels)) {
                 continue;
             }
-            serviceMetaDataList.addAll(serviceMetaDataModels);
+            for (ProviderService serviceMetaData : serviceMetaDataModels) {
+                socketAddressSet.add(new InetSocketAddress(serviceMetaData.getServerIp(), serviceMetaData.getServerPort()));
+                rememberUdsPath(serviceMetaData);
+            }
         }
 
-        //获取服务提供者地址列表
-        Set<InetSocketAddress> socketAddressSet = Sets.newHashSet();
-        for (ProviderService serviceMetaData : serviceMetaDataList) {
-            String serviceIp = serviceMetaData.getServerIp();
-            int servicePort = serviceMetaData.getServerPort();
+        //根据服务提供者地址列表初始化Channel阻塞队列,并以地址为Key,地址对应的Channel阻塞队列为value,存入channelPoolMap
+        for (InetSocketAddress socketAddress : socketAddressSet) {
+            openChannelPool(socketAddress);
+        }
 
-            InetSocketAddress socketAddress = new InetSocketAddress(serviceIp, servicePort);
-            socketAddressSet.add(socketAddress);
+        //订阅服务提供者变更,动态维护通道池
+        if (subscribed.compareAndSet(false, true)) {
+            RegisterCenter.singleton().subscribeProviderChange(this);
         }
 
-        //根据服务提供者地址列表初始化Channel阻塞队列,并以地址为Key,地址对应的Channel阻塞队列为value,存入channelPoolMap
+        //等待每个服务提供者至少建立一个通道(或超时)
+        long deadline = System.currentTimeMillis() + channelWarmupTimeout;
         for (InetSocketAddress socketAddress : socketAddressSet) {
-            try {
-                int realChannelConnectSize = 0;
-                while (realChannelConnectSize < channelConnectSize) {
-                    // netty的通道
-                    Channel channel = null;
-                    while (channel == null) {
-                        //若channel不存在,则注册新的Netty Channel
-                        channel = registerChannel(socketAddress);
+            ArrayBlockingQueue<Channel> channelQueue = channelPoolMap.get(socketAddress);
+            while (channelQueue.isEmpty() && System.currentTimeMillis() < deadline) {
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            if (channelQueue.isEmpty()) {
+                logger.warn("channel pool warm up timeout, provider:" + socketAddress + ", keep connecting in background.");
+            }
+        }
+    }
+
+
+    @Override
+    public void onProviderChange(String serviceKey, List<ProviderService> providerServices,
+                                 List<ProviderService> addedProviders, List<ProviderService> removedProviders) {
+        //新上线的服务提供者:异步建立通道池
+        for (ProviderService providerService : addedProviders) {
+            rememberUdsPath(providerService);
+            openChannelPool(new InetSocketAddress(providerService.getServerIp(), providerService.getServerPort()));
+        }
+
+        if (removedProviders.isEmpty()) {
+            return;
+        }
+
+        //下线的服务提供者:不再被任何服务引用时才摘除通道池与端点状态(同一地址可能提供多个服务)
+        Set<InetSocketAddress> referencedAddressSet = Sets.newHashSet();
+        for (List<ProviderService> serviceMetaDataModels : RegisterCenter.singleton().getServiceMetaDataMap4Consume().values()) {
+            for (ProviderService serviceMetaData : serviceMetaDataModels) {
+                referencedAddressSet.add(new InetSocketAddress(serviceMetaData.getServerIp(), serviceMetaData.getServerPort()));
+            }
+        }
+        for (ProviderService providerService : removedProviders) {
+            InetSocketAddress socketAddress = new InetSocketAddress(providerService.getServerIp(), providerService.getServerPort());
+            if (!referencedAddressSet.contains(socketAddress)) {
+                closeChannelPool(socketAddress);
+                udsPathMap.remove(socketAddress);
+                EndpointStatus.remove(providerService.getServerIp(), providerService.getServerPort());
+            }
+        }
+    }
+
+
+    /**
+     * 记录同一主机上服务提供者监听的Unix域套接字路径
+     *
+     * @param providerService
+     */
+    private void rememberUdsPath(ProviderService providerService) {
+        if (udsBootstrap == null || !StringUtils.equals(providerService.getServerIp(), IPHelper.localIp())) {
+            return;
+        }
+        InetSocketAddress socketAddress = new InetSocketAddress(providerService.getServerIp(), providerService.getServerPort());
+        if (StringUtils.isBlank(providerService.getUdsPath())) {
+            //服务提供者重启后不再监听Unix域套接字
+            udsPathMap.remove(socketAddress);
+            return;
+        }
+        udsPathMap.put(socketAddress, providerService.getUdsPath());
+    }
+
+    /**
+     * 连接服务提供者：同一主机上监听了Unix域套接字的经由套接字文件连接，否则经由TCP连接
+     *
+     * @param socketAddress
+     * @return
+     */
+    private ChannelFuture connect(final InetSocketAddress socketAddress) {
+        final String udsPath = udsPathMap.get(socketAddress);
+        if (udsPath == null) {
+            return bootstrap.connect(socketAddress);
+        }
+        return udsBootstrap.connect(new DomainSocketAddress(udsPath)).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                if (!future.isSuccess()) {
+                    //套接字文件不可用(如服务端未监听或无权限),之后回退到TCP
+                    logger.warn("connect to unix domain socket " + udsPath + " failed, fall back to tcp:" + socketAddress, future.cause());
+                    udsPathMap.remove(socketAddress, udsPath);
+                }
+            }
+        });
+    }
+
+    /**
+     * 为服务提供者地址建立通道池并异步发起连接(已存在则忽略)
+     *
+     * @param socketAddress
+     */
+    private void openChannelPool(InetSocketAddress socketAddress) {
+        if (channelPoolMap.putIfAbsent(socketAddress, new ArrayBlockingQueue<Channel>(channelConnectSize)) != null) {
+            return;
+        }
+        logger.info("open channel pool, provider:" + socketAddress);
+        for (int i = 0; i < channelConnectSize; i++) {
+            connectAsync(socketAddress, 0);
+        }
+    }
+
+
+    /**
+     * 摘除服务提供者的通道池，关闭池中空闲的通道；正在使用中的通道在`release`时关闭。
+     *
+     * @param socketAddress
+     */
+    private void closeChannelPool(InetSocketAddress socketAddress) {
+        ArrayBlockingQueue<Channel> channelQueue = channelPoolMap.remove(socketAddress);
+        if (channelQueue == null) {
+            return;
+        }
+        logger.info("close channel pool, provider:" + socketAddress);
+        Channel channel;
+        while ((channel = channelQueue.poll()) != null) {
+            channel.close();
+        }
+    }
+
+
+    /**
+     * 异步为服务提供者地址建立一个新的Channel，成功后放入通道池，失败按指数退避重试。
+     *
+     * @param socketAddress
+     * @param attempt       已重试次数
+     */
+    private void connectAsync(InetSocketAddress socketAddress, int attempt) {
+        //服务提供者已下线,停止连接
+        if (!channelPoolMap.containsKey(socketAddress)) {
+            return;
+        }
+        //先排队再尝试获取并行连接名额,名额已满时由进行中的连接完成后发起(入队后再检查,不会错过刚释放的名额)
+        pendingConnects.offer(new PendingConnect(socketAddress, attempt));
+        connectPending();
+    }
+
+    /**
+     * 在并行连接名额内依次发起排队中的连接
+     */
+    private void connectPending() {
+        while (!pendingConnects.isEmpty() && connectPermits.tryAcquire()) {
+            PendingConnect pending = pendingConnects.poll();
+            //队列已被其他线程取空,或服务提供者已下线
+            if (pending == null || !channelPoolMap.containsKey(pending.socketAddress)) {
+                connectPermits.release();
+                continue;
+            }
+            doConnect(pending.socketAddress, pending.attempt);
+        }
+    }
+
+    private void doConnect(final InetSocketAddress socketAddress, final int attempt) {
+        connect(socketAddress).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                connectPermits.release();
+                //释放名额后发起下一个排队的连接(提交到线程组,连接立即失败时不会在监听器中层层递归)
+                if (!pendingConnects.isEmpty()) {
+                    group.execute(connectPendingTask);
+                }
+                if (future.isSuccess()) {
+                    watchChannel(socketAddress, future.channel());
+                    ArrayBlockingQueue<Channel> channelQueue = channelPoolMap.get(socketAddress);
+                    if (channelQueue == null || !channelQueue.offer(future.channel())) {
+                        future.channel().close();
                     }
-                    //计数器,初始化的时候存入阻塞队列的Netty Channel个数不超过channelConnectSize
-                    realChannelConnectSize++;
-
-                    //将新注册的Netty Channel存入阻塞队列channelArrayBlockingQueue
-                    // 并将阻塞队列channelArrayBlockingQueue作为value存入channelPoolMap
-                    ArrayBlockingQueue<Channel> channelArrayBlockingQueue = channelPoolMap.get(socketAddress);
-                    if (channelArrayBlockingQueue == null) {
-                        channelArrayBlockingQueue = new ArrayBlockingQueue<Channel>(channelConnectSize);
-                        channelPoolMap.put(socketAddress, channelArrayBlockingQueue);
+                    return;
+                }
+
+                //指数退避 + 随机抖动(取退避时间的一半到全部),避免大量连接同时重连
+                long backoff = Math.min(RECONNECT_BASE_DELAY << Math.min(attempt, 16), RECONNECT_MAX_DELAY);
+                long delay = backoff / 2 + RandomUtils.nextLong(0, backoff / 2 + 1);
+                logger.warn("connect to " + socketAddress + " failed, retry after " + delay + "ms.", future.cause());
+                group.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        connectAsync(socketAddress, attempt + 1);
                     }
-                    channelArrayBlockingQueue.offer(channel);
+                }, delay, TimeUnit.MILLISECONDS);
+            }
+        });
+    }
+
+
+    /**
+     * 监听通道关闭：空闲在池中的通道被关闭(如心跳超时)时移出通道池并异步补充新连接。
+     * 使用中的通道被关闭时由`release`负责补充。
+     *
+     * @param socketAddress
+     * @param channel
+     */
+    private void watchChannel(final InetSocketAddress socketAddress, Channel channel) {
+        channel.closeFuture().addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                ArrayBlockingQueue<Channel> channelQueue = channelPoolMap.get(socketAddress);
+                if (channelQueue != null && channelQueue.remove(future.channel())) {
+                    logger.warn("evict closed channel from pool, provider:" + socketAddress);
+                    connectAsync(socketAddress, 0);
                 }
-            } catch (Exception e) {
-                throw new RuntimeException(e);
             }
-        }
+        });
     }
 
 
@@ -122,27 +405,29 @@ public class NettyChannelPoolFactory {
     /**
      * Channel使用完毕之后,回收到阻塞队列arrayBlockingQueue
      *
+     * 不可用的通道异步关闭，并提交后台重连任务补充，调用线程不会阻塞。
+     *
      * @param arrayBlockingQueue
      * @param channel
      * @param inetSocketAddress
      */
     public void release(ArrayBlockingQueue<Channel> arrayBlockingQueue, Channel channel, InetSocketAddress inetSocketAddress) {
-        if (arrayBlockingQueue == null) {
+        if (arrayBlockingQueue == null || channel == null) {
             return;
         }
 
-        //回收之前先检查channel是否可用,不可用的话,重新注册一个,放入阻塞队列
-        if (channel == null || !channel.isActive() || !channel.isOpen() || !channel.isWritable()) {
-            if (channel != null) {
-                channel.deregister().syncUninterruptibly().awaitUninterruptibly();
-                channel.closeFuture().syncUninterruptibly().awaitUninterruptibly();
-            }
-            Channel newChannel = null;
-            while (newChannel == null) {
-                logger.debug("---------register new Channel-------------");
-                newChannel = registerChannel(inetSocketAddress);
-            }
-            arrayBlockingQueue.offer(newChannel);
+        //服务提供者已下线(通道池已摘除或已重建),直接关闭通道
+        if (channelPoolMap.get(inetSocketAddress) != arrayBlockingQueue) {
+            channel.close();
+            return;
+        }
+
+        //回收之前先检查channel是否可用,不可用的话,异步关闭并在后台重新建立一个放入阻塞队列
+        //(写入是异步批量的,通道暂时不可写只是出站缓冲区积压,不视为故障)
+        if (!channel.isActive() || !channel.isOpen()) {
+            logger.debug("---------register new Channel-------------");
+            channel.close();
+            connectAsync(inetSocketAddress, 0);
             return;
         }
         arrayBlockingQueue.offer(channel);
@@ -150,76 +435,43 @@ public class NettyChannelPoolFactory {
 
 
     /**
-     * 为服务提供者地址socketAddress注册新的Channel，
-     * 如果从Zookeeper中心获取服务者列表有200个，而池子中允许的连接数最多是100个，则要初始化100个连接到服务端的netty-client通道。
+     * 在截止时间前从通道池中借出一个可用通道，不可用的通道交还通道池异步关闭替换。
      *
-     * @param socketAddress
-     * @return
+     * @param arrayBlockingQueue
+     * @param inetSocketAddress
+     * @param deadline
+     * @return 截止时间内没有可用通道时返回null
+     * @throws InterruptedException
      */
-    public Channel registerChannel(InetSocketAddress socketAddress) {
-        try {
-            EventLoopGroup group = new NioEventLoopGroup(10);
-            Bootstrap bootstrap = new Bootstrap();
-            bootstrap.remoteAddress(socketAddress);
-
-            bootstrap.group(group)
-                    .channel(NioSocketChannel.class)
-                    .option(ChannelOption.TCP_NODELAY, true)
-                    .handler(new ChannelInitializer<SocketChannel>() {
-                        @Override
-                        public void initChannel(SocketChannel ch) throws Exception {
-                            //注册Netty编码器
-                            ch.pipeline().addLast(new NettyEncoderHandler(serializeType));
-                            //注册Netty解码器
-                            ch.pipeline().addLast(new NettyDecoderHandler(AresResponse.class, serializeType));
-                            //注册客户端业务逻辑处理handler
-                            ch.pipeline().addLast(new NettyClientInvokeHandler());
-                        }
-                    });
-
-            // 发起客户端对服务端的连接，并同步等待
-            ChannelFuture channelFuture = bootstrap.connect().sync();
-            // !!!重要：Future可以返回连接通道本身
-            final Channel newChannel = channelFuture.channel();
-
-            // `isSuccessHolder`是当前线程想要等待注册结果的标记，这里用`CountDownLatch`来做同步等待连接建立
-            final List<Boolean> isSuccessHolder = Lists.newArrayListWithCapacity(1);
-            final CountDownLatch connectedLatch = new CountDownLatch(1);
-
-            // 监听Channel是否建立成功(建议使用Listener来做异步监听)
-            channelFuture.addListener(new ChannelFutureListener() {
-                @Override
-                public void operationComplete(ChannelFuture future) throws Exception {
-                    //若Channel建立成功,保存建立成功的标记
-                    if (future.isSuccess()) {
-                        isSuccessHolder.add(Boolean.TRUE);
-                    } else {
-                        //若Channel建立失败,保存建立失败的标记
-                        future.cause().printStackTrace();
-                        isSuccessHolder.add(Boolean.FALSE);
-                    }
-                    connectedLatch.countDown();
-                }
-            });
-
-            // 客户端线程等待异步监听回调处理`CountDownLatch`
-            connectedLatch.await();
-
-            //如果Channel建立成功,返回新建的Channel
-            if (isSuccessHolder.get(0)) {
-                return newChannel;
-            }
-        } catch (Exception e) {
-            // 建立出错直接抛错
-            throw new RuntimeException(e);
+    public Channel borrow(ArrayBlockingQueue<Channel> arrayBlockingQueue, InetSocketAddress inetSocketAddress, long deadline) throws InterruptedException {
+        //调用线程只从通道池获取通道,不参与建连(建连与重连全部由通道池在后台异步完成)
+        Channel channel = arrayBlockingQueue.poll(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+        //若获取的channel通道已经不可用,交还通道池异步关闭替换,再获取一个
+        while (channel != null && (!channel.isOpen() || !channel.isActive())) {
+            logger.warn("----------retry get new Channel------------");
+            release(arrayBlockingQueue, channel, inetSocketAddress);
+            channel = arrayBlockingQueue.poll(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
         }
-        // Success == false 直接返回null
-        return null;
+        return channel;
     }
 
-
     public static NettyChannelPoolFactory channelPoolFactoryInstance() {
         return channelPoolFactory;
     }
 
+    /**
+     * 排队等待并行连接名额的连接
+     */
+    private static class PendingConnect {
+
+        private final InetSocketAddress socketAddress;
+        //已重试次数
+        private final int attempt;
+
+        private PendingConnect(InetSocketAddress socketAddress, int attempt) {
+            this.socketAddress = socketAddress;
+            this.attempt = attempt;
+        }
+    }
+
 }
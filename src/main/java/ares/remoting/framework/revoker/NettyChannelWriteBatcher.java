@@ -0,0 +1,151 @@
+package ares.remoting.framework.revoker;
+
+import ares.remoting.framework.helper.PropertyConfigeHelper;
+import ares.remoting.framework.model.AresRequest;
+import ares.remoting.framework.model.AresResponse;
+import ares.remoting.framework.model.MessageTypeEnum;
+import ares.remoting.framework.model.ResponseStatusEnum;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 消费端通道写入批处理。
+ *
+ * 调用线程只把请求放入通道的待写队列并返回，不等待写入完成；通道所在的`EventLoop`每轮执行一次排空任务，
+ * 将队列中的请求逐个write、最后只flush一次(每积累client_write_batch_size个请求也flush一次)，
+ * 高并发小报文时多个请求合并为一次系统调用。写入失败时直接以发送失败结束对应的待返回结果。
+ *
+ * @version $Id$
+ */
+public class NettyChannelWriteBatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(NettyChannelWriteBatcher.class);
+
+    /** 通道上的待写队列 */
+    private static final AttributeKey<WriteQueue> WRITE_QUEUE = AttributeKey.valueOf("ares.writeQueue");
+
+    /** 单次排空最多写入的请求数，达到后flush并让出EventLoop */
+    private static final int MAX_BATCH_SIZE = Math.max(PropertyConfigeHelper.getClientWriteBatchSize(), 1);
+
+    /**
+     * 将请求放入通道的待写队列，不等待写入完成
+     *
+     * @param channel
+     * @param request
+     */
+    public static void write(Channel channel, AresRequest request) {
+        Attribute<WriteQueue> attribute = channel.attr(WRITE_QUEUE);
+        WriteQueue writeQueue = attribute.get();
+        if (writeQueue == null) {
+            WriteQueue newWriteQueue = new WriteQueue(channel);
+            writeQueue = attribute.setIfAbsent(newWriteQueue);
+            if (writeQueue == null) {
+                writeQueue = newWriteQueue;
+            }
+        }
+        writeQueue.enqueue(request);
+    }
+
+    /**
+     * 以发送失败结束一次调用的待返回结果
+     *
+     * @param request
+     */
+    private static void failRequest(AresRequest request, Throwable cause) {
+        logger.error("write request failed. uniqueKey:" + request.getUniqueKey(), cause);
+        if (request.isStream()) {
+            //流式调用请求发送失败,以发送失败结束对应的结果迭代器
+            AresResponse response = AresResponse.of(request, ResponseStatusEnum.SendFailed);
+            response.setMessageType(MessageTypeEnum.StreamEnd);
+            RevokerStreamIterator.onFrame(response);
+        } else if (!request.isOneway()) {
+            //上传调用的分块发送失败时同时停止上传
+            AresResponse response = AresResponse.of(request, ResponseStatusEnum.SendFailed);
+            RevokerUploadStream.onResponse(response);
+            RevokerResponseHolder.putResultValue(response);
+        }
+    }
+
+    /**
+     * 通道的待写队列，同一时刻最多只有一个排空任务在EventLoop中排队
+     */
+    private static class WriteQueue implements Runnable {
+
+        private final Channel channel;
+        private final Queue<AresRequest> pendingRequests = new ConcurrentLinkedQueue<AresRequest>();
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+        private WriteQueue(Channel channel) {
+            this.channel = channel;
+        }
+
+        private void enqueue(AresRequest request) {
+            pendingRequests.offer(request);
+            schedule();
+        }
+
+        private void schedule() {
+            if (!scheduled.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                channel.eventLoop().execute(this);
+            } catch (RejectedExecutionException e) {
+                //EventLoop已关闭,队列中的请求全部失败
+                scheduled.set(false);
+                AresRequest request;
+                while ((request = pendingRequests.poll()) != null) {
+                    failRequest(request, e);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            int written = 0;
+            AresRequest request;
+            while (written < MAX_BATCH_SIZE && (request = pendingRequests.poll()) != null) {
+                channel.write(request).addListener(new WriteFailureListener(request));
+                written++;
+            }
+            if (written > 0) {
+                channel.flush();
+            }
+
+            //先清除标记再检查队列,保证清除标记前入队的请求不会被遗漏
+            scheduled.set(false);
+            if (!pendingRequests.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+    /**
+     * 写入失败监听
+     */
+    private static class WriteFailureListener implements ChannelFutureListener {
+
+        private final AresRequest request;
+
+        private WriteFailureListener(AresRequest request) {
+            this.request = request;
+        }
+
+        @Override
+        public void operationComplete(ChannelFuture future) throws Exception {
+            if (!future.isSuccess()) {
+                failRequest(request, future.cause());
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package ares.remoting.framework.revoker;
+
+import ares.remoting.framework.model.AresRequest;
+import ares.remoting.framework.model.AresResponse;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.timeout.IdleState;
+import io.netty.handler.timeout.IdleStateEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 客户端心跳处理器：通道一个心跳间隔未读到数据时发送心跳，连续`heartbeat_max_miss`次未收到任何数据则判定为半开连接并关闭，
+ * 由通道池负责补充新连接。收到的心跳响应在此处消费，不再向后传递。
+ *
+ * 每个通道一个实例(持有未响应计数)。
+ *
+ * @version $Id$
+ */
+public class NettyClientHeartbeatHandler extends ChannelInboundHandlerAdapter {
+
+    private static final Logger logger = LoggerFactory.getLogger(NettyClientHeartbeatHandler.class);
+
+    //连续未收到心跳响应的最大次数
+    private final int maxMissedHeartbeats;
+    //连续未收到响应的心跳数
+    private int missedHeartbeats = 0;
+
+    public NettyClientHeartbeatHandler(int maxMissedHeartbeats) {
+        this.maxMissedHeartbeats = maxMissedHeartbeats;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        //收到任何数据都说明连接存活
+        missedHeartbeats = 0;
+        if (msg instanceof AresResponse && ((AresResponse) msg).isHeartbeat()) {
+            return;
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (!(evt instanceof IdleStateEvent) || ((IdleStateEvent) evt).state() != IdleState.READER_IDLE) {
+            ctx.fireUserEventTriggered(evt);
+            return;
+        }
+
+        if (missedHeartbeats >= maxMissedHeartbeats) {
+            logger.warn("missed " + missedHeartbeats + " heartbeats, close channel:" + ctx.channel());
+            ctx.close();
+            return;
+        }
+        missedHeartbeats++;
+        ctx.writeAndFlush(AresRequest.heartbeat());
+    }
+}
@@ -1,6 +1,7 @@
 package ares.remoting.framework.revoker;
 
 import ares.remoting.framework.model.AresResponse;
+import ares.remoting.framework.model.MessageTypeEnum;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 
@@ -21,6 +22,19 @@ public class NettyClientInvokeHandler extends SimpleChannelInboundHandler<AresRe
         ctx.flush();
     }
 
+    /**
+     * 连接断开(对端因报文超长拒绝、心跳超时等)：在该通道上等待响应的调用立即失败，不必等到超时
+     *
+     * @param ctx
+     * @throws Exception
+     */
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        RevokerResponseHolder.failChannel(ctx.channel());
+        RevokerStreamIterator.failChannel(ctx.channel());
+        super.channelInactive(ctx);
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
         cause.printStackTrace();
@@ -36,6 +50,18 @@ public class NettyClientInvokeHandler extends SimpleChannelInboundHandler<AresRe
      */
     @Override
     protected void channelRead0(ChannelHandlerContext channelHandlerContext, AresResponse response) throws Exception {
+        //流式调用的分块与结束消息交给对应的结果迭代器
+        if (response.isStreamFrame()) {
+            RevokerStreamIterator.onFrame(response);
+            return;
+        }
+        //上传调用的服务端授信
+        if (response.getMessageType() == MessageTypeEnum.UploadCredit) {
+            RevokerUploadStream.onCredit(response);
+            return;
+        }
+        //上传调用已返回结果时停止上传
+        RevokerUploadStream.onResponse(response);
         //将Netty异步返回的结果存入阻塞队列,以便调用端同步获取(同步服务、而netty是NIO、异步返回的结果，因此根据配置的超时时间来判断结果是否可用)
         RevokerResponseHolder.putResultValue(response);
     }
@@ -0,0 +1,21 @@
+package ares.remoting.framework.revoker;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * 广播调用结果合并器，通过服务引用的`merger`属性配置实现类(需有无参构造函数)。
+ *
+ * @version $Id$
+ */
+public interface ResultMerger {
+
+    /**
+     * 合并各服务提供者的调用结果
+     *
+     * @param method  调用的方法
+     * @param results 调用成功的服务提供者返回的结果(顺序不固定)
+     * @return 合并后的结果
+     */
+    Object merge(Method method, List<Object> results);
+}
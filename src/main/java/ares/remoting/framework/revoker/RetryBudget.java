@@ -0,0 +1,84 @@
+package ares.remoting.framework.revoker;
+
+import ares.remoting.framework.helper.PropertyConfigeHelper;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 重试预算(令牌桶)。
+ *
+ * 每次首发调用存入ratio个令牌，每次重试(包括并行调用的额外副本)取出1个令牌，桶容量有上限。
+ * 服务提供者大面积故障时重试量最多为首发调用量的ratio倍，避免重试放大故障。
+ *
+ * @version $Id$
+ */
+public class RetryBudget {
+
+    /** 令牌按千分之一精度存放 */
+    private static final long SCALE = 1000L;
+
+    /** 每次首发调用存入的令牌数(已放大) */
+    private final long depositAmount;
+    /** 桶容量(已放大) */
+    private final long maxTokens;
+    /** 当前令牌数(已放大) */
+    private final AtomicLong tokens;
+
+    private RetryBudget(double ratio, int maxTokens) {
+        this.depositAmount = (long) (Math.max(ratio, 0D) * SCALE);
+        this.maxTokens = Math.max(maxTokens, 1) * SCALE;
+        this.tokens = new AtomicLong(this.maxTokens);
+    }
+
+    /**
+     * 按配置生成重试预算
+     *
+     * @return
+     */
+    public static RetryBudget of() {
+        return new RetryBudget(PropertyConfigeHelper.getClientRetryBudgetRatio(), PropertyConfigeHelper.getClientRetryBudgetMaxTokens());
+    }
+
+    /**
+     * 按指定比例与容量生成预算
+     *
+     * @param ratio
+     * @param maxTokens
+     * @return
+     */
+    public static RetryBudget of(double ratio, int maxTokens) {
+        return new RetryBudget(ratio, maxTokens);
+    }
+
+    /**
+     * 首发调用存入令牌
+     */
+    public void deposit() {
+        while (true) {
+            long current = tokens.get();
+            if (current >= maxTokens) {
+                return;
+            }
+            if (tokens.compareAndSet(current, Math.min(current + depositAmount, maxTokens))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 重试前取出一个令牌，令牌不足时不允许重试
+     *
+     * @return
+     */
+    public boolean tryWithdraw() {
+        while (true) {
+            long current = tokens.get();
+            if (current < SCALE) {
+                return false;
+            }
+            if (tokens.compareAndSet(current, current - SCALE)) {
+                return true;
+            }
+        }
+    }
+}
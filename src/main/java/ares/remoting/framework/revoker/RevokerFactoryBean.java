@@ -31,6 +31,26 @@ public class RevokerFactoryBean implements FactoryBean, InitializingBean {
     private String remoteAppKey;
     //服务分组组名
     private String groupName = "default";
+    //集群调用模式
+    private String clusterMode;
+    //失败切换模式下的最大重试次数
+    private int retries = 2;
+    //并行调用模式下的并行数
+    private int forks = 2;
+    //开启对冲请求的方法名,多个以逗号分隔
+    private String hedgingMethods;
+    //单向调用的方法名,多个以逗号分隔
+    private String onewayMethods;
+    //在消费端缓存调用结果的方法名,多个以逗号分隔
+    private String cacheMethods;
+    //同一进程内发布了该服务时是否直接调用本地服务对象
+    private boolean injvm = false;
+    //本地直接调用时是否深拷贝参数与返回值
+    private boolean injvmCopy = false;
+    //广播调用结果合并器实现类
+    private String merger;
+    //广播调用部分失败时的处理策略
+    private String broadcastPolicy;
 
     @Override
     public Object getObject() throws Exception {
@@ -77,7 +97,20 @@ public class RevokerFactoryBean implements FactoryBean, InitializingBean {
         NettyChannelPoolFactory.channelPoolFactoryInstance().initChannelPoolFactory(providerMap);
 
         //获取服务提供者代理对象(是JDK的动态代理)
-        RevokerProxyBeanFactory proxyFactory = RevokerProxyBeanFactory.singleton(targetInterface, timeout, clusterStrategy);
+        // 每个服务引用一个代理工厂,各自维护自己服务的路由快照
+        RevokerProxyBeanFactory proxyFactory = new RevokerProxyBeanFactory(targetInterface, timeout, clusterStrategy);
+        proxyFactory.setClusterMode(clusterMode);
+        proxyFactory.setRetries(retries);
+        proxyFactory.setForks(forks);
+        proxyFactory.setHedgingMethods(hedgingMethods);
+        proxyFactory.setOnewayMethods(onewayMethods);
+        proxyFactory.setCacheMethods(cacheMethods);
+        proxyFactory.setRemoteAppKey(remoteAppKey);
+        proxyFactory.setGroupName(groupName);
+        proxyFactory.setInjvm(injvm);
+        proxyFactory.setInjvmCopy(injvmCopy);
+        proxyFactory.setResultMerger(merger);
+        proxyFactory.setBroadcastPolicy(broadcastPolicy);
         this.serviceObject = proxyFactory.getProxy();
 
         //将消费者信息注册到注册中心(让注册中心知道有多少服务消费者)
@@ -138,4 +171,84 @@ public class RevokerFactoryBean implements FactoryBean, InitializingBean {
     public void setGroupName(String groupName) {
         this.groupName = groupName;
     }
+
+    public String getClusterMode() {
+        return clusterMode;
+    }
+
+    public void setClusterMode(String clusterMode) {
+        this.clusterMode = clusterMode;
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    public void setRetries(int retries) {
+        this.retries = retries;
+    }
+
+    public int getForks() {
+        return forks;
+    }
+
+    public void setForks(int forks) {
+        this.forks = forks;
+    }
+
+    public String getHedgingMethods() {
+        return hedgingMethods;
+    }
+
+    public void setHedgingMethods(String hedgingMethods) {
+        this.hedgingMethods = hedgingMethods;
+    }
+
+    public String getOnewayMethods() {
+        return onewayMethods;
+    }
+
+    public void setOnewayMethods(String onewayMethods) {
+        this.onewayMethods = onewayMethods;
+    }
+
+    public String getCacheMethods() {
+        return cacheMethods;
+    }
+
+    public void setCacheMethods(String cacheMethods) {
+        this.cacheMethods = cacheMethods;
+    }
+
+    public boolean isInjvm() {
+        return injvm;
+    }
+
+    public void setInjvm(boolean injvm) {
+        this.injvm = injvm;
+    }
+
+    public boolean isInjvmCopy() {
+        return injvmCopy;
+    }
+
+    public void setInjvmCopy(boolean injvmCopy) {
+        this.injvmCopy = injvmCopy;
+    }
+
+    public String getMerger() {
+        return merger;
+    }
+
+    public void setMerger(String merger) {
+        this.merger = merger;
+    }
+
+    public String getBroadcastPolicy() {
+        return broadcastPolicy;
+    }
+
+    public void setBroadcastPolicy(String broadcastPolicy) {
+        this.broadcastPolicy = broadcastPolicy;
+    }
 }
@@ -0,0 +1,265 @@
+package ares.remoting.framework.revoker;
+
+import ares.remoting.framework.cluster.status.CircuitBreaker;
+import ares.remoting.framework.cluster.status.EndpointStatus;
+import ares.remoting.framework.model.AresRequest;
+import ares.remoting.framework.model.AresResponse;
+import ares.remoting.framework.model.MessageTypeEnum;
+import ares.remoting.framework.model.ProviderService;
+import ares.remoting.framework.model.ResponseStatusEnum;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 向某一个路由端点发起的一次调用(一次尝试)。
+ *
+ * 封装请求组装、端点在途名额与熔断许可的获取、异步提交、响应状态解析以及调用结束后的端点状态统计，
+ * 失败重试、并行调用等集群调用模式由多个`RevokerInvocation`组合而成。
+ *
+ * @version $Id$
+ */
+public class RevokerInvocation {
+
+    /** 路由端点 */
+    private final ServiceRoute.RouteEndpoint endpoint;
+    /** 请求调用对象 */
+    private final AresRequest request;
+    /** 异步调用结果 */
+    private Future<AresResponse> future;
+    /** 发起调用的时间 */
+    private long startTime;
+    /** 端点熔断许可 */
+    private long breakerPermit = CircuitBreaker.DENIED;
+    /** 调用是否失败 */
+    private boolean failed = true;
+    /** 调用没有可判定成败的结果(服务端过载拒绝、被放弃的并行调用)，不计入熔断统计 */
+    private boolean unsettled = false;
+    /** 调用结果是否已被读取 */
+    private boolean consumed = false;
+
+    private RevokerInvocation(ServiceRoute.RouteEndpoint endpoint, AresRequest request) {
+        this.endpoint = endpoint;
+        this.request = request;
+    }
+
+    /**
+     * 组装一次调用
+     *
+     * @param endpoint        路由端点
+     * @param targetInterface 服务接口
+     * @param method          调用方法
+     * @param args            调用参数
+     * @param timeout         本次调用的超时时间
+     * @return
+     */
+    public static RevokerInvocation of(ServiceRoute.RouteEndpoint endpoint, Class<?> targetInterface, Method method, Object[] args, long timeout) {
+        //复制一份服务提供者信息
+        ProviderService newProvider = endpoint.getProviderService().copy();
+        //设置本次调用服务的方法以及接口
+        newProvider.setServiceMethod(method);
+        newProvider.setServiceItf(targetInterface);
+
+        //声明调用AresRequest对象,AresRequest表示发起一次调用所包含的信息
+        AresRequest request = new AresRequest();
+        //设置本次调用的唯一标识(客户端调用使用UUID也无所谓)
+        request.setUniqueKey(UUID.randomUUID().toString() + "-" + Thread.currentThread().getId());
+        //设置本次调用的服务提供者信息
+        request.setProviderService(newProvider);
+        //设置本次调用的超时时间
+        request.setInvokeTimeout(timeout);
+        //设置本次调用的方法名称
+        request.setInvokedMethodName(method.getName());
+        //设置本次调用的方法参数信息
+        request.setArgs(args);
+        return new RevokerInvocation(endpoint, request);
+    }
+
+    /**
+     * 组装一次批量调用：同一方法的多组参数放在一个请求中发送
+     *
+     * @param endpoint
+     * @param targetInterface
+     * @param method
+     * @param batchArgs       多组调用参数
+     * @param timeout
+     * @return
+     */
+    public static RevokerInvocation batch(ServiceRoute.RouteEndpoint endpoint, Class<?> targetInterface, Method method, List<Object[]> batchArgs, long timeout) {
+        RevokerInvocation invocation = of(endpoint, targetInterface, method, null, timeout);
+        invocation.request.setMessageType(MessageTypeEnum.Batch);
+        invocation.request.setBatchArgs(batchArgs);
+        return invocation;
+    }
+
+    /**
+     * 组装一次上传调用：下标为argIndex的`Iterator`参数不随请求发送，由`RevokerUploadStream`分块上传
+     *
+     * @param endpoint
+     * @param targetInterface
+     * @param method
+     * @param args            调用参数(上传参数位置为null)
+     * @param argIndex        上传参数的下标
+     * @param timeout
+     * @return
+     */
+    public static RevokerInvocation upload(ServiceRoute.RouteEndpoint endpoint, Class<?> targetInterface, Method method, Object[] args, int argIndex, long timeout) {
+        RevokerInvocation invocation = of(endpoint, targetInterface, method, args, timeout);
+        invocation.request.setMessageType(MessageTypeEnum.Upload);
+        invocation.request.setUploadArgIndex(argIndex);
+        return invocation;
+    }
+
+    /**
+     * 组装一次单向调用：只把请求写入通道，不注册待返回结果、不等待服务端响应
+     *
+     * @param endpoint
+     * @param targetInterface
+     * @param method
+     * @param args
+     * @param timeout         获取通道与写入的超时时间
+     * @return
+     */
+    public static RevokerInvocation oneway(ServiceRoute.RouteEndpoint endpoint, Class<?> targetInterface, Method method, Object[] args, long timeout) {
+        RevokerInvocation invocation = of(endpoint, targetInterface, method, args, timeout);
+        invocation.request.setOneway(true);
+        return invocation;
+    }
+
+    /**
+     * 占用端点在途名额与熔断许可后提交到调用线程池
+     *
+     * @param executor
+     * @return
+     */
+    public Future<AresResponse> start(ExecutorService executor) {
+        beginInvoke();
+        future = executor.submit(RevokerServiceCallable.of(endpoint, request));
+        return future;
+    }
+
+    /**
+     * 占用端点在途名额与熔断许可后提交到调用线程池，结果进入`CompletionService`
+     *
+     * @param completionService
+     * @return
+     */
+    public Future<AresResponse> start(CompletionService<AresResponse> completionService) {
+        beginInvoke();
+        future = completionService.submit(RevokerServiceCallable.of(endpoint, request));
+        return future;
+    }
+
+    private void beginInvoke() {
+        //统计服务提供者的在途请求数与调用耗时,供动态负载均衡算法与熔断使用
+        breakerPermit = endpoint.getEndpointStatus().tryBeginInvoke();
+        if (breakerPermit == CircuitBreaker.DENIED) {
+            //选取后端点被其他调用占满或熔断,快速失败
+            throw new RuntimeException("service provider unavailable, " + endpoint.getSocketAddress());
+        }
+        startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * 等待并解析调用结果
+     *
+     * @param timeout 最长等待时间(毫秒)
+     * @return
+     */
+    public Object get(long timeout) {
+        AresResponse response;
+        try {
+            //获取调用的返回结果(阻塞若干秒等待返回)
+            response = future.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new RuntimeException("invoke timeout, " + endpoint.getSocketAddress() + ", uniqueKey:" + request.getUniqueKey(), e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        return readResponse(response);
+    }
+
+    private Object readResponse(AresResponse response) {
+        consumed = true;
+        if (response == null) {
+            throw new RuntimeException("invoke failed, " + endpoint.getSocketAddress() + ", uniqueKey:" + request.getUniqueKey());
+        }
+        //服务端因超过截止时间未执行本次调用
+        if (response.getStatus() == ResponseStatusEnum.DeadlineExceeded) {
+            throw new RuntimeException("invoke deadline exceeded on provider, uniqueKey:" + request.getUniqueKey());
+        }
+        //消费端写入通道失败,请求未发出
+        if (response.getStatus() == ResponseStatusEnum.SendFailed) {
+            throw new RuntimeException("send request failed, " + endpoint.getSocketAddress() + ", uniqueKey:" + request.getUniqueKey());
+        }
+        //请求已写出,响应返回前连接断开(如请求超过服务端的最大报文长度被拒绝)
+        if (response.getStatus() == ResponseStatusEnum.ChannelClosed) {
+            throw new RuntimeException("connection closed before response, " + endpoint.getSocketAddress() + ", uniqueKey:" + request.getUniqueKey());
+        }
+        //服务端过载拒绝,惩罚期内路由避开该服务提供者
+        if (response.getStatus() == ResponseStatusEnum.Overload) {
+            unsettled = true;
+            endpoint.getEndpointStatus().markOverload();
+            throw new RuntimeException("provider overloaded, " + endpoint.getSocketAddress() + ", uniqueKey:" + request.getUniqueKey());
+        }
+        failed = false;
+        return response.getResult();
+    }
+
+    /**
+     * 放弃本次调用(其他并行调用已成功)，未读取结果的调用不计入熔断统计
+     */
+    public void abandon() {
+        if (!consumed) {
+            unsettled = true;
+        }
+    }
+
+    /**
+     * 结束本次调用：取消仍在等待的任务，释放端点在途名额并统计耗时与成败；
+     * 没有可判定成败的结果时只交还熔断许可，熔断探测不会因此结束
+     */
+    public void finish() {
+        if (future == null) {
+            return;
+        }
+        if (!future.isDone()) {
+            future.cancel(true);
+            //从待返回结果表中移除,迟到的结果直接丢弃
+            RevokerResponseHolder.remove(request.getUniqueKey());
+        }
+        EndpointStatus endpointStatus = endpoint.getEndpointStatus();
+        if (unsettled) {
+            endpointStatus.releaseInvoke(System.currentTimeMillis() - startTime, breakerPermit);
+            return;
+        }
+        endpointStatus.endInvoke(System.currentTimeMillis() - startTime, !failed, breakerPermit);
+    }
+
+    /**
+     * 获取从发起调用到现在的耗时
+     *
+     * @return
+     */
+    public long getElapsed() {
+        return System.currentTimeMillis() - startTime;
+    }
+
+    public ServiceRoute.RouteEndpoint getEndpoint() {
+        return endpoint;
+    }
+
+    public AresRequest getRequest() {
+        return request;
+    }
+}
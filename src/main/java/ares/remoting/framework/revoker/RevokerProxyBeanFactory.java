@@ -1,19 +1,41 @@
 package ares.remoting.framework.revoker;
 
-import ares.remoting.framework.cluster.ClusterStrategy;
 import ares.remoting.framework.cluster.engine.ClusterEngine;
+import ares.remoting.framework.cluster.impl.BroadcastPolicyEnum;
+import ares.remoting.framework.cluster.impl.ClusterModeEnum;
+import ares.remoting.framework.cluster.status.CircuitBreaker;
+import ares.remoting.framework.helper.PropertyConfigeHelper;
 import ares.remoting.framework.model.AresRequest;
 import ares.remoting.framework.model.AresResponse;
+import ares.remoting.framework.model.MessageTypeEnum;
 import ares.remoting.framework.model.ProviderService;
+import ares.remoting.framework.serialization.engine.SerializerEngine;
 import ares.remoting.framework.zookeeper.IRegisterCenter4Invoker;
+import ares.remoting.framework.zookeeper.IRegisterCenter4Provider;
+import ares.remoting.framework.zookeeper.ProviderChangeListener;
 import ares.remoting.framework.zookeeper.RegisterCenter;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import io.netty.channel.Channel;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
-import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -22,12 +44,16 @@ import java.util.concurrent.TimeUnit;
 /**
  * 消费端bean代理工厂，发起一次服务调用，是JDK动态代理的`InvocationHandler`具体实现。
  *
+ * 每个服务引用一个实例，持有该服务的路由快照`ServiceRoute`，注册中心变更时重建并原子替换。
+ *
  * @author liyebing created on 16/10/3.
  * @version $Id$
  */
-public class RevokerProxyBeanFactory implements InvocationHandler {
+public class RevokerProxyBeanFactory implements InvocationHandler, ProviderChangeListener, BatchInvoker {
+
+    private static final Logger logger = LoggerFactory.getLogger(RevokerProxyBeanFactory.class);
 
-    private ExecutorService fixedThreadPool = null;
+    private static ExecutorService fixedThreadPool = null;
 
     //服务接口
     private Class<?> targetInterface;
@@ -37,89 +63,829 @@ public class RevokerProxyBeanFactory implements InvocationHandler {
     private static int threadWorkerNumber = 10;
     //负载均衡策略
     private String clusterStrategy;
+    //集群调用模式
+    private ClusterModeEnum clusterMode;
+    //失败切换模式下的最大重试次数
+    private int retries;
+    //并行调用模式下的并行数
+    private int forks;
+    //重试预算(每个服务引用一个)
+    private final RetryBudget retryBudget = RetryBudget.of();
+    //开启对冲请求的方法及其耗时记录器,key为方法名
+    private Map<String, LatencyRecorder> hedgingRecorders = ImmutableMap.of();
+    //广播调用结果合并器
+    private ResultMerger resultMerger = new DefaultResultMerger();
+    //广播调用部分失败时的处理策略
+    private BroadcastPolicyEnum broadcastPolicy = BroadcastPolicyEnum.AllOrFail;
+    //单向调用的方法名
+    private Set<String> onewayMethods = ImmutableSet.of();
+    //缓存调用结果的方法名
+    private Set<String> cacheMethods = ImmutableSet.of();
+    //调用结果缓存(配置了缓存方法时创建)
+    private RevokerResultCache resultCache;
+    //服务提供者唯一标识(本地直接调用时与本进程发布的服务匹配)
+    private String remoteAppKey;
+    //服务分组组名(本地直接调用时与本进程发布的服务匹配)
+    private String groupName = "default";
+    //同一进程内发布了该服务时是否直接调用本地服务对象
+    private boolean injvm = false;
+    //本地直接调用时是否深拷贝参数与返回值(保持远程调用的传值语义)
+    private boolean injvmCopy = false;
+    //对冲预算(每个服务引用一个)
+    private final RetryBudget hedgingBudget = RetryBudget.of(
+            PropertyConfigeHelper.getClientHedgingBudgetRatio(), PropertyConfigeHelper.getClientHedgingBudgetMaxTokens());
+    //服务路由快照(调用链路上只读这一个volatile引用)
+    private volatile ServiceRoute serviceRoute;
 
 
     public RevokerProxyBeanFactory(Class<?> targetInterface, int consumeTimeout, String clusterStrategy) {
         this.targetInterface = targetInterface;
         this.consumeTimeout = consumeTimeout;
         this.clusterStrategy = clusterStrategy;
-    }
+        this.clusterMode = ClusterModeEnum.Failfast;
 
-    @Override
-    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-        //服务接口名称
+        //根据本地缓存的服务提供者列表构建初始路由快照,并订阅后续变更
         String serviceKey = targetInterface.getName();
-        //获取某个接口的服务提供者列表
         IRegisterCenter4Invoker registerCenter4Consumer = RegisterCenter.singleton();
         List<ProviderService> providerServices = registerCenter4Consumer.getServiceMetaDataMap4Consume().get(serviceKey);
-        //根据软负载策略,从服务提供者列表选取本次调用的服务提供者
-        ClusterStrategy clusterStrategyService = ClusterEngine.queryClusterStrategy(clusterStrategy);
-        ProviderService providerService = clusterStrategyService.select(providerServices);
-        //复制一份服务提供者信息
-        ProviderService newProvider = providerService.copy();
-        //设置本次调用服务的方法以及接口
-        newProvider.setServiceMethod(method);
-        newProvider.setServiceItf(targetInterface);
-
-        //声明调用AresRequest对象,AresRequest表示发起一次调用所包含的信息
-        final AresRequest request = new AresRequest();
-        //设置本次调用的唯一标识(客户端调用使用UUID也无所谓)
-        request.setUniqueKey(UUID.randomUUID().toString() + "-" + Thread.currentThread().getId());
-        //设置本次调用的服务提供者信息
-        request.setProviderService(newProvider);
-        //设置本次调用的超时时间
-        request.setInvokeTimeout(consumeTimeout);
-        //设置本次调用的方法名称
-        request.setInvokedMethodName(method.getName());
-        //设置本次调用的方法参数信息
-        request.setArgs(args);
+        this.serviceRoute = ServiceRoute.of(serviceKey, providerServices, ClusterEngine.queryClusterStrategy(clusterStrategy));
+        registerCenter4Consumer.subscribeProviderChange(this);
+    }
+
+    @Override
+    public void onProviderChange(String serviceKey, List<ProviderService> providerServices,
+                                 List<ProviderService> addedProviders, List<ProviderService> removedProviders) {
+        if (!StringUtils.equals(serviceKey, targetInterface.getName())) {
+            return;
+        }
+        //重建路由快照并整体替换
+        this.serviceRoute = ServiceRoute.of(serviceKey, providerServices, ClusterEngine.queryClusterStrategy(clusterStrategy));
+    }
+
+    /**
+     * 按方法的配置选择调用方式：本进程内直接调用、单向调用、流式调用、上传调用、查结果缓存，其余按对冲或集群调用模式调用
+     *
+     * @param proxy
+     * @param method
+     * @param args
+     * @return
+     * @throws Throwable
+     */
+    @Override
+    public Object invoke(Object proxy, final Method method, final Object[] args) throws Throwable {
+        //批量调用接口的方法直接由本类实现
+        if (method.getDeclaringClass() == BatchInvoker.class) {
+            @SuppressWarnings("unchecked")
+            List<Object[]> argsList = (List<Object[]>) args[args.length - 1];
+            if (args.length == 3) {
+                return invokeAll((String) args[0], (Class<?>[]) args[1], argsList);
+            }
+            return invokeAll((String) args[0], argsList);
+        }
+
+        //同一进程内发布了该服务时直接调用本地服务对象,不经过序列化与网络
+        ProviderService localProvider = injvm ? findLocalProvider() : null;
+        if (localProvider != null) {
+            Method localMethod = findInterfaceMethod(method);
+            if (localMethod != null) {
+                return localInvoke(localProvider, localMethod, args);
+            }
+        }
+
+        //整个调用(含重试)共用一个截止时间
+        final long deadline = System.currentTimeMillis() + consumeTimeout;
+
+        //单向调用只发送一次,不重试、不对冲
+        if (onewayMethods.contains(method.getName()) && method.getReturnType() == void.class) {
+            RevokerInvocation invocation = RevokerInvocation.oneway(serviceRoute.select(), targetInterface, method, args, consumeTimeout);
+            invocation.start(invokeExecutor());
+            try {
+                invocation.get(consumeTimeout);
+                return null;
+            } finally {
+                invocation.finish();
+            }
+        }
+
+        //返回Iterator的方法按流式调用,结果由服务端分块推送
+        if (method.getReturnType() == Iterator.class) {
+            return streamInvoke(method, args);
+        }
+
+        //含Iterator参数的方法按上传调用,该参数由消费端分块上传
+        int uploadArgIndex = uploadArgIndex(method);
+        if (uploadArgIndex >= 0) {
+            return uploadInvoke(method, args, uploadArgIndex, deadline);
+        }
 
+        //配置了缓存的方法先查结果缓存,同一参数的并发未命中只发起一次调用
+        if (resultCache != null && cacheMethods.contains(method.getName())) {
+            return resultCache.get(method, args, new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    return clusterInvoke(method, args, deadline);
+                }
+            });
+        }
+        return clusterInvoke(method, args, deadline);
+    }
+
+    /**
+     * 查找同一进程内发布的、服务提供者唯一标识与分组都与本引用相同的服务
+     *
+     * @return 本进程未发布该服务时返回null
+     */
+    private ProviderService findLocalProvider() {
+        IRegisterCenter4Provider registerCenter4Provider = RegisterCenter.singleton();
+        List<ProviderService> localProviders = registerCenter4Provider.getProviderServiceMap().get(targetInterface.getName());
+        if (localProviders == null) {
+            return null;
+        }
+        for (ProviderService localProvider : localProviders) {
+            if (localProvider.getServiceObject() != null
+                    && StringUtils.equals(localProvider.getAppKey(), remoteAppKey)
+                    && StringUtils.equals(localProvider.getGroupName(), groupName)) {
+                return localProvider;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 按方法名与参数类型在服务接口上查找被调用的方法
+     *
+     * @param method
+     * @return 不是服务接口的方法(如Object的方法)时返回null
+     */
+    private Method findInterfaceMethod(Method method) {
         try {
-            //构建用来发起调用的线程池
-            if (fixedThreadPool == null) {
-                synchronized (RevokerProxyBeanFactory.class) {
-                    if (null == fixedThreadPool) {
-                        fixedThreadPool = Executors.newFixedThreadPool(threadWorkerNumber);
+            return targetInterface.getMethod(method.getName(), method.getParameterTypes());
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 直接调用本进程内发布的服务对象。单向调用的方法在调用线程池中异步执行；
+     * 开启拷贝时参数与返回值按配置的序列化方式深拷贝，调用双方不共享可变对象。
+     *
+     * @param localProvider
+     * @param method        服务接口上的方法
+     * @param args
+     * @return
+     * @throws Throwable 服务方法抛出的异常
+     */
+    private Object localInvoke(final ProviderService localProvider, final Method method, Object[] args) throws Throwable {
+        final Object[] invokeArgs = injvmCopy ? deepCopyArgs(args) : args;
+        if (onewayMethods.contains(method.getName()) && method.getReturnType() == void.class) {
+            invokeExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        method.invoke(localProvider.getServiceObject(), invokeArgs);
+                    } catch (Exception e) {
+                        logger.error("injvm oneway invoke error, service:" + targetInterface.getName(), e);
                     }
                 }
+            });
+            return null;
+        }
+        try {
+            Object result = method.invoke(localProvider.getServiceObject(), invokeArgs);
+            return injvmCopy ? deepCopy(result) : result;
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Object[] deepCopyArgs(Object[] args) {
+        if (args == null) {
+            return null;
+        }
+        Object[] copies = new Object[args.length];
+        for (int i = 0; i < args.length; i++) {
+            copies[i] = deepCopy(args[i]);
+        }
+        return copies;
+    }
+
+    private static Object deepCopy(Object obj) {
+        //流式调用与上传调用的迭代器无法拷贝,直接传递
+        if (obj == null || obj instanceof Iterator) {
+            return obj;
+        }
+        String serializeType = PropertyConfigeHelper.getSerializeType().getSerializeType();
+        return SerializerEngine.deserialize(SerializerEngine.serialize(obj, serializeType), obj.getClass(), serializeType);
+    }
+
+    /**
+     * 按对冲或集群调用模式发起调用
+     *
+     * @param method
+     * @param args
+     * @param deadline
+     * @return
+     */
+    private Object clusterInvoke(Method method, Object[] args, long deadline) {
+        //开启对冲的方法优先按对冲方式调用
+        LatencyRecorder latencyRecorder = hedgingRecorders.get(method.getName());
+        if (latencyRecorder != null) {
+            hedgingBudget.deposit();
+            return hedgingInvoke(method, args, deadline, latencyRecorder);
+        }
+
+        switch (clusterMode) {
+            case Failover:
+                //只有会失败重试或并行调用的首发调用存入重试预算(缓存命中、单向、流式与上传调用不存入)
+                retryBudget.deposit();
+                return failoverInvoke(method, args, deadline);
+            case Forking:
+                retryBudget.deposit();
+                return forkingInvoke(method, args, deadline);
+            case Broadcast:
+                return broadcastInvoke(method, args, deadline);
+            default:
+                //根据软负载策略,从路由快照中选取本次调用的服务提供者
+                return invokeOnce(serviceRoute.select(), method, args, consumeTimeout);
+        }
+    }
+
+    /**
+     * 向某一个服务提供者发起一次调用
+     *
+     * @param endpoint
+     * @param method
+     * @param args
+     * @param timeout
+     * @return
+     */
+    private Object invokeOnce(ServiceRoute.RouteEndpoint endpoint, Method method, Object[] args, long timeout) {
+        RevokerInvocation invocation = RevokerInvocation.of(endpoint, targetInterface, method, args, timeout);
+        //提交本次调用信息到线程池fixedThreadPool,发起调用(服务提供者地址与通道池已在路由快照中预解析)
+        invocation.start(invokeExecutor());
+        try {
+            return invocation.get(timeout);
+        } finally {
+            invocation.finish();
+        }
+    }
+
+    /**
+     * 流式调用：请求携带初始授信窗口发送到负载策略选取的服务提供者，立即返回结果迭代器，
+     * 服务端按授信逐块推送结果，调用方边迭代边补发授信。流式调用不重试、不对冲。
+     *
+     * @param method
+     * @param args
+     * @return
+     */
+    private Object streamInvoke(Method method, Object[] args) throws InterruptedException {
+        ServiceRoute.RouteEndpoint endpoint = serviceRoute.select();
+        int window = Math.max(PropertyConfigeHelper.getClientStreamWindow(), 1);
+        AresRequest request = RevokerInvocation.of(endpoint, targetInterface, method, args, consumeTimeout).getRequest();
+        request.setMessageType(MessageTypeEnum.Stream);
+        request.setStreamCredit(window);
+        request.setRemainingTimeout(consumeTimeout);
+        //流式调用从发出请求到结束占用端点的在途名额与熔断许可,由迭代器在结束、超时或放弃时结算
+        long breakerPermit = endpoint.getEndpointStatus().tryBeginInvoke();
+        if (breakerPermit == CircuitBreaker.DENIED) {
+            throw new RuntimeException("service provider unavailable, " + endpoint.getSocketAddress());
+        }
+        RevokerStreamIterator iterator = RevokerStreamIterator.register(request, window, consumeTimeout);
+        iterator.bindEndpoint(endpoint.getEndpointStatus(), breakerPermit);
+
+        NettyChannelPoolFactory channelPoolFactory = NettyChannelPoolFactory.channelPoolFactoryInstance();
+        Channel channel = channelPoolFactory.borrow(endpoint.getChannelPool(), endpoint.getSocketAddress(),
+                System.currentTimeMillis() + consumeTimeout);
+        if (channel == null) {
+            RevokerStreamIterator.cancel(request.getUniqueKey());
+            throw new RuntimeException("no available channel to " + endpoint.getSocketAddress());
+        }
+        //授信在发送请求的同一通道上回送,服务端按通道推送分块
+        iterator.setChannel(channel);
+        NettyChannelWriteBatcher.write(channel, request);
+        channelPoolFactory.release(endpoint.getChannelPool(), channel, endpoint.getSocketAddress());
+        return iterator;
+    }
+
+    /**
+     * 上传调用：请求发送到负载策略选取的服务提供者后，在调用线程中按服务端授信分块上传`Iterator`参数，
+     * 上传完毕后等待调用结果。上传调用不重试、不对冲。
+     *
+     * @param method
+     * @param args
+     * @param argIndex 上传参数的下标
+     * @param deadline
+     * @return
+     */
+    private Object uploadInvoke(Method method, Object[] args, int argIndex, long deadline) {
+        Iterator<?> source = (Iterator<?>) args[argIndex];
+        Object[] requestArgs = args.clone();
+        requestArgs[argIndex] = null;
+        ServiceRoute.RouteEndpoint endpoint = serviceRoute.select();
+        RevokerInvocation invocation = RevokerInvocation.upload(endpoint, targetInterface, method, requestArgs, argIndex, consumeTimeout);
+        RevokerUploadStream upload = RevokerUploadStream.register(invocation.getRequest());
+        try {
+            invocation.start(invokeExecutor());
+            if (source != null) {
+                upload.send(source, endpoint, deadline);
             }
-            //根据服务提供者的ip,port,构建InetSocketAddress对象,标识服务提供者地址
-            String serverIp = request.getProviderService().getServerIp();
-            int serverPort = request.getProviderService().getServerPort();
-            InetSocketAddress inetSocketAddress = new InetSocketAddress(serverIp, serverPort);
+            return invocation.get(Math.max(deadline - System.currentTimeMillis(), 1));
+        } finally {
+            upload.close();
+            invocation.finish();
+        }
+    }
 
-            //提交本次调用信息到线程池fixedThreadPool,发起调用
-            Future<AresResponse> responseFuture = fixedThreadPool.submit(RevokerServiceCallable.of(inetSocketAddress, request));
-            //获取调用的返回结果(阻塞若干秒等待返回)
-            AresResponse response = responseFuture.get(request.getInvokeTimeout(), TimeUnit.MILLISECONDS);
-            if (response != null) {
-                return response.getResult();
+    private static int uploadArgIndex(Method method) {
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (parameterTypes[i] == Iterator.class) {
+                return i;
             }
+        }
+        return -1;
+    }
 
-        } catch (Exception e) {
+    /**
+     * 失败自动切换：调用失败后在截止时间内换一个服务提供者重试，每次重试消耗重试预算
+     *
+     * @param method
+     * @param args
+     * @param deadline
+     * @return
+     */
+    private Object failoverInvoke(Method method, Object[] args, long deadline) {
+        ServiceRoute route = serviceRoute;
+        Set<ServiceRoute.RouteEndpoint> invoked = Sets.newHashSet();
+        RuntimeException lastException = null;
+        for (int i = 0; i <= retries; i++) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                break;
+            }
+            if (i > 0 && !retryBudget.tryWithdraw()) {
+                logger.warn("retry budget exhausted, give up retry. service:{}", targetInterface.getName());
+                break;
+            }
+
+            //优先选取未调用过的服务提供者,都调用过时允许重复选取
+            ServiceRoute.RouteEndpoint endpoint = route.select(invoked);
+            if (endpoint == null) {
+                endpoint = route.select();
+            }
+            invoked.add(endpoint);
+            try {
+                return invokeOnce(endpoint, method, args, remaining);
+            } catch (RuntimeException e) {
+                logger.warn("invoke failed, service:{}, provider:{}, attempt:{}", targetInterface.getName(), endpoint.getSocketAddress(), i + 1);
+                lastException = e;
+            }
+        }
+        if (lastException != null) {
+            throw lastException;
+        }
+        throw new RuntimeException("invoke timeout, service:" + targetInterface.getName());
+    }
+
+    /**
+     * 并行调用：同时向多个不同的服务提供者发起调用，取第一个成功的结果，其余调用取消
+     *
+     * @param method
+     * @param args
+     * @param deadline
+     * @return
+     */
+    private Object forkingInvoke(Method method, Object[] args, long deadline) {
+        ServiceRoute route = serviceRoute;
+        CompletionService<AresResponse> completionService = new ExecutorCompletionService<AresResponse>(invokeExecutor());
+        Map<Future<AresResponse>, RevokerInvocation> invocations = Maps.newHashMap();
+        Set<ServiceRoute.RouteEndpoint> selected = Sets.newHashSet();
+        RevokerInvocation winner = null;
+        RuntimeException lastException = null;
+        try {
+            for (int i = 0; i < forks; i++) {
+                //额外的并行调用消耗重试预算
+                if (i > 0 && !retryBudget.tryWithdraw()) {
+                    break;
+                }
+                ServiceRoute.RouteEndpoint endpoint = i == 0 ? route.select() : route.select(selected);
+                if (endpoint == null) {
+                    break;
+                }
+                selected.add(endpoint);
+                RevokerInvocation invocation = RevokerInvocation.of(endpoint, targetInterface, method, args, consumeTimeout);
+                try {
+                    invocations.put(invocation.start(completionService), invocation);
+                } catch (RuntimeException e) {
+                    lastException = e;
+                }
+            }
+
+            for (int i = 0; i < invocations.size(); i++) {
+                long remaining = deadline - System.currentTimeMillis();
+                Future<AresResponse> future = remaining > 0 ? completionService.poll(remaining, TimeUnit.MILLISECONDS) : null;
+                if (future == null) {
+                    break;
+                }
+                RevokerInvocation invocation = invocations.get(future);
+                try {
+                    Object result = invocation.get(0);
+                    winner = invocation;
+                    return result;
+                } catch (RuntimeException e) {
+                    lastException = e;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             throw new RuntimeException(e);
+        } finally {
+            for (RevokerInvocation invocation : invocations.values()) {
+                if (winner != null) {
+                    invocation.abandon();
+                }
+                invocation.finish();
+            }
         }
-        return null;
+        if (lastException != null) {
+            throw lastException;
+        }
+        throw new RuntimeException("invoke timeout, service:" + targetInterface.getName());
+    }
+
+    /**
+     * 广播调用：在截止时间内并发调用路由快照中的所有服务提供者(复用各自的通道池)，成功的结果交给结果合并器合并。
+     * 返回异常对象的服务提供者视为失败；部分失败或超时时按广播策略整体失败或只合并成功的结果。
+     *
+     * @param method
+     * @param args
+     * @param deadline
+     * @return
+     */
+    private Object broadcastInvoke(Method method, Object[] args, long deadline) {
+        List<ServiceRoute.RouteEndpoint> endpoints = serviceRoute.getEndpoints();
+        if (endpoints.isEmpty()) {
+            throw new RuntimeException("service provider list is empty, service:" + targetInterface.getName());
+        }
+        CompletionService<AresResponse> completionService = new ExecutorCompletionService<AresResponse>(invokeExecutor());
+        Map<Future<AresResponse>, RevokerInvocation> invocations = Maps.newHashMap();
+        List<Object> results = Lists.newArrayListWithCapacity(endpoints.size());
+        RuntimeException lastException = null;
+        try {
+            for (ServiceRoute.RouteEndpoint endpoint : endpoints) {
+                RevokerInvocation invocation = RevokerInvocation.of(endpoint, targetInterface, method, args, consumeTimeout);
+                try {
+                    invocations.put(invocation.start(completionService), invocation);
+                } catch (RuntimeException e) {
+                    lastException = e;
+                }
+            }
+
+            for (int i = 0; i < invocations.size(); i++) {
+                long remaining = deadline - System.currentTimeMillis();
+                Future<AresResponse> future = remaining > 0 ? completionService.poll(remaining, TimeUnit.MILLISECONDS) : null;
+                if (future == null) {
+                    break;
+                }
+                RevokerInvocation invocation = invocations.get(future);
+                try {
+                    Object result = invocation.get(0);
+                    if (result instanceof Throwable) {
+                        lastException = new RuntimeException("broadcast invoke failed, provider:"
+                                + invocation.getEndpoint().getSocketAddress(), (Throwable) result);
+                        continue;
+                    }
+                    results.add(result);
+                } catch (RuntimeException e) {
+                    lastException = e;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            for (RevokerInvocation invocation : invocations.values()) {
+                invocation.finish();
+            }
+        }
+
+        int failures = endpoints.size() - results.size();
+        if (results.isEmpty() || (failures > 0 && broadcastPolicy == BroadcastPolicyEnum.AllOrFail)) {
+            throw new RuntimeException("broadcast invoke failed on " + failures + " of " + endpoints.size()
+                    + " providers, service:" + targetInterface.getName(), lastException);
+        }
+        if (failures > 0) {
+            logger.warn("broadcast invoke partially failed on {} of {} providers, service:{}", failures, endpoints.size(), targetInterface.getName());
+        }
+        return resultMerger.merge(method, results);
     }
 
+    /**
+     * 对冲调用：调用超过该方法最近耗时的分位值仍未返回时，向另一个服务提供者再发一次，取先成功的结果，
+     * 落选的调用从待返回结果表中取消。对冲受对冲预算限制，耗时样本不足时不对冲。
+     *
+     * @param method
+     * @param args
+     * @param deadline
+     * @param latencyRecorder
+     * @return
+     */
+    private Object hedgingInvoke(Method method, Object[] args, long deadline, LatencyRecorder latencyRecorder) {
+        ServiceRoute route = serviceRoute;
+        long hedgingDelay = latencyRecorder.getPercentileLatency();
+        CompletionService<AresResponse> completionService = new ExecutorCompletionService<AresResponse>(invokeExecutor());
+        Map<Future<AresResponse>, RevokerInvocation> invocations = Maps.newHashMap();
+        RevokerInvocation winner = null;
+        RuntimeException lastException = null;
+        try {
+            ServiceRoute.RouteEndpoint primaryEndpoint = route.select();
+            RevokerInvocation primary = RevokerInvocation.of(primaryEndpoint, targetInterface, method, args, consumeTimeout);
+            invocations.put(primary.start(completionService), primary);
+            //耗时样本不足时不对冲
+            boolean hedged = hedgingDelay < 0;
+            int pending = 1;
 
-    public Object getProxy() {
-        // 为目标目标类的目标接口方法生成代理，使用本`InvocationHandler`
-        return Proxy.newProxyInstance(Thread.currentThread().getContextClassLoader(), new Class<?>[]{targetInterface}, this);
+            while (pending > 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                long wait = hedged ? remaining : Math.min(remaining, Math.max(hedgingDelay - primary.getElapsed(), 0));
+                Future<AresResponse> future = completionService.poll(wait, TimeUnit.MILLISECONDS);
+                if (future == null) {
+                    if (!hedged) {
+                        //超过对冲延迟仍未返回,向另一个服务提供者发起对冲调用
+                        hedged = true;
+                        ServiceRoute.RouteEndpoint hedgingEndpoint = hedgingBudget.tryWithdraw()
+                                ? route.select(Collections.singleton(primaryEndpoint)) : null;
+                        if (hedgingEndpoint != null) {
+                            RevokerInvocation hedging = RevokerInvocation.of(hedgingEndpoint, targetInterface, method, args,
+                                    Math.max(deadline - System.currentTimeMillis(), 1));
+                            try {
+                                invocations.put(hedging.start(completionService), hedging);
+                                pending++;
+                            } catch (RuntimeException e) {
+                                logger.warn("hedging invoke failed to start, provider:{}", hedgingEndpoint.getSocketAddress());
+                            }
+                        }
+                    }
+                    continue;
+                }
+
+                pending--;
+                RevokerInvocation invocation = invocations.get(future);
+                try {
+                    Object result = invocation.get(0);
+                    winner = invocation;
+                    latencyRecorder.record(invocation.getElapsed());
+                    return result;
+                } catch (RuntimeException e) {
+                    lastException = e;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            for (RevokerInvocation invocation : invocations.values()) {
+                if (winner != null) {
+                    invocation.abandon();
+                }
+                invocation.finish();
+            }
+        }
+        if (lastException != null) {
+            throw lastException;
+        }
+        throw new RuntimeException("invoke timeout, service:" + targetInterface.getName());
+    }
+
+    @Override
+    public List<Object> invokeAll(String methodName, List<Object[]> argsList) {
+        return invokeAll(findMethod(methodName), argsList);
+    }
+
+    @Override
+    public List<Object> invokeAll(String methodName, Class<?>[] parameterTypes, List<Object[]> argsList) {
+        try {
+            return invokeAll(targetInterface.getMethod(methodName, parameterTypes), argsList);
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException("method not found, service:" + targetInterface.getName() + ", method:" + methodName, e);
+        }
     }
 
+    /**
+     * 批量调用：参数按client_batch_split_size拆分成若干批，每批作为一个批量请求并发发送到负载策略选取的服务提供者
+     * (各批尽量选取不同的服务提供者)，全部返回后按参数顺序合并结果，任意一批失败则整体失败。
+     *
+     * @param method   调用方法
+     * @param argsList 多组调用参数
+     * @return
+     */
+    private List<Object> invokeAll(Method method, List<Object[]> argsList) {
+        String methodName = method.getName();
+        if (argsList == null || argsList.isEmpty()) {
+            return Lists.newArrayList();
+        }
+        long deadline = System.currentTimeMillis() + consumeTimeout;
+        ServiceRoute route = serviceRoute;
+        List<List<Object[]>> partitions = Lists.partition(argsList, Math.max(PropertyConfigeHelper.getClientBatchSplitSize(), 1));
+
+        CompletionService<AresResponse> completionService = new ExecutorCompletionService<AresResponse>(invokeExecutor());
+        Map<Future<AresResponse>, Integer> partitionIndexes = Maps.newHashMap();
+        List<RevokerInvocation> invocations = Lists.newArrayListWithCapacity(partitions.size());
+        Set<ServiceRoute.RouteEndpoint> selected = Sets.newHashSet();
+        Object[] partitionResults = new Object[partitions.size()];
+        try {
+            for (int i = 0; i < partitions.size(); i++) {
+                //优先选取未使用过的服务提供者,都用过时允许重复选取
+                ServiceRoute.RouteEndpoint endpoint = route.select(selected);
+                if (endpoint == null) {
+                    endpoint = route.select();
+                }
+                selected.add(endpoint);
+                //拆分出的子列表是原列表的视图,复制一份再发送
+                List<Object[]> batchArgs = Lists.newArrayList(partitions.get(i));
+                RevokerInvocation invocation = RevokerInvocation.batch(endpoint, targetInterface, method, batchArgs, consumeTimeout);
+                partitionIndexes.put(invocation.start(completionService), i);
+                invocations.add(invocation);
+            }
 
-    private static volatile RevokerProxyBeanFactory singleton;
+            for (int i = 0; i < invocations.size(); i++) {
+                long remaining = deadline - System.currentTimeMillis();
+                Future<AresResponse> future = remaining > 0 ? completionService.poll(remaining, TimeUnit.MILLISECONDS) : null;
+                if (future == null) {
+                    throw new RuntimeException("batch invoke timeout, service:" + targetInterface.getName() + ", method:" + methodName);
+                }
+                int partitionIndex = partitionIndexes.get(future);
+                partitionResults[partitionIndex] = invocations.get(partitionIndex).get(0);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            for (RevokerInvocation invocation : invocations) {
+                invocation.finish();
+            }
+        }
 
-    public static RevokerProxyBeanFactory singleton(Class<?> targetInterface, int consumeTimeout, String clusterStrategy) throws Exception {
-        if (null == singleton) {
+        List<Object> results = Lists.newArrayListWithCapacity(argsList.size());
+        for (Object partitionResult : partitionResults) {
+            //整批失败(如响应超过最大报文长度)时服务端返回异常对象
+            if (partitionResult instanceof Throwable) {
+                throw new RuntimeException("batch invoke failed, service:" + targetInterface.getName() + ", method:" + methodName,
+                        (Throwable) partitionResult);
+            }
+            results.addAll((List<?>) partitionResult);
+        }
+        return results;
+    }
+
+    /**
+     * 按方法名在服务接口上查找方法，方法有重载时无法确定调用哪一个，直接失败
+     *
+     * @param methodName
+     * @return
+     */
+    private Method findMethod(String methodName) {
+        Method found = null;
+        for (Method method : targetInterface.getMethods()) {
+            if (!StringUtils.equals(method.getName(), methodName)) {
+                continue;
+            }
+            if (found != null) {
+                throw new RuntimeException("method is overloaded, specify parameter types. service:"
+                        + targetInterface.getName() + ", method:" + methodName);
+            }
+            found = method;
+        }
+        if (found == null) {
+            throw new RuntimeException("method not found, service:" + targetInterface.getName() + ", method:" + methodName);
+        }
+        return found;
+    }
+
+    /**
+     * 获取用来发起调用的线程池
+     *
+     * @return
+     */
+    private static ExecutorService invokeExecutor() {
+        //构建用来发起调用的线程池
+        if (fixedThreadPool == null) {
             synchronized (RevokerProxyBeanFactory.class) {
-                if (null == singleton) {
-                    singleton = new RevokerProxyBeanFactory(targetInterface, consumeTimeout, clusterStrategy);
+                if (null == fixedThreadPool) {
+                    fixedThreadPool = Executors.newFixedThreadPool(threadWorkerNumber);
                 }
             }
         }
-        return singleton;
+        return fixedThreadPool;
+    }
+
+
+    public void setClusterMode(String clusterMode) {
+        ClusterModeEnum mode = ClusterModeEnum.queryByCode(clusterMode);
+        this.clusterMode = mode == null ? ClusterModeEnum.Failfast : mode;
+    }
+
+    public void setRetries(int retries) {
+        this.retries = Math.max(retries, 0);
+    }
+
+    public void setForks(int forks) {
+        this.forks = Math.max(forks, 1);
+    }
+
+    /**
+     * 设置开启对冲请求的方法
+     *
+     * @param hedgingMethods 方法名,多个以逗号分隔
+     */
+    public void setHedgingMethods(String hedgingMethods) {
+        Map<String, LatencyRecorder> recorders = Maps.newHashMap();
+        for (String methodName : StringUtils.split(StringUtils.defaultString(hedgingMethods), ',')) {
+            if (StringUtils.isNotBlank(methodName)) {
+                recorders.put(StringUtils.trim(methodName), new LatencyRecorder(PropertyConfigeHelper.getClientHedgingPercentile()));
+            }
+        }
+        this.hedgingRecorders = ImmutableMap.copyOf(recorders);
+    }
+
+    /**
+     * 设置广播调用结果合并器
+     *
+     * @param merger 合并器实现类的全限定名,为空时使用默认合并器
+     */
+    public void setResultMerger(String merger) {
+        if (StringUtils.isBlank(merger)) {
+            this.resultMerger = new DefaultResultMerger();
+            return;
+        }
+        try {
+            this.resultMerger = (ResultMerger) Class.forName(StringUtils.trim(merger)).newInstance();
+        } catch (Exception e) {
+            throw new RuntimeException("create result merger error, merger:" + merger, e);
+        }
+    }
+
+    public void setBroadcastPolicy(String broadcastPolicy) {
+        BroadcastPolicyEnum policy = BroadcastPolicyEnum.queryByCode(broadcastPolicy);
+        this.broadcastPolicy = policy == null ? BroadcastPolicyEnum.AllOrFail : policy;
+    }
+
+    /**
+     * 设置单向调用的方法(只对返回值为void的方法生效)
+     *
+     * @param onewayMethods 方法名,多个以逗号分隔
+     */
+    public void setOnewayMethods(String onewayMethods) {
+        Set<String> methodNames = Sets.newHashSet();
+        for (String methodName : StringUtils.split(StringUtils.defaultString(onewayMethods), ',')) {
+            if (StringUtils.isNotBlank(methodName)) {
+                methodNames.add(StringUtils.trim(methodName));
+            }
+        }
+        this.onewayMethods = ImmutableSet.copyOf(methodNames);
+    }
+
+    /**
+     * 设置在消费端缓存调用结果的方法
+     *
+     * @param cacheMethods 方法名,多个以逗号分隔
+     */
+    public void setCacheMethods(String cacheMethods) {
+        Set<String> methodNames = Sets.newHashSet();
+        for (String methodName : StringUtils.split(StringUtils.defaultString(cacheMethods), ',')) {
+            if (StringUtils.isNotBlank(methodName)) {
+                methodNames.add(StringUtils.trim(methodName));
+            }
+        }
+        this.cacheMethods = ImmutableSet.copyOf(methodNames);
+        this.resultCache = methodNames.isEmpty() ? null : RevokerResultCache.of(targetInterface.getName(),
+                PropertyConfigeHelper.getClientResultCacheTtl(), PropertyConfigeHelper.getClientResultCacheSize());
+    }
+
+    public void setRemoteAppKey(String remoteAppKey) {
+        this.remoteAppKey = remoteAppKey;
+    }
+
+    public void setGroupName(String groupName) {
+        this.groupName = groupName;
+    }
+
+    public void setInjvm(boolean injvm) {
+        this.injvm = injvm;
+    }
+
+    public void setInjvmCopy(boolean injvmCopy) {
+        this.injvmCopy = injvmCopy;
+    }
+
+    public Object getProxy() {
+        // 为目标目标类的目标接口方法生成代理，使用本`InvocationHandler`
+        return Proxy.newProxyInstance(Thread.currentThread().getContextClassLoader(), new Class<?>[]{targetInterface, BatchInvoker.class}, this);
     }
 
 
@@ -2,7 +2,9 @@ package ares.remoting.framework.revoker;
 
 import ares.remoting.framework.model.AresResponse;
 import ares.remoting.framework.model.AresResponseWrapper;
+import ares.remoting.framework.model.ResponseStatusEnum;
 import com.google.common.collect.Maps;
+import io.netty.channel.Channel;
 
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
@@ -58,6 +60,41 @@ public class RevokerResponseHolder {
         responseMap.put(requestUniqueKey, AresResponseWrapper.of());
     }
 
+    /**
+     * 记录请求写出的通道，连接断开时该调用立即以失败结束，不必等到超时
+     *
+     * @param requestUniqueKey
+     * @param channel
+     * @param invokeTimeout
+     */
+    public static void bindChannel(String requestUniqueKey, Channel channel, long invokeTimeout) {
+        AresResponseWrapper responseWrapper = responseMap.get(requestUniqueKey);
+        if (responseWrapper != null) {
+            responseWrapper.setInvokeTimeout(invokeTimeout);
+            responseWrapper.setChannel(channel);
+        }
+    }
+
+    /**
+     * 通道断开：在该通道上等待响应的调用全部以连接断开结束(上传调用同时停止上传)
+     *
+     * @param channel
+     */
+    public static void failChannel(Channel channel) {
+        for (Map.Entry<String, AresResponseWrapper> entry : responseMap.entrySet()) {
+            AresResponseWrapper responseWrapper = entry.getValue();
+            if (responseWrapper.getChannel() != channel || !responseWrapper.getResponseQueue().isEmpty()) {
+                continue;
+            }
+            AresResponse response = new AresResponse();
+            response.setUniqueKey(entry.getKey());
+            response.setInvokeTimeout(responseWrapper.getInvokeTimeout());
+            response.setStatus(ResponseStatusEnum.ChannelClosed);
+            RevokerUploadStream.onResponse(response);
+            putResultValue(response);
+        }
+    }
+
     /**
      * Step2：（RPC调用用户线程）将Netty调用异步返回结果放入阻塞队列。
      *
@@ -68,6 +105,10 @@ public class RevokerResponseHolder {
     public static void putResultValue(AresResponse response) {
         long currentTime = System.currentTimeMillis();
         AresResponseWrapper responseWrapper = responseMap.get(response.getUniqueKey());
+        if (responseWrapper == null) {
+            //调用方已超时或已取消(如并行调用中落选的请求),丢弃迟到的结果
+            return;
+        }
         responseWrapper.setResponseTime(currentTime);
         // !!!add背后调用offer、如果队列满了直接返回false，而不是put会阻塞直到有可用空间
         responseWrapper.getResponseQueue().add(response);
@@ -98,4 +139,13 @@ public class RevokerResponseHolder {
         }
     }
 
+
+    /**
+     * 取消一次调用：清除结果容器，之后到达的结果直接丢弃
+     *
+     * @param requestUniqueKey
+     */
+    public static void remove(String requestUniqueKey) {
+        responseMap.remove(requestUniqueKey);
+    }
 }
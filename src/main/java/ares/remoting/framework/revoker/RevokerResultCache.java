@@ -0,0 +1,163 @@
+package ares.remoting.framework.revoker;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 消费端调用结果缓存(每个服务引用一个)，只用于配置了缓存的幂等方法。
+ *
+ * 以方法名与参数(按数组内容比较)为key，写入后client_result_cache_ttl毫秒过期，条目数超过client_result_cache_size时按LRU淘汰；
+ * 同一个key的并发未命中只发起一次远程调用，其余调用等待该调用的结果。调用失败或返回异常对象时不缓存。
+ *
+ * @version $Id$
+ */
+public class RevokerResultCache {
+
+    /** 所有服务引用的结果缓存，key为服务接口名，用于输出命中率 */
+    private static final ConcurrentMap<String, RevokerResultCache> cacheRegistry = Maps.newConcurrentMap();
+
+    /** 缓存null结果的占位对象 */
+    private static final Object NULL_RESULT = new Object();
+
+    private final Cache<CacheKey, Object> cache;
+
+    private RevokerResultCache(long ttl, long maximumSize) {
+        this.cache = CacheBuilder.newBuilder()
+                .expireAfterWrite(ttl, TimeUnit.MILLISECONDS)
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 为服务引用创建结果缓存并登记
+     *
+     * @param serviceKey  服务接口名
+     * @param ttl         缓存有效期(毫秒)
+     * @param maximumSize 最大条目数
+     * @return
+     */
+    public static RevokerResultCache of(String serviceKey, long ttl, long maximumSize) {
+        RevokerResultCache resultCache = new RevokerResultCache(Math.max(ttl, 1), Math.max(maximumSize, 1));
+        cacheRegistry.put(serviceKey, resultCache);
+        return resultCache;
+    }
+
+    /**
+     * 获取调用结果，未命中时由loader发起远程调用
+     *
+     * @param method
+     * @param args
+     * @param loader 发起远程调用
+     * @return
+     */
+    public Object get(Method method, Object[] args, final Callable<Object> loader) {
+        try {
+            Object result = cache.get(new CacheKey(method.getName(), args), new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    Object result = loader.call();
+                    if (result instanceof Throwable) {
+                        //服务端返回的异常对象不缓存
+                        throw new UncachedResultException(result);
+                    }
+                    return result == null ? NULL_RESULT : result;
+                }
+            });
+            return result == NULL_RESULT ? null : result;
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof UncachedResultException) {
+                return ((UncachedResultException) e.getCause()).result;
+            }
+            throw unwrap(e.getCause());
+        }
+    }
+
+    private static RuntimeException unwrap(Throwable cause) {
+        return cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+    }
+
+    /**
+     * 获取各服务引用的结果缓存统计(命中率、加载次数、淘汰数等)
+     *
+     * @return key为服务接口名
+     */
+    public static Map<String, CacheStats> getCacheStats() {
+        Map<String, CacheStats> stats = Maps.newHashMap();
+        for (Map.Entry<String, RevokerResultCache> entry : cacheRegistry.entrySet()) {
+            stats.put(entry.getKey(), entry.getValue().cache.stats());
+        }
+        return ImmutableMap.copyOf(stats);
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * 缓存key：方法名+参数
+     */
+    private static class CacheKey {
+
+        private final String methodName;
+        private final Object[] args;
+        private final int hashCode;
+
+        private CacheKey(String methodName, Object[] args) {
+            this.methodName = methodName;
+            //复制参数,调用方之后修改参数数组不影响缓存
+            this.args = args == null ? new Object[0] : args.clone();
+            this.hashCode = 31 * methodName.hashCode() + Arrays.deepHashCode(this.args);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) o;
+            return hashCode == other.hashCode && methodName.equals(other.methodName) && Arrays.deepEquals(args, other.args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * 不缓存的调用结果(服务端返回的异常对象)
+     */
+    private static class UncachedResultException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Object result;
+
+        private UncachedResultException(Object result) {
+            this.result = result;
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+}
@@ -2,15 +2,14 @@ package ares.remoting.framework.revoker;
 
 import ares.remoting.framework.model.AresRequest;
 import ares.remoting.framework.model.AresResponse;
+import ares.remoting.framework.model.ResponseStatusEnum;
 import io.netty.channel.Channel;
-import io.netty.channel.ChannelFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetSocketAddress;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Callable;
-import java.util.concurrent.TimeUnit;
 
 /**
  * RPC服务调用异步任务Task，所有的RPC服务调用都放在RPC服务线程池中进行。
@@ -30,9 +29,15 @@ public class RevokerServiceCallable implements Callable<AresResponse> {
     /** 建立在某个IP地址上的netty通道 */
     private Channel channel;
 
+    /** 路由快照中预解析的通道池，为空时按地址查找 */
+    private ArrayBlockingQueue<Channel> channelPool;
+
     /** 请求调用对象 */
     private AresRequest request;
 
+    /** 本次调用的截止时间，从任务创建时开始计算，包含调用线程池排队耗时 */
+    private long deadline;
+
     /**
      * 生成RPC远程调用异步任务的静态方法。
      *
@@ -44,6 +49,19 @@ public class RevokerServiceCallable implements Callable<AresResponse> {
         return new RevokerServiceCallable(inetSocketAddress, request);
     }
 
+    /**
+     * 根据路由快照端点生成RPC远程调用异步任务，复用预解析的地址与通道池。
+     *
+     * @param endpoint
+     * @param request
+     * @return
+     */
+    public static RevokerServiceCallable of(ServiceRoute.RouteEndpoint endpoint, AresRequest request) {
+        RevokerServiceCallable callable = new RevokerServiceCallable(endpoint.getSocketAddress(), request);
+        callable.channelPool = endpoint.getChannelPool();
+        return callable;
+    }
+
     /**
      * 这个标准构造函数可以设置为私有的。
      *
@@ -53,29 +71,31 @@ public class RevokerServiceCallable implements Callable<AresResponse> {
     public RevokerServiceCallable(InetSocketAddress inetSocketAddress, AresRequest request) {
         this.inetSocketAddress = inetSocketAddress;
         this.request = request;
+        this.deadline = System.currentTimeMillis() + request.getInvokeTimeout();
     }
 
     @Override
     public AresResponse call() throws Exception {
-        //初始化返回结果容器,将本次调用的唯一标识作为Key存入返回结果的Map
-        RevokerResponseHolder.initResponseData(request.getUniqueKey());
+        //初始化返回结果容器,将本次调用的唯一标识作为Key存入返回结果的Map(单向调用不等待结果,不需要)
+        if (!request.isOneway()) {
+            RevokerResponseHolder.initResponseData(request.getUniqueKey());
+        }
         //根据本地调用服务提供者地址获取对应的Netty通道channel队列
-        ArrayBlockingQueue<Channel> blockingQueue = NettyChannelPoolFactory.channelPoolFactoryInstance().acquire(inetSocketAddress);
+        ArrayBlockingQueue<Channel> blockingQueue = channelPool;
+        if (blockingQueue == null) {
+            blockingQueue = NettyChannelPoolFactory.channelPoolFactoryInstance().acquire(inetSocketAddress);
+        }
         try {
-            if (channel == null) {
-                //从队列中获取本次调用的Netty通道channel
-                channel = blockingQueue.poll(request.getInvokeTimeout(), TimeUnit.MILLISECONDS);
+            if (blockingQueue == null) {
+                throw new RuntimeException("no channel pool for " + inetSocketAddress);
             }
 
-            //若获取的channel通道已经不可用,则重新获取一个
-            while (!channel.isOpen() || !channel.isActive() || !channel.isWritable()) {
-                logger.warn("----------retry get new Channel------------");
-                channel = blockingQueue.poll(request.getInvokeTimeout(), TimeUnit.MILLISECONDS);
-                if (channel == null) {
-                    //若队列中没有可用的Channel,则重新注册一个Channel
-                    // 若注册失败，直接抛NPE，会进入catch中，不太合适(后期可以改造下)
-                    channel = NettyChannelPoolFactory.channelPoolFactoryInstance().registerChannel(inetSocketAddress);
-                }
+            if (channel == null) {
+                //从队列中获取本次调用的Netty通道channel(不可用的通道由通道池异步替换)
+                channel = NettyChannelPoolFactory.channelPoolFactoryInstance().borrow(blockingQueue, inetSocketAddress, deadline);
+            }
+            if (channel == null) {
+                throw new RuntimeException("no available channel to " + inetSocketAddress);
             }
 
             /**
@@ -83,7 +103,7 @@ public class RevokerServiceCallable implements Callable<AresResponse> {
              * 特别注意，因为Netty底层是异步的，而发起请求调用是同步的——指的是在给定的时间内、阻塞线程、直到返回成功|失败|超时这样的结果。
              * 而Netty底层是异步，所以客户端发起同步调用`异转同`需要做如下几件事：
              *
-             * 1、`调用线程`把服务请求信息写入通道中(一旦写入通道中，被NIO线程接管，剩下是同步等待的事情)、并同步等待通道写入成功(含消息编码、`Netty用户缓冲区`写入`系统网卡驱动缓冲区`)；
+             * 1、`调用线程`把服务请求信息放入通道的待写队列(由NIO线程批量写入并合并flush，调用线程不等待写入完成，写入失败时直接结束待返回结果)，随即把通道交还通道池供其他调用复用；
              * 2、`调用线程`从`UUID/TraceId映射`的`RPC响应结果阻塞队列`中获取服务调用结果(poll till timeout)；
              *
              * ==========以下内容为异步执行（不在调用线程中的客户端与服务端交互）==========
@@ -95,16 +115,40 @@ public class RevokerServiceCallable implements Callable<AresResponse> {
              * `调用线程`Task如果在timeout时间段内、从结果队列中取出了结果，则将结果集返回给上层调用，否则超时。
              */
 
-            // 将本次调用的信息写入Netty通道,发起异步调用
-            ChannelFuture channelFuture = channel.writeAndFlush(request);
-            channelFuture.syncUninterruptibly();
+            //记录发送请求的通道,响应返回前连接断开时调用立即失败
+            if (!request.isOneway()) {
+                RevokerResponseHolder.bindChannel(request.getUniqueKey(), channel, request.getInvokeTimeout());
+            }
+
+            //发送前计算剩余超时预算并随请求带给服务端,预算已耗尽则不再发送
+            long remainingTimeout = deadline - System.currentTimeMillis();
+            if (remainingTimeout <= 0) {
+                throw new RuntimeException("invoke deadline exceeded before send, uniqueKey:" + request.getUniqueKey());
+            }
+            request.setRemainingTimeout(remainingTimeout);
+
+            // 将本次调用的信息放入Netty通道的待写队列,发起异步调用
+            NettyChannelWriteBatcher.write(channel, request);
+            //请求按唯一标识匹配响应,通道无需等待响应,立即交还通道池复用
+            NettyChannelPoolFactory.channelPoolFactoryInstance().release(blockingQueue, channel, inetSocketAddress);
+            channel = null;
+
+            //单向调用写入通道即完成
+            if (request.isOneway()) {
+                return AresResponse.of(request, ResponseStatusEnum.Success);
+            }
 
-            //从返回结果容器中获取返回结果,同时设置等待超时时间为invokeTimeout
-            long invokeTimeout = request.getInvokeTimeout();
-            return RevokerResponseHolder.getValue(request.getUniqueKey(), invokeTimeout);
+            //从返回结果容器中获取返回结果,最多等待到截止时间
+            return RevokerResponseHolder.getValue(request.getUniqueKey(), Math.max(deadline - System.currentTimeMillis(), 1));
 
         } catch (Exception e) {
-            logger.error("service invoke error.", e);
+            if (isInterrupted(e)) {
+                //对冲或并行调用的落败者被取消(中断),属于预期情况,恢复中断标记
+                Thread.currentThread().interrupt();
+                logger.debug("service invoke cancelled, uniqueKey:{}", request.getUniqueKey());
+            } else {
+                logger.error("service invoke error.", e);
+            }
         } finally {
             //本次调用完毕后,将Netty的通道channel重新释放到队列中,以便下次调用复用
             NettyChannelPoolFactory.channelPoolFactoryInstance().release(blockingQueue, channel, inetSocketAddress);
@@ -112,4 +156,14 @@ public class RevokerServiceCallable implements Callable<AresResponse> {
         return null;
     }
 
+    /**
+     * 调用是否因任务被取消(线程中断)而结束，`RevokerResponseHolder`等待结果时的中断被包装为运行时异常
+     *
+     * @param e
+     * @return
+     */
+    private static boolean isInterrupted(Exception e) {
+        return e instanceof InterruptedException || e.getCause() instanceof InterruptedException;
+    }
+
 }
@@ -0,0 +1,287 @@
+package ares.remoting.framework.revoker;
+
+import ares.remoting.framework.cluster.status.CircuitBreaker;
+import ares.remoting.framework.cluster.status.EndpointStatus;
+import ares.remoting.framework.model.AresRequest;
+import ares.remoting.framework.model.AresResponse;
+import ares.remoting.framework.model.MessageTypeEnum;
+import ares.remoting.framework.model.ResponseStatusEnum;
+import com.google.common.collect.Maps;
+import io.netty.channel.Channel;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 消费端流式调用的结果迭代器。
+ *
+ * 服务端按授信逐块推送结果，NIO线程收到的分块放入本迭代器的队列；调用方每次取下一个元素时最多等待超时时间，
+ * 每消费掉半个授信窗口的分块，就在同一通道上向服务端补发同样数量的授信，内存中未消费的分块不超过授信窗口。
+ * 服务端迭代异常、拒绝或发送失败时，迭代过程中抛出运行时异常。
+ * 调用方不再迭代时应调用{@link #close()}(服务方法返回的迭代器可转换为`Closeable`)，释放已缓存的分块并通知服务端停止推送。
+ *
+ * 流式调用从发出请求到结束一直占用端点的在途名额与熔断许可：收到结束消息或等待超时时按成败结算，
+ * 调用方放弃(关闭、中断)或服务端过载拒绝时只交还名额与许可，不计入熔断统计。耗时按收到第一个分块计，
+ * 流的持续时间不计入端点耗时。
+ *
+ * @version $Id$
+ */
+public class RevokerStreamIterator implements Iterator<Object>, Closeable {
+
+    /** 进行中的流式调用，key为请求唯一标识 */
+    private static final Map<String, RevokerStreamIterator> streamMap = Maps.newConcurrentMap();
+
+    /** 流式调用请求 */
+    private final AresRequest request;
+    /** 授信窗口(分块数) */
+    private final int window;
+    /** 等待下一个分块的超时时间 */
+    private final long timeout;
+    /** 已收到、尚未消费的分块与结束消息 */
+    private final BlockingQueue<AresResponse> frames = new LinkedBlockingQueue<AresResponse>();
+    /** 发送授信的通道(与发送请求的通道相同) */
+    private volatile Channel channel;
+    /** 当前分块 */
+    private Iterator<?> current;
+    /** 自上次补发授信后消费的分块数 */
+    private int consumed = 0;
+    /** 是否已收到结束消息 */
+    private boolean finished = false;
+    /** 流式调用占用的端点状态(未绑定时为null) */
+    private volatile EndpointStatus endpointStatus;
+    /** 端点熔断许可 */
+    private volatile long breakerPermit = CircuitBreaker.DENIED;
+    /** 发起调用的时间 */
+    private final long startTime = System.currentTimeMillis();
+    /** 收到第一个分块(或结束消息)的时间 */
+    private volatile long firstFrameTime = 0L;
+    /** 端点名额与熔断许可是否已结算 */
+    private final AtomicBoolean settled = new AtomicBoolean(false);
+
+    private RevokerStreamIterator(AresRequest request, int window, long timeout) {
+        this.request = request;
+        this.window = window;
+        this.timeout = timeout;
+    }
+
+    /**
+     * 登记一次流式调用，需在发送请求前登记，避免丢失先到达的分块
+     *
+     * @param request
+     * @param window  授信窗口
+     * @param timeout 等待下一个分块的超时时间
+     * @return
+     */
+    public static RevokerStreamIterator register(AresRequest request, int window, long timeout) {
+        RevokerStreamIterator iterator = new RevokerStreamIterator(request, window, timeout);
+        streamMap.put(request.getUniqueKey(), iterator);
+        return iterator;
+    }
+
+    /**
+     * NIO线程收到流式调用的分块或结束消息
+     *
+     * @param response
+     */
+    public static void onFrame(AresResponse response) {
+        RevokerStreamIterator iterator = streamMap.get(response.getUniqueKey());
+        if (iterator == null) {
+            //调用方已放弃,丢弃迟到的分块
+            return;
+        }
+        if (iterator.firstFrameTime == 0L) {
+            iterator.firstFrameTime = System.currentTimeMillis();
+        }
+        if (response.getMessageType() == MessageTypeEnum.StreamEnd) {
+            streamMap.remove(response.getUniqueKey());
+            //收到结束消息即结算,调用方不再迭代也不会一直占用端点名额
+            iterator.settle(response.getStatus());
+        }
+        iterator.frames.offer(response);
+    }
+
+    /**
+     * 取消流式调用(未能发出请求)，按失败结算
+     *
+     * @param uniqueKey
+     */
+    public static void cancel(String uniqueKey) {
+        RevokerStreamIterator iterator = streamMap.remove(uniqueKey);
+        if (iterator != null) {
+            iterator.settle(false);
+        }
+    }
+
+    /**
+     * 通道断开：在该通道上进行中的流式调用以连接断开结束
+     *
+     * @param channel
+     */
+    public static void failChannel(Channel channel) {
+        for (RevokerStreamIterator iterator : streamMap.values()) {
+            if (iterator.channel == channel) {
+                AresResponse response = AresResponse.of(iterator.request, ResponseStatusEnum.ChannelClosed);
+                response.setMessageType(MessageTypeEnum.StreamEnd);
+                onFrame(response);
+            }
+        }
+    }
+
+    void setChannel(Channel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * 绑定流式调用占用的端点在途名额与熔断许可，需在发送请求前绑定
+     *
+     * @param endpointStatus
+     * @param breakerPermit
+     */
+    void bindEndpoint(EndpointStatus endpointStatus, long breakerPermit) {
+        this.breakerPermit = breakerPermit;
+        this.endpointStatus = endpointStatus;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (current == null || !current.hasNext()) {
+            if (finished) {
+                return false;
+            }
+            AresResponse frame = take();
+            if (frame.getMessageType() == MessageTypeEnum.StreamEnd) {
+                finished = true;
+                if (frame.getStatus() != ResponseStatusEnum.Success || frame.getResult() instanceof Throwable) {
+                    Throwable cause = frame.getResult() instanceof Throwable ? (Throwable) frame.getResult() : null;
+                    throw new RuntimeException("stream invoke failed, status:" + frame.getStatus()
+                            + ", uniqueKey:" + request.getUniqueKey(), cause);
+                }
+                return false;
+            }
+            current = ((List<?>) frame.getResult()).iterator();
+            onChunkConsumed();
+        }
+        return true;
+    }
+
+    @Override
+    public Object next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("remove");
+    }
+
+    /**
+     * 放弃流式调用：释放已缓存的分块，未结束时通知服务端停止推送
+     */
+    @Override
+    public void close() {
+        if (streamMap.remove(request.getUniqueKey()) == null) {
+            //已收到结束消息或已取消
+            frames.clear();
+            return;
+        }
+        release();
+        frames.clear();
+        finished = true;
+        current = null;
+        Channel target = channel;
+        if (target != null) {
+            NettyChannelWriteBatcher.write(target, control(MessageTypeEnum.StreamCancel, 0));
+        }
+    }
+
+    private AresResponse take() {
+        AresResponse frame;
+        try {
+            frame = frames.poll(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (streamMap.remove(request.getUniqueKey()) != null) {
+                release();
+            }
+            throw new RuntimeException(e);
+        }
+        if (frame == null) {
+            finished = true;
+            cancel(request.getUniqueKey());
+            throw new RuntimeException("stream invoke timeout, uniqueKey:" + request.getUniqueKey());
+        }
+        return frame;
+    }
+
+    /**
+     * 每消费半个窗口的分块，补发同样数量的授信
+     */
+    private void onChunkConsumed() {
+        consumed++;
+        int threshold = Math.max(window / 2, 1);
+        Channel target = channel;
+        if (consumed < threshold || target == null) {
+            return;
+        }
+        NettyChannelWriteBatcher.write(target, control(MessageTypeEnum.StreamCredit, consumed));
+        consumed = 0;
+    }
+
+    /**
+     * 按结束消息的状态结算：服务端过载拒绝只交还名额与许可，其他非成功状态计为失败
+     *
+     * @param status
+     */
+    private void settle(ResponseStatusEnum status) {
+        if (status == ResponseStatusEnum.Overload) {
+            EndpointStatus target = endpointStatus;
+            if (target != null) {
+                target.markOverload();
+            }
+            release();
+            return;
+        }
+        settle(status == ResponseStatusEnum.Success);
+    }
+
+    private void settle(boolean success) {
+        EndpointStatus target = endpointStatus;
+        if (target != null && settled.compareAndSet(false, true)) {
+            target.endInvoke(latency(), success, breakerPermit);
+        }
+    }
+
+    private void release() {
+        EndpointStatus target = endpointStatus;
+        if (target != null && settled.compareAndSet(false, true)) {
+            target.releaseInvoke(latency(), breakerPermit);
+        }
+    }
+
+    private long latency() {
+        long end = firstFrameTime == 0L ? System.currentTimeMillis() : firstFrameTime;
+        return end - startTime;
+    }
+
+    private AresRequest control(MessageTypeEnum messageType, int credit) {
+        AresRequest control = new AresRequest();
+        //授信与取消只需按唯一标识匹配流,不携带服务提供者信息
+        control.setUniqueKey(request.getUniqueKey());
+        control.setInvokedMethodName(request.getInvokedMethodName());
+        control.setInvokeTimeout(request.getInvokeTimeout());
+        control.setMessageType(messageType);
+        control.setStreamCredit(credit);
+        control.setOneway(true);
+        return control;
+    }
+}
@@ -0,0 +1,147 @@
+package ares.remoting.framework.revoker;
+
+import ares.remoting.framework.helper.PropertyConfigeHelper;
+import ares.remoting.framework.model.AresRequest;
+import ares.remoting.framework.model.AresResponse;
+import ares.remoting.framework.model.MessageTypeEnum;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import io.netty.channel.Channel;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 消费端的一次上传调用。
+ *
+ * 服务方法的`Iterator`参数不随请求一起序列化，而是在调用线程中按client_upload_chunk_size个元素一块逐帧上传，
+ * 每发送一块消耗一个服务端授信，授信用完时等待服务端补发，服务端缓存的分块数不超过其授信窗口。
+ * 所有分块与结束消息在同一通道上按顺序发送；服务端提前返回调用结果(如调用失败)时停止上传。
+ *
+ * @version $Id$
+ */
+public class RevokerUploadStream {
+
+    /** 进行中的上传调用，key为请求唯一标识 */
+    private static final Map<String, RevokerUploadStream> uploadMap = Maps.newConcurrentMap();
+
+    /** 上传调用请求 */
+    private final AresRequest request;
+    /** 服务端授信 */
+    private final Semaphore credits = new Semaphore(0);
+    /** 服务端是否已返回调用结果 */
+    private volatile boolean completed = false;
+
+    private RevokerUploadStream(AresRequest request) {
+        this.request = request;
+    }
+
+    /**
+     * 登记一次上传调用，需在发送请求前登记，避免丢失先到达的授信
+     *
+     * @param request
+     * @return
+     */
+    public static RevokerUploadStream register(AresRequest request) {
+        RevokerUploadStream upload = new RevokerUploadStream(request);
+        uploadMap.put(request.getUniqueKey(), upload);
+        return upload;
+    }
+
+    /**
+     * NIO线程收到服务端的授信
+     *
+     * @param response
+     */
+    public static void onCredit(AresResponse response) {
+        RevokerUploadStream upload = uploadMap.get(response.getUniqueKey());
+        if (upload != null && response.getResult() instanceof Integer) {
+            upload.credits.release((Integer) response.getResult());
+        }
+    }
+
+    /**
+     * NIO线程收到调用结果，停止仍在进行的上传
+     *
+     * @param response
+     */
+    public static void onResponse(AresResponse response) {
+        RevokerUploadStream upload = uploadMap.remove(response.getUniqueKey());
+        if (upload != null) {
+            upload.completed = true;
+            //唤醒等待授信的调用线程
+            upload.credits.release();
+        }
+    }
+
+    /**
+     * 在调用线程中按授信逐块上传参数，最后发送结束消息
+     *
+     * @param source   上传的参数
+     * @param endpoint 路由端点
+     * @param deadline 截止时间
+     */
+    public void send(Iterator<?> source, ServiceRoute.RouteEndpoint endpoint, long deadline) {
+        NettyChannelPoolFactory channelPoolFactory = NettyChannelPoolFactory.channelPoolFactoryInstance();
+        Channel channel;
+        try {
+            channel = channelPoolFactory.borrow(endpoint.getChannelPool(), endpoint.getSocketAddress(), deadline);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        if (channel == null) {
+            throw new RuntimeException("no available channel to " + endpoint.getSocketAddress());
+        }
+        //通道按请求唯一标识复用,分块写入待写队列后即可交还通道池,后续分块仍写同一通道保证顺序
+        channelPoolFactory.release(endpoint.getChannelPool(), channel, endpoint.getSocketAddress());
+
+        int chunkSize = Math.max(PropertyConfigeHelper.getClientUploadChunkSize(), 1);
+        while (source.hasNext()) {
+            acquireCredit(deadline);
+            if (completed) {
+                return;
+            }
+            List<Object> chunk = Lists.newArrayListWithCapacity(chunkSize);
+            while (chunk.size() < chunkSize && source.hasNext()) {
+                chunk.add(source.next());
+            }
+            NettyChannelWriteBatcher.write(channel, frame(MessageTypeEnum.UploadChunk, chunk.toArray()));
+        }
+        if (!completed) {
+            NettyChannelWriteBatcher.write(channel, frame(MessageTypeEnum.UploadEnd, null));
+        }
+    }
+
+    /**
+     * 结束上传调用
+     */
+    public void close() {
+        uploadMap.remove(request.getUniqueKey());
+    }
+
+    private void acquireCredit(long deadline) {
+        try {
+            if (!credits.tryAcquire(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS)) {
+                throw new RuntimeException("upload timeout waiting for credit, uniqueKey:" + request.getUniqueKey());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private AresRequest frame(MessageTypeEnum messageType, Object[] args) {
+        AresRequest frame = new AresRequest();
+        //分块只需按唯一标识匹配上传调用,不携带服务提供者信息
+        frame.setUniqueKey(request.getUniqueKey());
+        frame.setInvokedMethodName(request.getInvokedMethodName());
+        frame.setInvokeTimeout(request.getInvokeTimeout());
+        frame.setMessageType(messageType);
+        frame.setArgs(args);
+        return frame;
+    }
+}
@@ -0,0 +1,182 @@
+package ares.remoting.framework.revoker;
+
+import ares.remoting.framework.cluster.ClusterStrategy;
+import ares.remoting.framework.cluster.status.EndpointStatus;
+import ares.remoting.framework.model.ProviderService;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import io.netty.channel.Channel;
+
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 某个服务的路由快照(不可变)。
+ *
+ * 快照中预先解析好服务提供者地址、Netty通道池以及端点状态，注册中心变更时整体重建并原子替换，
+ * 调用链路上只需读取一次volatile引用，不再每次查Map、解析负载策略、构建`InetSocketAddress`。
+ *
+ * @version $Id$
+ */
+public class ServiceRoute {
+
+    /** 全局快照版本号 */
+    private static final AtomicLong versionGenerator = new AtomicLong(0);
+
+    /** 快照版本号 */
+    private final long version;
+    /** 服务接口名 */
+    private final String serviceKey;
+    /** 服务提供者列表(只读) */
+    private final List<ProviderService> providerServices;
+    /** 负载均衡策略 */
+    private final ClusterStrategy clusterStrategy;
+    /** 服务提供者到路由端点的映射(按引用比较) */
+    private final Map<ProviderService, RouteEndpoint> endpointMap;
+    /** 路由端点列表(只读，与服务提供者列表顺序一致) */
+    private final List<RouteEndpoint> endpoints;
+
+    private ServiceRoute(String serviceKey, List<ProviderService> providerServices, ClusterStrategy clusterStrategy) {
+        this.version = versionGenerator.incrementAndGet();
+        this.serviceKey = serviceKey;
+        this.providerServices = providerServices == null
+                ? ImmutableList.<ProviderService>of() : ImmutableList.copyOf(providerServices);
+        this.clusterStrategy = clusterStrategy;
+
+        Map<ProviderService, RouteEndpoint> endpoints = Maps.newIdentityHashMap();
+        ImmutableList.Builder<RouteEndpoint> endpointList = ImmutableList.builder();
+        for (ProviderService providerService : this.providerServices) {
+            RouteEndpoint endpoint = new RouteEndpoint(providerService);
+            endpoints.put(providerService, endpoint);
+            endpointList.add(endpoint);
+        }
+        this.endpointMap = endpoints;
+        this.endpoints = endpointList.build();
+    }
+
+    /**
+     * 构建服务路由快照
+     *
+     * @param serviceKey
+     * @param providerServices
+     * @param clusterStrategy
+     * @return
+     */
+    public static ServiceRoute of(String serviceKey, List<ProviderService> providerServices, ClusterStrategy clusterStrategy) {
+        return new ServiceRoute(serviceKey, providerServices, clusterStrategy);
+    }
+
+    /**
+     * 根据负载均衡策略选取本次调用的路由端点
+     *
+     * @return
+     */
+    public RouteEndpoint select() {
+        RouteEndpoint endpoint = select(Collections.<RouteEndpoint>emptySet());
+        if (endpoint == null) {
+            //没有可用端点,快速失败,不再向故障端点堆积请求
+            throw new RuntimeException("no available service provider, service:" + serviceKey);
+        }
+        return endpoint;
+    }
+
+    /**
+     * 根据负载均衡策略选取不在排除集合中的可用路由端点(重试、并行调用时排除已选过的端点)
+     *
+     * @param excluded 排除的路由端点
+     * @return 没有符合条件的端点时返回null
+     */
+    public RouteEndpoint select(Set<RouteEndpoint> excluded) {
+        if (providerServices.isEmpty()) {
+            throw new RuntimeException("service provider list is empty, service:" + serviceKey);
+        }
+        RouteEndpoint endpoint = toEndpoint(clusterStrategy.select(providerServices));
+        if (!excluded.contains(endpoint) && endpoint.getEndpointStatus().isAvailable()) {
+            return endpoint;
+        }
+
+        //选中的端点已排除、已熔断、处于过载惩罚期或在途请求已满,在其余可用端点中重新选取
+        List<ProviderService> candidates = Lists.newArrayListWithCapacity(providerServices.size());
+        for (ProviderService providerService : providerServices) {
+            RouteEndpoint candidate = endpointMap.get(providerService);
+            if (!excluded.contains(candidate) && candidate.getEndpointStatus().isAvailable()) {
+                candidates.add(providerService);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        return toEndpoint(clusterStrategy.select(candidates));
+    }
+
+    private RouteEndpoint toEndpoint(ProviderService providerService) {
+        RouteEndpoint endpoint = endpointMap.get(providerService);
+        if (endpoint == null) {
+            //负载策略返回了快照外的对象(如复制品),临时构建
+            endpoint = new RouteEndpoint(providerService);
+        }
+        return endpoint;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String getServiceKey() {
+        return serviceKey;
+    }
+
+    public List<RouteEndpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    public List<ProviderService> getProviderServices() {
+        return providerServices;
+    }
+
+    /**
+     * 路由端点：预解析的服务提供者地址、通道池与端点状态
+     */
+    public static class RouteEndpoint {
+
+        private final ProviderService providerService;
+        private final InetSocketAddress socketAddress;
+        private final EndpointStatus endpointStatus;
+        private volatile ArrayBlockingQueue<Channel> channelPool;
+
+        private RouteEndpoint(ProviderService providerService) {
+            this.providerService = providerService;
+            this.socketAddress = new InetSocketAddress(providerService.getServerIp(), providerService.getServerPort());
+            this.endpointStatus = EndpointStatus.of(providerService);
+            this.channelPool = NettyChannelPoolFactory.channelPoolFactoryInstance().acquire(socketAddress);
+        }
+
+        public ProviderService getProviderService() {
+            return providerService;
+        }
+
+        public InetSocketAddress getSocketAddress() {
+            return socketAddress;
+        }
+
+        public EndpointStatus getEndpointStatus() {
+            return endpointStatus;
+        }
+
+        public ArrayBlockingQueue<Channel> getChannelPool() {
+            ArrayBlockingQueue<Channel> pool = channelPool;
+            if (pool == null) {
+                //快照构建时通道池尚未建立,延迟解析
+                pool = NettyChannelPoolFactory.channelPoolFactoryInstance().acquire(socketAddress);
+                channelPool = pool;
+            }
+            return pool;
+        }
+    }
+}
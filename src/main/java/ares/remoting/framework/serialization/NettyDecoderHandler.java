@@ -2,26 +2,55 @@ package ares.remoting.framework.serialization;
 
 import ares.remoting.framework.serialization.common.SerializeType;
 import ares.remoting.framework.serialization.engine.SerializerEngine;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * 按4字节长度头拆包并反序列化。
+ *
+ * 长度头在分配字节数组之前校验：长度为负数(报文损坏)或超过本端配置的最大报文长度时不分配内存，直接关闭连接。
+ * 报文只有反序列化后才能知道属于哪个请求，超长报文无法单独拒绝；关闭连接后对端在该连接上等待响应的调用
+ * (含超长的这一个)立即以连接断开失败，不必等到超时。发送端的编码器也按对端最大报文长度校验，
+ * 两端配置一致时超长报文在发送端即失败、不会断开连接；两端配置不一致时由本端关闭连接兜底。
+ * 拒绝按对端地址计数，供排查是哪个对端在发送异常报文。
+ *
  * @author liyebing created on 17/1/19.
  * @version $Id$
  */
 public class NettyDecoderHandler extends ByteToMessageDecoder {
 
+    private static final Logger logger = LoggerFactory.getLogger(NettyDecoderHandler.class);
+
+    /** 按对端地址统计被拒绝的报文数 */
+    private static final ConcurrentMap<String, AtomicLong> rejectedFrames = Maps.newConcurrentMap();
+
     //解码对象class
     private Class<?> genericClass;
     //解码对象编码所使用序列化类型
     private SerializeType serializeType;
+    //允许的最大报文长度(字节)
+    private int maxFrameLength;
 
     public NettyDecoderHandler(Class<?> genericClass, SerializeType serializeType) {
+        this(genericClass, serializeType, Integer.MAX_VALUE);
+    }
+
+    public NettyDecoderHandler(Class<?> genericClass, SerializeType serializeType, int maxFrameLength) {
         this.genericClass = genericClass;
         this.serializeType = serializeType;
+        this.maxFrameLength = maxFrameLength > 0 ? maxFrameLength : Integer.MAX_VALUE;
     }
 
     @Override
@@ -33,7 +62,18 @@ public class NettyDecoderHandler extends ByteToMessageDecoder {
         in.markReaderIndex();
         int dataLength = in.readInt();
         if (dataLength < 0) {
+            //报文损坏,无法再定位后续报文边界,丢弃全部字节并关闭连接
+            reject(ctx, "negative frame length:" + dataLength);
+            in.skipBytes(in.readableBytes());
             ctx.close();
+            return;
+        }
+        if (dataLength > maxFrameLength) {
+            //超长报文不分配内存;无法识别属于哪个请求,关闭连接让对端等待中的调用立即失败
+            reject(ctx, "frame length " + dataLength + " exceeds max frame length " + maxFrameLength);
+            in.skipBytes(in.readableBytes());
+            ctx.close();
+            return;
         }
         //若当前可以获取到的字节数小于实际长度,则直接返回,直到当前可以获取到的字节数等于实际长度
         if (in.readableBytes() < dataLength) {
@@ -49,4 +89,40 @@ public class NettyDecoderHandler extends ByteToMessageDecoder {
         out.add(obj);
     }
 
+    private void reject(ChannelHandlerContext ctx, String reason) {
+        String peer = peerOf(ctx.channel().remoteAddress());
+        AtomicLong counter = rejectedFrames.get(peer);
+        if (counter == null) {
+            AtomicLong newCounter = new AtomicLong(0);
+            counter = rejectedFrames.putIfAbsent(peer, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+        long rejected = counter.incrementAndGet();
+        logger.error("reject frame from {}: {}, rejected frames from this peer:{}", peer, reason, rejected);
+    }
+
+    private static String peerOf(SocketAddress remoteAddress) {
+        //按对端IP统计,重连后累计
+        if (remoteAddress instanceof InetSocketAddress) {
+            InetSocketAddress address = (InetSocketAddress) remoteAddress;
+            return address.getAddress() == null ? address.getHostName() : address.getAddress().getHostAddress();
+        }
+        return String.valueOf(remoteAddress);
+    }
+
+    /**
+     * 获取按对端地址统计的被拒绝报文数
+     *
+     * @return key为对端IP
+     */
+    public static Map<String, Long> getRejectedFrames() {
+        Map<String, Long> snapshot = Maps.newHashMap();
+        for (Map.Entry<String, AtomicLong> entry : rejectedFrames.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().get());
+        }
+        return ImmutableMap.copyOf(snapshot);
+    }
+
 }
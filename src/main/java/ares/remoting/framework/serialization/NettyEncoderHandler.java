@@ -5,23 +5,37 @@ import ares.remoting.framework.serialization.engine.SerializerEngine;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.handler.codec.TooLongFrameException;
 
 /**
+ * 序列化并写入4字节长度头。超过对端最大报文长度的报文不写出，写入以`TooLongFrameException`失败。
+ *
  * @author liyebing created on 17/1/19.
  * @version $Id$
  */
 public class NettyEncoderHandler extends MessageToByteEncoder {
     //序列化类型
     private SerializeType serializeType;
+    //对端允许的最大报文长度(字节)
+    private int maxFrameLength;
 
     public NettyEncoderHandler(SerializeType serializeType) {
+        this(serializeType, Integer.MAX_VALUE);
+    }
+
+    public NettyEncoderHandler(SerializeType serializeType, int maxFrameLength) {
         this.serializeType = serializeType;
+        this.maxFrameLength = maxFrameLength > 0 ? maxFrameLength : Integer.MAX_VALUE;
     }
 
     @Override
     public void encode(ChannelHandlerContext ctx, Object in, ByteBuf out) throws Exception {
         //将对象序列化为字节数组
         byte[] data = SerializerEngine.serialize(in, serializeType.getSerializeType());
+        //超长报文对端会直接丢弃,在发送端即失败
+        if (data.length > maxFrameLength) {
+            throw new TooLongFrameException("frame length " + data.length + " exceeds max frame length " + maxFrameLength);
+        }
         //将字节数组(消息体)的长度作为消息头写入,解决半包/粘包问题
         out.writeInt(data.length);
         //写入序列化后得到的字节数组
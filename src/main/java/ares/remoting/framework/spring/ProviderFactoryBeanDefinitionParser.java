@@ -35,6 +35,7 @@ public class ProviderFactoryBeanDefinitionParser extends AbstractSingleBeanDefin
             String workerThreads = element.getAttribute("workerThreads");
             String appKey = element.getAttribute("appKey");
             String groupName = element.getAttribute("groupName");
+            String singleFlightMethods = element.getAttribute("singleFlightMethods");
 
             bean.addPropertyValue("serverPort", Integer.parseInt(serverPort));
             bean.addPropertyValue("timeout", Integer.parseInt(timeOut));
@@ -51,6 +52,9 @@ public class ProviderFactoryBeanDefinitionParser extends AbstractSingleBeanDefin
             if (StringUtils.isNotBlank(groupName)) {
                 bean.addPropertyValue("groupName", groupName);
             }
+            if (StringUtils.isNotBlank(singleFlightMethods)) {
+                bean.addPropertyValue("singleFlightMethods", singleFlightMethods);
+            }
         } catch (Exception e) {
             logger.error("ProviderFactoryBeanDefinitionParser error.", e);
             throw new RuntimeException(e);
@@ -32,6 +32,16 @@ public class RevokerFactoryBeanDefinitionParser extends AbstractSingleBeanDefini
             String clusterStrategy = element.getAttribute("clusterStrategy");
             String remoteAppKey = element.getAttribute("remoteAppKey");
             String groupName = element.getAttribute("groupName");
+            String clusterMode = element.getAttribute("clusterMode");
+            String retries = element.getAttribute("retries");
+            String forks = element.getAttribute("forks");
+            String hedgingMethods = element.getAttribute("hedgingMethods");
+            String onewayMethods = element.getAttribute("onewayMethods");
+            String cacheMethods = element.getAttribute("cacheMethods");
+            String injvm = element.getAttribute("injvm");
+            String injvmCopy = element.getAttribute("injvmCopy");
+            String merger = element.getAttribute("merger");
+            String broadcastPolicy = element.getAttribute("broadcastPolicy");
 
             bean.addPropertyValue("timeout", Integer.parseInt(timeOut));
             bean.addPropertyValue("targetInterface", Class.forName(targetInterface));
@@ -43,6 +53,36 @@ public class RevokerFactoryBeanDefinitionParser extends AbstractSingleBeanDefini
             if (StringUtils.isNotBlank(groupName)) {
                 bean.addPropertyValue("groupName", groupName);
             }
+            if (StringUtils.isNotBlank(clusterMode)) {
+                bean.addPropertyValue("clusterMode", clusterMode);
+            }
+            if (StringUtils.isNotBlank(retries)) {
+                bean.addPropertyValue("retries", Integer.parseInt(retries));
+            }
+            if (StringUtils.isNotBlank(forks)) {
+                bean.addPropertyValue("forks", Integer.parseInt(forks));
+            }
+            if (StringUtils.isNotBlank(hedgingMethods)) {
+                bean.addPropertyValue("hedgingMethods", hedgingMethods);
+            }
+            if (StringUtils.isNotBlank(onewayMethods)) {
+                bean.addPropertyValue("onewayMethods", onewayMethods);
+            }
+            if (StringUtils.isNotBlank(cacheMethods)) {
+                bean.addPropertyValue("cacheMethods", cacheMethods);
+            }
+            if (StringUtils.isNotBlank(injvm)) {
+                bean.addPropertyValue("injvm", Boolean.parseBoolean(injvm));
+            }
+            if (StringUtils.isNotBlank(injvmCopy)) {
+                bean.addPropertyValue("injvmCopy", Boolean.parseBoolean(injvmCopy));
+            }
+            if (StringUtils.isNotBlank(merger)) {
+                bean.addPropertyValue("merger", merger);
+            }
+            if (StringUtils.isNotBlank(broadcastPolicy)) {
+                bean.addPropertyValue("broadcastPolicy", broadcastPolicy);
+            }
         } catch (Exception e) {
             logger.error("RevokerFactoryBeanDefinitionParser error.", e);
             throw new RuntimeException(e);
@@ -31,6 +31,14 @@ public interface IRegisterCenter4Invoker {
     public Map<String, List<ProviderService>> getServiceMetaDataMap4Consume();
 
 
+    /**
+     * 消费端订阅服务提供者列表变更
+     *
+     * @param listener
+     */
+    public void subscribeProviderChange(ProviderChangeListener listener);
+
+
     /**
      * 消费端将消费者信息注册到zk对应的节点下
      *
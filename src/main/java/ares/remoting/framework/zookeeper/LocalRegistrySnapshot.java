@@ -0,0 +1,153 @@
+package ares.remoting.framework.zookeeper;
+
+import ares.remoting.framework.helper.PropertyConfigeHelper;
+import ares.remoting.framework.model.ProviderService;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 消费端注册中心本地快照文件。
+ *
+ * 每次服务提供者列表刷新后落盘，消费端启动时优先从快照恢复，再在后台与Zookeeper对账，
+ * 这样冷启动耗时不再随`ZK延迟 * 服务数`增长，Zookeeper不可用时也能正常启动。
+ *
+ * 文件格式为每行一个服务节点：`服务接口名\tIP|端口|权重|工作线程数|分组[|Unix域套接字路径]`，与Zookeeper服务节点格式相同，
+ * 先写临时文件再重命名替换。
+ *
+ * @version $Id$
+ */
+public class LocalRegistrySnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalRegistrySnapshot.class);
+
+    private static final String CHARSET = "UTF-8";
+    private static final String SEPARATOR = "\t";
+
+    //快照文件
+    private final File snapshotFile;
+
+    private LocalRegistrySnapshot(File snapshotFile) {
+        this.snapshotFile = snapshotFile;
+    }
+
+    /**
+     * 根据服务提供者应用名与分组名定位快照文件
+     *
+     * @param remoteAppKey
+     * @param groupName
+     * @return
+     */
+    public static LocalRegistrySnapshot of(String remoteAppKey, String groupName) {
+        File snapshotDir = new File(PropertyConfigeHelper.getRegistrySnapshotDir());
+        return new LocalRegistrySnapshot(new File(snapshotDir, "ares-registry-" + remoteAppKey + "-" + groupName + ".snapshot"));
+    }
+
+    /**
+     * 读取快照，Key:服务接口名 value:服务节点列表；快照不存在或损坏时返回空Map
+     *
+     * @return
+     */
+    public Map<String, List<String>> load() {
+        Map<String, List<String>> serviceNodeMap = Maps.newHashMap();
+        if (!snapshotFile.isFile()) {
+            return serviceNodeMap;
+        }
+
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(snapshotFile), CHARSET));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] lineArr = StringUtils.split(line, SEPARATOR);
+                if (lineArr == null || lineArr.length != 2) {
+                    continue;
+                }
+                List<String> serviceNodes = serviceNodeMap.get(lineArr[0]);
+                if (serviceNodes == null) {
+                    serviceNodes = Lists.newArrayList();
+                    serviceNodeMap.put(lineArr[0], serviceNodes);
+                }
+                serviceNodes.add(lineArr[1]);
+            }
+        } catch (Exception e) {
+            logger.warn("load registry snapshot failed, file:" + snapshotFile, e);
+            serviceNodeMap.clear();
+        } finally {
+            closeQuietly(reader);
+        }
+        return serviceNodeMap;
+    }
+
+    /**
+     * 将服务提供者列表写入快照
+     *
+     * @param serviceMetaDataMap
+     */
+    public synchronized void save(Map<String, List<ProviderService>> serviceMetaDataMap) {
+        File snapshotDir = snapshotFile.getParentFile();
+        if (snapshotDir != null && !snapshotDir.isDirectory() && !snapshotDir.mkdirs()) {
+            logger.warn("create registry snapshot dir failed, dir:" + snapshotDir);
+            return;
+        }
+
+        File tmpFile = new File(snapshotFile.getPath() + ".tmp");
+        BufferedWriter writer = null;
+        try {
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmpFile), CHARSET));
+            for (Map.Entry<String, List<ProviderService>> entry : serviceMetaDataMap.entrySet()) {
+                for (ProviderService providerService : entry.getValue()) {
+                    writer.write(entry.getKey());
+                    writer.write(SEPARATOR);
+                    writer.write(providerService.getServerIp() + "|" + providerService.getServerPort() + "|"
+                            + providerService.getWeight() + "|" + providerService.getWorkerThreads() + "|"
+                            + providerService.getGroupName());
+                    if (StringUtils.isNotBlank(providerService.getUdsPath())) {
+                        writer.write("|" + RegisterCenter.encodeNodeField(providerService.getUdsPath()));
+                    }
+                    writer.newLine();
+                }
+            }
+            writer.flush();
+        } catch (Exception e) {
+            logger.warn("write registry snapshot failed, file:" + tmpFile, e);
+            closeQuietly(writer);
+            tmpFile.delete();
+            return;
+        } finally {
+            closeQuietly(writer);
+        }
+
+        //重命名替换,读取方不会读到写了一半的快照
+        if (!tmpFile.renameTo(snapshotFile)) {
+            snapshotFile.delete();
+            if (!tmpFile.renameTo(snapshotFile)) {
+                logger.warn("replace registry snapshot failed, file:" + snapshotFile);
+            }
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            //ignore
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package ares.remoting.framework.zookeeper;
+
+import ares.remoting.framework.model.ProviderService;
+
+import java.util.List;
+
+/**
+ * 消费端服务提供者列表变更监听器，注册中心刷新本地缓存后回调。
+ *
+ * @version $Id$
+ */
+public interface ProviderChangeListener {
+
+    /**
+     * 服务提供者列表发生变更
+     *
+     * @param serviceKey       服务接口名
+     * @param providerServices 变更后的服务提供者列表(只读)
+     * @param addedProviders   本次新上线的服务提供者(只读)
+     * @param removedProviders 本次下线的服务提供者(只读)
+     */
+    public void onProviderChange(String serviceKey, List<ProviderService> providerServices,
+                                 List<ProviderService> addedProviders, List<ProviderService> removedProviders);
+}
@@ -5,10 +5,12 @@ import ares.remoting.framework.helper.IPHelper;
 import ares.remoting.framework.helper.PropertyConfigeHelper;
 import ares.remoting.framework.model.InvokerService;
 import ares.remoting.framework.model.ProviderService;
-import com.alibaba.fastjson.JSON;
-import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.I0Itec.zkclient.IZkChildListener;
 import org.I0Itec.zkclient.ZkClient;
 import org.I0Itec.zkclient.serialize.SerializableSerializer;
@@ -17,9 +19,18 @@ import org.apache.commons.collections.MapUtils;
 import org.apache.commons.lang3.ClassUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * 注册中心实现
@@ -29,14 +40,32 @@ import java.util.Map;
  */
 public class RegisterCenter implements IRegisterCenter4Invoker, IRegisterCenter4Provider, IRegisterCenter4Governance {
 
+    private static final Logger logger = LoggerFactory.getLogger(RegisterCenter.class);
+
     private static RegisterCenter registerCenter = new RegisterCenter();
 
+    /**
+     * 以下两个Map均为不可变快照：更新时在副本上计算差异后整体替换(写时复制)，
+     * 读取方拿到的永远是一份完整的服务列表，不会看到`clear()`到`putAll()`之间的空窗口。
+     */
     //服务提供者列表,Key:服务提供者接口  value:服务提供者服务方法列表
     /** 存放服务+服务提供者原信息，可能被多个服务者共同注册 */
-    private static final Map<String, List<ProviderService>> providerServiceMap = Maps.newConcurrentMap();
+    private static volatile Map<String, List<ProviderService>> providerServiceMap = ImmutableMap.of();
 
     //服务端ZK服务元信息,选择服务(第一次直接从ZK拉取,后续由ZK的监听机制主动更新)
-    private static final Map<String, List<ProviderService>> serviceMetaDataMap4Consume = com.google.common.collect.Maps.newConcurrentMap();
+    private static volatile Map<String, List<ProviderService>> serviceMetaDataMap4Consume = ImmutableMap.of();
+
+    //消费端服务提供者列表变更监听器
+    private static final List<ProviderChangeListener> providerChangeListeners = new CopyOnWriteArrayList<ProviderChangeListener>();
+
+    //消费端注册中心本地快照
+    private static volatile LocalRegistrySnapshot registrySnapshot;
+
+    //后台与Zookeeper对账的线程
+    private static final ExecutorService reconcileExecutor = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("ares-registry-reconcile").setDaemon(true).build());
+    //对账失败重试的最大间隔(毫秒)
+    private static final long MAX_RECONCILE_INTERVAL = 30000L;
 
     /** 以下内容是Zookeeper根据properties配置文件生成的 */
     private static String ZK_SERVICE = PropertyConfigeHelper.getZkService();
@@ -79,23 +108,25 @@ public class RegisterCenter implements IRegisterCenter4Invoker, IRegisterCenter4
          */
         synchronized (RegisterCenter.class) {
 
-            // 遍历这个服务提供方提供的所有服务
+            // 遍历这个服务提供方提供的所有服务,在副本上追加
+            Map<String, List<ProviderService>> newProviderServiceMap = Maps.newHashMap(providerServiceMap);
             for (ProviderService provider : serviceMetaData) {
 
                 // 接口名
                 String serviceItfKey = provider.getServiceItf().getName();
                 // 静态缓存中已有的服务
-                List<ProviderService> providers = providerServiceMap.get(serviceItfKey);
+                List<ProviderService> providers = newProviderServiceMap.get(serviceItfKey);
 
-                // 第一次注册服务就新建List把自己放入
-                if (providers == null) {
-                    providers = Lists.newArrayList();
+                // 第一次注册服务就新建List把自己放入(已有的只读列表复制一份再追加)
+                List<ProviderService> newProviders = Lists.newArrayList();
+                if (providers != null) {
+                    newProviders.addAll(providers);
                 }
-                providers.add(provider);
-
-                // 更新一把(对象改变了也可以重新放入的)
-                providerServiceMap.put(serviceItfKey, providers);
+                newProviders.add(provider);
+                newProviderServiceMap.put(serviceItfKey, newProviders);
             }
+            // 整体替换快照
+            providerServiceMap = immutableCopyOf(newProviderServiceMap);
 
             if (zkClient == null) {
                 zkClient = new ZkClient(ZK_SERVICE, ZK_SESSION_TIME_OUT, ZK_CONNECTION_TIME_OUT, new SerializableSerializer());
@@ -117,7 +148,7 @@ public class RegisterCenter implements IRegisterCenter4Invoker, IRegisterCenter4
                 String groupName = entry.getValue().get(0).getGroupName();
                 //创建服务提供者
                 // `serviceNode`是服务接口名
-                String serviceNode = entry.getKey();
+                final String serviceNode = entry.getKey();
                 // Zookeeper中全路径：`Zookeeper根路径`+分组名+服务名+`消费者/生产者`
                 String servicePath = ZK_PATH + "/" + groupName + "/" + serviceNode + "/" + PROVIDER_TYPE;
 
@@ -131,6 +162,7 @@ public class RegisterCenter implements IRegisterCenter4Invoker, IRegisterCenter4
                 int serverPort = entry.getValue().get(0).getServerPort();//服务端口
                 int weight = entry.getValue().get(0).getWeight();//服务权重
                 int workerThreads = entry.getValue().get(0).getWorkerThreads();//服务工作线程
+                String udsPath = entry.getValue().get(0).getUdsPath();//服务监听的Unix域套接字路径
 
                 // Zookeeper服务器所在的机器IP
                 String localIp = IPHelper.localIp();
@@ -139,8 +171,12 @@ public class RegisterCenter implements IRegisterCenter4Invoker, IRegisterCenter4
                  * 服务IP路径：
                  * `servicePath`是：`Zookeeper根路径`+分组名+服务名+`消费者/生产者`；
                  * `currentServiceIpNode`是`servicePath`+`Zookeeper所在IP地址`+`服务端口号`+`服务权重`+`工作线程`+`服务分组名`
+                 * 服务端监听了Unix域套接字时，再追加URL编码后的套接字路径(ZK节点名不能包含`/`)
                  */
                 String currentServiceIpNode = servicePath + "/" + localIp + "|" + serverPort + "|" + weight + "|" + workerThreads + "|" + groupName;
+                if (StringUtils.isNotBlank(udsPath)) {
+                    currentServiceIpNode = currentServiceIpNode + "|" + encodeNodeField(udsPath);
+                }
                 exist = zkClient.exists(currentServiceIpNode);
                 if (!exist) {
                     //注意,这里创建的是临时节点
@@ -152,18 +188,8 @@ public class RegisterCenter implements IRegisterCenter4Invoker, IRegisterCenter4
                 zkClient.subscribeChildChanges(servicePath, new IZkChildListener() {
                     @Override
                     public void handleChildChange(String parentPath, List<String> currentChilds) throws Exception {
-                        if (currentChilds == null) {
-                            currentChilds = Lists.newArrayList();
-                        }
-
-                        //存活的服务IP列表
-                        List<String> activityServiceIpList = Lists.newArrayList(Lists.transform(currentChilds, new Function<String, String>() {
-                            @Override
-                            public String apply(String input) {
-                                return StringUtils.split(input, "|")[0];
-                            }
-                        }));
-                        refreshActivityService(activityServiceIpList);
+                        //存活的服务节点列表
+                        refreshActivityService(serviceNode, currentChilds);
                     }
                 });
 
@@ -185,9 +211,67 @@ public class RegisterCenter implements IRegisterCenter4Invoker, IRegisterCenter4
      * @param groupName
      */
     @Override
-    public void initProviderMap(String remoteAppKey, String groupName) {
-        if (MapUtils.isEmpty(serviceMetaDataMap4Consume)) {
-            serviceMetaDataMap4Consume.putAll(fetchOrUpdateServiceMetaData(remoteAppKey, groupName));
+    public void initProviderMap(final String remoteAppKey, final String groupName) {
+        if (!MapUtils.isEmpty(serviceMetaDataMap4Consume)) {
+            return;
+        }
+
+        registrySnapshot = LocalRegistrySnapshot.of(remoteAppKey, groupName);
+        Map<String, List<String>> snapshotServiceNodeMap = registrySnapshot.load();
+        if (MapUtils.isEmpty(snapshotServiceNodeMap)) {
+            // 没有本地快照,只能同步从Zookeeper拉取
+            publishServiceMetaDataMap(fetchServiceNodes(remoteAppKey, groupName));
+            registrySnapshot.save(serviceMetaDataMap4Consume);
+            return;
+        }
+
+        // 有本地快照:立即用快照启动,后台再与Zookeeper对账(Zookeeper不可用时持续重试)
+        publishServiceMetaDataMap(snapshotServiceNodeMap);
+        reconcileExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                long interval = 1000L;
+                while (true) {
+                    try {
+                        Map<String, List<String>> serviceNodeMap = fetchServiceNodes(remoteAppKey, groupName);
+                        for (Map.Entry<String, List<String>> entry : serviceNodeMap.entrySet()) {
+                            refreshServiceMetaDataMap(entry.getKey(), entry.getValue());
+                        }
+                        registrySnapshot.save(serviceMetaDataMap4Consume);
+                        return;
+                    } catch (Throwable t) {
+                        logger.warn("reconcile registry snapshot with zookeeper failed, retry after " + interval + "ms.", t);
+                    }
+                    try {
+                        Thread.sleep(interval);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    interval = Math.min(interval * 2, MAX_RECONCILE_INTERVAL);
+                }
+            }
+        });
+    }
+
+    /**
+     * 将服务节点信息转换为服务提供者列表并发布为消费端快照
+     *
+     * @param serviceNodeMap
+     */
+    private void publishServiceMetaDataMap(Map<String, List<String>> serviceNodeMap) {
+        Map<String, List<ProviderService>> fetchedServiceMetaDataMap = Maps.newHashMap();
+        for (Map.Entry<String, List<String>> entry : serviceNodeMap.entrySet()) {
+            List<ProviderService> providerServiceList = Lists.newArrayList();
+            for (String serviceNode : entry.getValue()) {
+                providerServiceList.add(buildProviderService(entry.getKey(), serviceNode));
+            }
+            fetchedServiceMetaDataMap.put(entry.getKey(), providerServiceList);
+        }
+
+        synchronized (RegisterCenter.class) {
+            // 拉取期间监听器可能已经刷新过的服务,以刷新结果为准
+            fetchedServiceMetaDataMap.putAll(serviceMetaDataMap4Consume);
+            serviceMetaDataMap4Consume = immutableCopyOf(fetchedServiceMetaDataMap);
         }
     }
 
@@ -196,6 +280,14 @@ public class RegisterCenter implements IRegisterCenter4Invoker, IRegisterCenter4
         return serviceMetaDataMap4Consume;
     }
 
+    @Override
+    public void subscribeProviderChange(ProviderChangeListener listener) {
+        if (listener == null) {
+            return;
+        }
+        providerChangeListeners.add(listener);
+    }
+
     /**
      * 每当一个服务消费者spring起来后，向服务中心注册自己所调用服务，在`在Zookeeper服务中心`中建立消费者节点。
      *
@@ -245,89 +337,254 @@ public class RegisterCenter implements IRegisterCenter4Invoker, IRegisterCenter4
     /**
      * 利用ZK的自动刷新机制监听服务名分组名中存活服务提供者列表数据。
      *
-     * @param serviceIpList     异步监听传入的变化
+     * @param serviceKey        服务接口名
+     * @param serviceNodeList   异步监听传入的变化(服务节点列表)
      */
-    private void refreshActivityService(List<String> serviceIpList) {
-        if (serviceIpList == null) {
-            serviceIpList = Lists.newArrayList();
+    private void refreshActivityService(String serviceKey, List<String> serviceNodeList) {
+        //存活的服务端点集合(IP+端口),用于O(1)判断
+        Set<String> activityEndpoints = Sets.newHashSet();
+        if (serviceNodeList != null) {
+            for (String serviceNode : serviceNodeList) {
+                String[] nodeArr = StringUtils.split(serviceNode, "|");
+                activityEndpoints.add(endpointKey(nodeArr[0], Integer.parseInt(nodeArr[1])));
+            }
         }
 
-        Map<String, List<ProviderService>> currentServiceMetaDataMap = Maps.newHashMap();
-        for (Map.Entry<String, List<ProviderService>> entry : providerServiceMap.entrySet()) {
-            String key = entry.getKey();
-            List<ProviderService> providerServices = entry.getValue();
-
-            List<ProviderService> serviceMetaDataModelList = currentServiceMetaDataMap.get(key);
-            if (serviceMetaDataModelList == null) {
-                serviceMetaDataModelList = Lists.newArrayList();
+        synchronized (RegisterCenter.class) {
+            List<ProviderService> providerServices = providerServiceMap.get(serviceKey);
+            if (CollectionUtils.isEmpty(providerServices)) {
+                return;
             }
 
-            for (ProviderService serviceMetaData : providerServices) {
-                if (serviceIpList.contains(serviceMetaData.getServerIp())) {
-                    serviceMetaDataModelList.add(serviceMetaData);
+            List<ProviderService> activityProviders = Lists.newArrayListWithCapacity(providerServices.size());
+            for (ProviderService providerService : providerServices) {
+                if (activityEndpoints.contains(endpointKey(providerService.getServerIp(), providerService.getServerPort()))) {
+                    activityProviders.add(providerService);
                 }
             }
-            currentServiceMetaDataMap.put(key, serviceMetaDataModelList);
+
+            //无变化不替换
+            if (activityProviders.size() == providerServices.size()) {
+                return;
+            }
+            //空列表保护:本地发布的服务不因ZK节点短暂消失而被清空
+            if (activityProviders.isEmpty()) {
+                logger.warn("all providers of service " + serviceKey + " disappeared from zookeeper, keep local cache.");
+                return;
+            }
+            providerServiceMap = replaceServiceList(providerServiceMap, serviceKey, activityProviders);
         }
-        providerServiceMap.clear();
-        System.out.println("currentServiceMetaDataMap,"+ JSON.toJSONString(currentServiceMetaDataMap));
-        providerServiceMap.putAll(currentServiceMetaDataMap);
     }
 
     /**
-     * 监听Zookeeper的子节点变化，来刷新服务原信息映射。
+     * 监听Zookeeper的子节点变化，按新增/下线的服务端点增量刷新某个服务的提供者列表。
      *
-     * @param serviceIpList
+     * @param serviceKey        服务接口名
+     * @param serviceNodeList   最新的服务节点列表
      */
-    private void refreshServiceMetaDataMap(List<String> serviceIpList) {
-        if (serviceIpList == null) {
-            serviceIpList = Lists.newArrayList();
+    void refreshServiceMetaDataMap(String serviceKey, List<String> serviceNodeList) {
+        // 最新服务端点(IP+端口) -> 服务节点
+        Map<String, String> liveServiceNodes = Maps.newHashMap();
+        if (serviceNodeList != null) {
+            for (String serviceNode : serviceNodeList) {
+                String[] nodeArr = StringUtils.split(serviceNode, "|");
+                liveServiceNodes.put(endpointKey(nodeArr[0], Integer.parseInt(nodeArr[1])), serviceNode);
+            }
         }
 
-        // 最新服务提供列表
-        Map<String, List<ProviderService>> currentServiceMetaDataMap = Maps.newHashMap();
+        List<ProviderService> addedProviders = Lists.newArrayList();
+        List<ProviderService> removedProviders = Lists.newArrayList();
+        synchronized (RegisterCenter.class) {
+            List<ProviderService> providerServices = serviceMetaDataMap4Consume.get(serviceKey);
+            if (providerServices == null) {
+                providerServices = ImmutableList.of();
+            }
 
-        // 遍历已经存在的服务
-        for (Map.Entry<String, List<ProviderService>> entry : serviceMetaDataMap4Consume.entrySet()) {
+            // 如果原来的服务现在还在最新的端点列表里且属性未变则保留,否则记为下线
+            Set<String> retainedEndpoints = Sets.newHashSet();
+            List<ProviderService> retainedProviders = Lists.newArrayListWithCapacity(providerServices.size());
+            for (ProviderService providerService : providerServices) {
+                String endpoint = endpointKey(providerService.getServerIp(), providerService.getServerPort());
+                String serviceNode = liveServiceNodes.get(endpoint);
+                if (serviceNode != null && sameProvider(providerService, buildProviderService(serviceKey, serviceNode))) {
+                    retainedEndpoints.add(endpoint);
+                    retainedProviders.add(providerService);
+                } else {
+                    removedProviders.add(providerService);
+                }
+            }
 
-            // 服务接口名
-            String serviceItfKey = entry.getKey();
-            // 服务提供列表
-            List<ProviderService> serviceList = entry.getValue();
+            // 新出现或属性变化(权重、Unix域套接字路径)的端点记为上线
+            for (Map.Entry<String, String> entry : liveServiceNodes.entrySet()) {
+                if (!retainedEndpoints.contains(entry.getKey())) {
+                    addedProviders.add(buildProviderService(serviceKey, entry.getValue()));
+                }
+            }
 
-            // 如果第一次遍历到、则新建服务List放入，后续遍历到则拿出存在的List列表
-            List<ProviderService> providerServiceList = currentServiceMetaDataMap.get(serviceItfKey);
-            if (providerServiceList == null) {
-                providerServiceList = Lists.newArrayList();
+            //无变化不替换
+            if (addedProviders.isEmpty() && removedProviders.isEmpty()) {
+                return;
+            }
+            //空列表保护:ZK短暂抖动时保留最后一份可用列表,调用方永远看不到空列表
+            if (retainedProviders.isEmpty() && addedProviders.isEmpty()) {
+                logger.warn("all providers of service " + serviceKey + " disappeared from zookeeper, keep last provider list.");
+                return;
             }
 
-            // 如果原来的服务现在还在最新的IP列表里，则放入服务List中，否则抛弃
-            for (ProviderService serviceMetaData : serviceList) {
-                if (serviceIpList.contains(serviceMetaData.getServerIp())) {
-                    providerServiceList.add(serviceMetaData);
-                }
+            List<ProviderService> newProviderServices = Lists.newArrayListWithCapacity(retainedProviders.size() + addedProviders.size());
+            newProviderServices.addAll(retainedProviders);
+            newProviderServices.addAll(addedProviders);
+            // 只替换这一个服务的列表,整体替换快照
+            serviceMetaDataMap4Consume = replaceServiceList(serviceMetaDataMap4Consume, serviceKey, newProviderServices);
+            newProviderServices = serviceMetaDataMap4Consume.get(serviceKey);
+
+            // 通知订阅者(如消费端路由快照、通道池);在锁内通知,ZK事件线程与后台对账线程的变更按替换顺序送达
+            notifyProviderChange(serviceKey, newProviderServices, addedProviders, removedProviders);
+        }
+
+        // 刷新本地快照
+        LocalRegistrySnapshot snapshot = registrySnapshot;
+        if (snapshot != null) {
+            snapshot.save(serviceMetaDataMap4Consume);
+        }
+    }
+
+    /**
+     * 通知服务提供者列表变更(持有`RegisterCenter.class`锁时调用，订阅者不能在回调中阻塞)
+     *
+     * @param serviceKey
+     * @param providerServices
+     * @param addedProviders
+     * @param removedProviders
+     */
+    private void notifyProviderChange(String serviceKey, List<ProviderService> providerServices,
+                                      List<ProviderService> addedProviders, List<ProviderService> removedProviders) {
+        List<ProviderService> readOnlyAdded = ImmutableList.copyOf(addedProviders);
+        List<ProviderService> readOnlyRemoved = ImmutableList.copyOf(removedProviders);
+        for (ProviderChangeListener listener : providerChangeListeners) {
+            try {
+                listener.onProviderChange(serviceKey, providerServices, readOnlyAdded, readOnlyRemoved);
+            } catch (Throwable t) {
+                logger.error("notify provider change error, service:" + serviceKey, t);
             }
+        }
+    }
 
-            // 刷新这个接口名下的服务提供列表
-            currentServiceMetaDataMap.put(serviceItfKey, providerServiceList);
+    /**
+     * 在快照副本上替换某个服务的提供者列表,返回新的不可变快照
+     *
+     * @param serviceMap
+     * @param serviceKey
+     * @param providerServices
+     * @return
+     */
+    private static Map<String, List<ProviderService>> replaceServiceList(Map<String, List<ProviderService>> serviceMap,
+                                                                         String serviceKey, List<ProviderService> providerServices) {
+        ImmutableMap.Builder<String, List<ProviderService>> builder = ImmutableMap.builder();
+        for (Map.Entry<String, List<ProviderService>> entry : serviceMap.entrySet()) {
+            if (!StringUtils.equals(entry.getKey(), serviceKey)) {
+                builder.put(entry.getKey(), entry.getValue());
+            }
         }
+        builder.put(serviceKey, ImmutableList.copyOf(providerServices));
+        return builder.build();
+    }
 
-        // 清空服务提供Map，并且重新放入
-        serviceMetaDataMap4Consume.clear();
-        serviceMetaDataMap4Consume.putAll(currentServiceMetaDataMap);
+    /**
+     * 生成不可变快照(列表同样不可变)
+     *
+     * @param serviceMap
+     * @return
+     */
+    private static Map<String, List<ProviderService>> immutableCopyOf(Map<String, List<ProviderService>> serviceMap) {
+        ImmutableMap.Builder<String, List<ProviderService>> builder = ImmutableMap.builder();
+        for (Map.Entry<String, List<ProviderService>> entry : serviceMap.entrySet()) {
+            builder.put(entry.getKey(), ImmutableList.copyOf(entry.getValue()));
+        }
+        return builder.build();
     }
 
+    /**
+     * 服务端点标识:IP+端口
+     *
+     * @param serverIp
+     * @param serverPort
+     * @return
+     */
+    private static String endpointKey(String serverIp, int serverPort) {
+        return serverIp + ":" + serverPort;
+    }
 
     /**
-     * 服务调用消费方从服务中心中获取已经存在的、或更新监听变更后的服务数据。
+     * 同一端点的服务节点属性是否未变(快照中的节点可能来自服务提供者重启前)
+     *
+     * @param current
+     * @param latest
+     * @return
+     */
+    private static boolean sameProvider(ProviderService current, ProviderService latest) {
+        return current.getWeight() == latest.getWeight()
+                && StringUtils.equals(StringUtils.defaultString(current.getUdsPath()), StringUtils.defaultString(latest.getUdsPath()));
+    }
+
+    /**
+     * 根据ZK服务节点信息生成服务提供者信息
+     * 路径信息格式：IP地址、端口号、权重、工作线程数、分组、Unix域套接字路径(可选)
+     *
+     * @param serviceName
+     * @param serviceNode
+     * @return
+     */
+    private static ProviderService buildProviderService(String serviceName, String serviceNode) {
+        String[] nodeArr = StringUtils.split(serviceNode, "|");
+
+        // 服务调用者信息
+        ProviderService providerService = new ProviderService();
+        // 设置服务接口
+        try {
+            providerService.setServiceItf(ClassUtils.getClass(serviceName));
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+        // 设置服务属性
+        providerService.setServerIp(nodeArr[0]);
+        providerService.setServerPort(Integer.parseInt(nodeArr[1]));
+        providerService.setWeight(Integer.parseInt(nodeArr[2]));
+        providerService.setWorkerThreads(Integer.parseInt(nodeArr[3]));
+        providerService.setGroupName(nodeArr[4]);
+        if (nodeArr.length > 5) {
+            providerService.setUdsPath(decodeNodeField(nodeArr[5]));
+        }
+        return providerService;
+    }
+
+    static String encodeNodeField(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String decodeNodeField(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+
+    /**
+     * 服务调用消费方从服务中心中获取已经存在的、或更新监听变更后的服务节点数据，并监听后续变更。
      *
      * @param remoteAppKey
      * @param groupName
-     * @return
+     * @return Key:服务接口名 value:服务节点列表
      */
-    private Map<String, List<ProviderService>> fetchOrUpdateServiceMetaData(String remoteAppKey, String groupName) {
-        // 服务名称作为key、服务提供方列表作为值
-        final Map<String, List<ProviderService>> providerServiceMap = Maps.newConcurrentMap();
+    private Map<String, List<String>> fetchServiceNodes(String remoteAppKey, String groupName) {
+        // 服务名称作为key、服务节点列表作为值
+        final Map<String, List<String>> serviceNodeMap = Maps.newHashMap();
         //连接zk
         synchronized (RegisterCenter.class) {
             if (zkClient == null) {
@@ -341,64 +598,26 @@ public class RegisterCenter implements IRegisterCenter4Invoker, IRegisterCenter4
         String providePath = ROOT_PATH + "/" + remoteAppKey + "/" + groupName;
         List<String> providerServices = zkClient.getChildren(providePath);
 
-        for (String serviceName : providerServices) {
+        for (final String serviceName : providerServices) {
 
             // 第二层路径是：第一层路径+服务名+服务提供者标识
             String servicePath = providePath + "/" + serviceName + "/" + PROVIDER_TYPE;
+            // 路径信息格式：IP地址、端口号、权重、工作线程数、分组
             List<String> ipPathList = zkClient.getChildren(servicePath);
-
-            // 对获取到的服务提供方信息列表进行处理
-            for (String ipPath : ipPathList) {
-                // 路径信息格式：IP地址、端口号、权重、工作线程数、分组
-                String serverIp = StringUtils.split(ipPath, "|")[0];
-                String serverPort = StringUtils.split(ipPath, "|")[1];
-                int weight = Integer.parseInt(StringUtils.split(ipPath, "|")[2]);
-                int workerThreads = Integer.parseInt(StringUtils.split(ipPath, "|")[3]);
-                String group = StringUtils.split(ipPath, "|")[4];
-
-                List<ProviderService> providerServiceList = providerServiceMap.get(serviceName);
-                if (providerServiceList == null) {
-                    providerServiceList = Lists.newArrayList();
-                }
-
-                // 服务调用者信息
-                ProviderService providerService = new ProviderService();
-                // 设置服务接口
-                try {
-                    providerService.setServiceItf(ClassUtils.getClass(serviceName));
-                } catch (ClassNotFoundException e) {
-                    throw new RuntimeException(e);
-                }
-                // 设置服务属性
-                providerService.setServerIp(serverIp);
-                providerService.setServerPort(Integer.parseInt(serverPort));
-                providerService.setWeight(weight);
-                providerService.setWorkerThreads(workerThreads);
-                providerService.setGroupName(group);
-                providerServiceList.add(providerService);
-
-                // 按照服务名放入服务提供者列表
-                providerServiceMap.put(serviceName, providerServiceList);
+            if (CollectionUtils.isNotEmpty(ipPathList)) {
+                // 按照服务名放入服务节点列表
+                serviceNodeMap.put(serviceName, ipPathList);
             }
 
             //监听注册服务的变化,同时更新数据到本地缓存
             zkClient.subscribeChildChanges(servicePath, new IZkChildListener() {
                 @Override
                 public void handleChildChange(String parentPath, List<String> currentChilds) throws Exception {
-                    if (currentChilds == null) {
-                        currentChilds = Lists.newArrayList();
-                    }
-                    currentChilds = Lists.newArrayList(Lists.transform(currentChilds, new Function<String, String>() {
-                        @Override
-                        public String apply(String input) {
-                            return StringUtils.split(input, "|")[0];
-                        }
-                    }));
-                    refreshServiceMetaDataMap(currentChilds);
+                    refreshServiceMetaDataMap(serviceName, currentChilds);
                 }
             });
         }
-        return providerServiceMap;
+        return serviceNodeMap;
     }
 
     /**
@@ -0,0 +1,76 @@
+package ares.remoting.test;
+
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 小报文高并发压测：多个线程同时调用远程服务，同一连接上有大量流水线请求，用于对比写入批处理、flush合并前后的吞吐。
+ *
+ * 先启动`MainServer`，再运行本类，参数依次为：并发线程数(默认64)、每个线程调用次数(默认100000)。
+ *
+ * @version $Id$
+ */
+public class MainBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        final int threads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        final int callsPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+
+        //引入远程服务
+        final ClassPathXmlApplicationContext context = new ClassPathXmlApplicationContext("ares-client.xml");
+        final HelloService helloService = (HelloService) context.getBean("remoteHelloService");
+
+        //预热
+        for (int i = 0; i < 10000; i++) {
+            try {
+                helloService.sayHello("w");
+            } catch (Exception e) {
+                //预热阶段忽略异常
+            }
+        }
+
+        final AtomicLong successCount = new AtomicLong(0);
+        final AtomicLong failureCount = new AtomicLong(0);
+        final AtomicLong totalLatency = new AtomicLong(0);
+        final CountDownLatch latch = new CountDownLatch(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        long startTime = System.currentTimeMillis();
+        for (int t = 0; t < threads; t++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < callsPerThread; i++) {
+                            long begin = System.nanoTime();
+                            try {
+                                helloService.sayHello("b");
+                                successCount.incrementAndGet();
+                            } catch (Exception e) {
+                                failureCount.incrementAndGet();
+                            }
+                            totalLatency.addAndGet(System.nanoTime() - begin);
+                        }
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            });
+        }
+        latch.await();
+        long elapsed = Math.max(System.currentTimeMillis() - startTime, 1);
+        executor.shutdown();
+
+        long total = successCount.get() + failureCount.get();
+        System.out.println("threads:" + threads + ", calls:" + total + ", success:" + successCount.get() + ", failure:" + failureCount.get());
+        System.out.println("elapsed:" + elapsed + "ms, qps:" + (total * 1000 / elapsed)
+                + ", avg latency:" + (totalLatency.get() / Math.max(total, 1) / 1000) + "us");
+
+        //关闭jvm
+        System.exit(0);
+    }
+}
@@ -0,0 +1,53 @@
+package ares.remoting.framework.cluster.impl;
+
+import ares.remoting.framework.cluster.status.EndpointStatus;
+import ares.remoting.framework.model.ProviderService;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertSame;
+
+/**
+ * 最少活跃调用数与P2C负载策略
+ *
+ * @version $Id$
+ */
+public class LeastActiveClusterStrategyImplTest {
+
+    @Test
+    public void leastActiveAvoidsBusyProvider() {
+        ProviderService busy = provider("10.0.1.1");
+        ProviderService idle = provider("10.0.1.2");
+        EndpointStatus.of(busy).tryBeginInvoke();
+
+        List<ProviderService> providers = Lists.newArrayList(busy, idle);
+        for (int i = 0; i < 20; i++) {
+            assertSame(idle, new LeastActiveClusterStrategyImpl().select(providers));
+        }
+    }
+
+    @Test
+    public void p2cPrefersLowerScoreOfTwo() {
+        ProviderService slow = provider("10.0.1.3");
+        ProviderService fast = provider("10.0.1.4");
+        EndpointStatus slowStatus = EndpointStatus.of(slow);
+        slowStatus.endInvoke(1000, true, slowStatus.tryBeginInvoke());
+        slowStatus.tryBeginInvoke();
+
+        //只有两个服务提供者时P2C总是比较这两个
+        List<ProviderService> providers = Lists.newArrayList(slow, fast);
+        for (int i = 0; i < 20; i++) {
+            assertSame(fast, new P2CClusterStrategyImpl().select(providers));
+        }
+    }
+
+    private static ProviderService provider(String serverIp) {
+        ProviderService providerService = new ProviderService();
+        providerService.setServerIp(serverIp);
+        providerService.setServerPort(8801);
+        providerService.setWeight(1);
+        return providerService;
+    }
+}
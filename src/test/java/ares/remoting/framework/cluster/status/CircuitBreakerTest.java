@@ -0,0 +1,143 @@
+package ares.remoting.framework.cluster.status;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 端点熔断器状态切换
+ *
+ * @version $Id$
+ */
+public class CircuitBreakerTest {
+
+    private static final long OPEN_DURATION = 50L;
+
+    @Test
+    public void failuresOpenBreaker() {
+        CircuitBreaker breaker = newBreaker();
+        assertTrue(breaker.isAvailable());
+        trip(breaker);
+
+        assertTrue(breaker.isOpen());
+        assertFalse(breaker.isAvailable());
+        assertEquals(CircuitBreaker.DENIED, breaker.tryAcquire());
+    }
+
+    @Test
+    public void fewRequestsDoNotOpenBreaker() {
+        CircuitBreaker breaker = newBreaker();
+        for (int i = 0; i < 3; i++) {
+            breaker.record(1, false, breaker.tryAcquire());
+        }
+        assertFalse(breaker.isOpen());
+    }
+
+    @Test
+    public void onlyOneProbeAfterOpenDuration() throws Exception {
+        CircuitBreaker breaker = newBreaker();
+        trip(breaker);
+        Thread.sleep(OPEN_DURATION + 10);
+
+        long probe = breaker.tryAcquire();
+        assertTrue(probe > CircuitBreaker.PERMITTED);
+        assertEquals(CircuitBreaker.DENIED, breaker.tryAcquire());
+    }
+
+    @Test
+    public void successfulProbeClosesBreaker() throws Exception {
+        CircuitBreaker breaker = newBreaker();
+        trip(breaker);
+        Thread.sleep(OPEN_DURATION + 10);
+
+        breaker.record(1, true, breaker.tryAcquire());
+        assertFalse(breaker.isOpen());
+        assertEquals(CircuitBreaker.PERMITTED, breaker.tryAcquire());
+    }
+
+    @Test
+    public void failedProbeReopensBreaker() throws Exception {
+        CircuitBreaker breaker = newBreaker();
+        trip(breaker);
+        Thread.sleep(OPEN_DURATION + 10);
+
+        breaker.record(1, false, breaker.tryAcquire());
+        assertTrue(breaker.isOpen());
+        assertEquals(CircuitBreaker.DENIED, breaker.tryAcquire());
+    }
+
+    @Test
+    public void releasedProbeReturnsBreakerToOpen() throws Exception {
+        CircuitBreaker breaker = newBreaker();
+        trip(breaker);
+        Thread.sleep(OPEN_DURATION + 10);
+
+        //探测调用被放弃或遇到服务端过载拒绝,不能据此恢复
+        long probe = breaker.tryAcquire();
+        breaker.release(probe);
+        assertTrue(breaker.isOpen());
+        assertTrue(breaker.isAvailable());
+
+        //交还的探测许可之后再结束也不改变状态,下一个调用立即重新探测
+        long nextProbe = breaker.tryAcquire();
+        assertTrue(nextProbe > probe);
+        breaker.record(1, true, probe);
+        assertTrue(breaker.isOpen());
+        breaker.record(1, true, nextProbe);
+        assertFalse(breaker.isOpen());
+    }
+
+    @Test
+    public void releasedNormalPermitIsNotCounted() {
+        CircuitBreaker breaker = newBreaker();
+        for (int i = 0; i < 5; i++) {
+            breaker.record(1, false, breaker.tryAcquire());
+        }
+        for (int i = 0; i < 20; i++) {
+            breaker.release(breaker.tryAcquire());
+        }
+        //未计入的调用不稀释失败率
+        for (int i = 0; i < 5; i++) {
+            breaker.record(1, true, breaker.tryAcquire());
+        }
+        assertTrue(breaker.isOpen());
+    }
+
+    @Test
+    public void lateCallFromBeforeTripDoesNotSettleProbe() throws Exception {
+        CircuitBreaker breaker = newBreaker();
+        //熔断前发出的调用
+        long latePermit = breaker.tryAcquire();
+        trip(breaker);
+        Thread.sleep(OPEN_DURATION + 10);
+
+        long probe = breaker.tryAcquire();
+        assertTrue(probe > CircuitBreaker.PERMITTED);
+        breaker.record(1, true, latePermit);
+        assertTrue(breaker.isOpen());
+
+        breaker.record(1, true, probe);
+        assertFalse(breaker.isOpen());
+    }
+
+    @Test
+    public void slowCallsOpenBreaker() {
+        CircuitBreaker breaker = newBreaker();
+        for (int i = 0; i < 10; i++) {
+            breaker.record(1000, true, breaker.tryAcquire());
+        }
+        assertTrue(breaker.isOpen());
+    }
+
+    private static CircuitBreaker newBreaker() {
+        return new CircuitBreaker(10000, 10, 0.5, 500, 0.8, OPEN_DURATION);
+    }
+
+    private static void trip(CircuitBreaker breaker) {
+        for (int i = 0; i < 10; i++) {
+            breaker.record(1, false, breaker.tryAcquire());
+        }
+    }
+}
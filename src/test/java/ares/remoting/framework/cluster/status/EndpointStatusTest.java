@@ -0,0 +1,63 @@
+package ares.remoting.framework.cluster.status;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 端点状态：在途请求数、EWMA耗时与下线移除
+ *
+ * @version $Id$
+ */
+public class EndpointStatusTest {
+
+    @Test
+    public void sameEndpointSharesStatus() {
+        assertSame(EndpointStatus.of("10.0.0.1", 8801), EndpointStatus.of("10.0.0.1", 8801));
+        assertNotSame(EndpointStatus.of("10.0.0.1", 8801), EndpointStatus.of("10.0.0.1", 8802));
+    }
+
+    @Test
+    public void activeCountFollowsInvokes() {
+        EndpointStatus status = EndpointStatus.of("10.0.0.2", 8801);
+        long permit = status.tryBeginInvoke();
+        assertTrue(permit != CircuitBreaker.DENIED);
+        assertEquals(1, status.getActive());
+
+        status.endInvoke(100, true, permit);
+        assertEquals(0, status.getActive());
+        assertTrue(status.getEwmaLatency() > 0);
+    }
+
+    @Test
+    public void releasedInvokeFreesSlot() {
+        EndpointStatus status = EndpointStatus.of("10.0.0.6", 8801);
+        status.releaseInvoke(100, status.tryBeginInvoke());
+        assertEquals(0, status.getActive());
+        assertTrue(status.getEwmaLatency() > 0);
+        assertTrue(status.isAvailable());
+    }
+
+    @Test
+    public void slowerEndpointScoresHigher() {
+        EndpointStatus fast = EndpointStatus.of("10.0.0.3", 8801);
+        EndpointStatus slow = EndpointStatus.of("10.0.0.4", 8801);
+        fast.endInvoke(5, true, fast.tryBeginInvoke());
+        slow.endInvoke(500, true, slow.tryBeginInvoke());
+        assertTrue(slow.score() > fast.score());
+    }
+
+    @Test
+    public void removedEndpointGetsFreshStatus() {
+        EndpointStatus status = EndpointStatus.of("10.0.0.5", 8801);
+        status.tryBeginInvoke();
+
+        EndpointStatus.remove("10.0.0.5", 8801);
+        EndpointStatus fresh = EndpointStatus.of("10.0.0.5", 8801);
+        assertNotSame(status, fresh);
+        assertEquals(0, fresh.getActive());
+    }
+}
@@ -0,0 +1,72 @@
+package ares.remoting.framework.provider;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 服务端自适应并发限流
+ *
+ * @version $Id$
+ */
+public class AdaptiveConcurrencyLimiterTest {
+
+    private static final long BASELINE_RTT = 1000000L;
+
+    @Test
+    public void rejectsBeyondLimit() {
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.of("limit-reject", 2);
+        assertSame(limiter, AdaptiveConcurrencyLimiter.of("limit-reject", 100));
+
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+
+        limiter.release(0, false);
+        assertEquals(1, limiter.getInflight());
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    public void limitGrowsUnderLoadAtBaselineLatency() {
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.of("limit-grow", 10);
+        for (int i = 0; i < 50; i++) {
+            saturateAndRelease(limiter, BASELINE_RTT);
+        }
+        assertTrue(limiter.getLimit() > 10);
+    }
+
+    @Test
+    public void limitShrinksWhenLatencyRises() {
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.of("limit-shrink", 50);
+        saturateAndRelease(limiter, BASELINE_RTT);
+        int before = limiter.getLimit();
+        for (int i = 0; i < 20; i++) {
+            saturateAndRelease(limiter, BASELINE_RTT * 20);
+        }
+        assertTrue(limiter.getLimit() < before);
+    }
+
+    @Test
+    public void lowLoadDoesNotInflateLimit() {
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.of("limit-idle", 10);
+        for (int i = 0; i < 50; i++) {
+            assertTrue(limiter.tryAcquire());
+            limiter.release(BASELINE_RTT, true);
+        }
+        assertEquals(10, limiter.getLimit());
+    }
+
+    private static void saturateAndRelease(AdaptiveConcurrencyLimiter limiter, long rtt) {
+        int acquired = 0;
+        while (limiter.tryAcquire()) {
+            acquired++;
+        }
+        for (int i = 0; i < acquired; i++) {
+            limiter.release(rtt, true);
+        }
+    }
+}
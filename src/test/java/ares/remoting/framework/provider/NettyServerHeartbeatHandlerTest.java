@@ -0,0 +1,36 @@
+package ares.remoting.framework.provider;
+
+import ares.remoting.framework.model.AresRequest;
+import ares.remoting.framework.model.AresResponse;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.timeout.IdleStateEvent;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 服务端心跳：应答心跳，读空闲超时关闭连接
+ *
+ * @version $Id$
+ */
+public class NettyServerHeartbeatHandlerTest {
+
+    @Test
+    public void heartbeatIsAnswered() {
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyServerHeartbeatHandler());
+        channel.writeInbound(AresRequest.heartbeat());
+
+        assertNull(channel.readInbound());
+        AresResponse response = channel.readOutbound();
+        assertTrue(response.isHeartbeat());
+    }
+
+    @Test
+    public void readerIdleClosesChannel() {
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyServerHeartbeatHandler());
+        channel.pipeline().fireUserEventTriggered(IdleStateEvent.FIRST_READER_IDLE_STATE_EVENT);
+        assertFalse(channel.isOpen());
+    }
+}
@@ -0,0 +1,91 @@
+package ares.remoting.framework.provider;
+
+import ares.remoting.framework.model.AresRequest;
+import ares.remoting.framework.model.AresResponse;
+import ares.remoting.framework.model.ProviderService;
+import ares.remoting.framework.model.ResponseStatusEnum;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 服务端请求处理：截止时间、过载与单向调用
+ *
+ * @version $Id$
+ */
+public class NettyServerInvokeHandlerTest {
+
+    private CountDownLatch flushed;
+    private EmbeddedChannel channel;
+
+    @Before
+    public void setUp() {
+        flushed = new CountDownLatch(1);
+        channel = new EmbeddedChannel(new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void flush(ChannelHandlerContext ctx) throws Exception {
+                super.flush(ctx);
+                flushed.countDown();
+            }
+        }, new NettyServerInvokeHandler());
+    }
+
+    @Test
+    public void expiredRequestIsNotInvoked() throws Exception {
+        //未携带剩余预算且超时时长为0,进入业务线程时已超过截止时间
+        AresRequest request = request(Runnable.class);
+        request.setRemainingTimeout(0);
+        request.setInvokeTimeout(0);
+
+        channel.writeInbound(request);
+
+        assertTrue(flushed.await(5, TimeUnit.SECONDS));
+        AresResponse response = channel.readOutbound();
+        assertEquals(request.getUniqueKey(), response.getUniqueKey());
+        assertEquals(ResponseStatusEnum.DeadlineExceeded, response.getStatus());
+    }
+
+    @Test
+    public void overloadIsRejectedImmediately() {
+        AresRequest request = request(Comparable.class);
+        AdaptiveConcurrencyLimiter.of(Comparable.class.getName(), 1).tryAcquire();
+
+        channel.writeInbound(request);
+
+        AresResponse response = channel.readOutbound();
+        assertEquals(ResponseStatusEnum.Overload, response.getStatus());
+    }
+
+    @Test
+    public void onewayRequestIsNotAnswered() {
+        AresRequest request = request(Cloneable.class);
+        request.setOneway(true);
+        AdaptiveConcurrencyLimiter.of(Cloneable.class.getName(), 1).tryAcquire();
+
+        channel.writeInbound(request);
+
+        assertNull(channel.readOutbound());
+    }
+
+    private static AresRequest request(Class<?> serviceItf) {
+        ProviderService providerService = new ProviderService();
+        providerService.setServiceItf(serviceItf);
+        providerService.setWorkerThreads(1);
+        AresRequest request = new AresRequest();
+        request.setUniqueKey(UUID.randomUUID().toString());
+        request.setProviderService(providerService);
+        request.setInvokedMethodName("run");
+        request.setInvokeTimeout(1000);
+        return request;
+    }
+}
@@ -0,0 +1,150 @@
+package ares.remoting.framework.provider;
+
+import ares.remoting.framework.helper.PropertyConfigeHelper;
+import ares.remoting.framework.model.AresRequest;
+import ares.remoting.framework.model.AresResponse;
+import ares.remoting.framework.model.MessageTypeEnum;
+import ares.remoting.framework.model.ResponseStatusEnum;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 服务端流式调用：按授信推送、取消与空闲结束
+ *
+ * @version $Id$
+ */
+public class NettyServerStreamTest {
+
+    /** 在调用线程中直接执行推送 */
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private static final int CHUNK_SIZE = PropertyConfigeHelper.getServerStreamChunkSize();
+
+    private EmbeddedChannel channel;
+    private ChannelHandlerContext ctx;
+
+    @Before
+    public void setUp() {
+        channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        ctx = channel.pipeline().firstContext();
+    }
+
+    @Test
+    public void pushesOnlyAsManyChunksAsCredits() {
+        AresRequest request = request(2);
+        NettyServerStream.open(ctx, request, new CountingIterator(CHUNK_SIZE * 5), DIRECT);
+        assertChunk(readFrame(), CHUNK_SIZE);
+        assertChunk(readFrame(), CHUNK_SIZE);
+        assertNull(channel.readOutbound());
+
+        NettyServerStream.grant(request.getUniqueKey(), 1);
+        assertChunk(readFrame(), CHUNK_SIZE);
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    public void exhaustedIteratorEndsStream() {
+        AresRequest request = request(8);
+        NettyServerStream.open(ctx, request, new CountingIterator(CHUNK_SIZE + 1), DIRECT);
+        assertChunk(readFrame(), CHUNK_SIZE);
+        assertChunk(readFrame(), 1);
+
+        AresResponse end = readFrame();
+        assertEquals(MessageTypeEnum.StreamEnd, end.getMessageType());
+        assertEquals(ResponseStatusEnum.Success, end.getStatus());
+        assertNull(end.getResult());
+    }
+
+    @Test
+    public void cancelStopsPushingWithoutEnd() {
+        AresRequest request = request(1);
+        NettyServerStream.open(ctx, request, new CountingIterator(CHUNK_SIZE * 5), DIRECT);
+        assertChunk(readFrame(), CHUNK_SIZE);
+
+        NettyServerStream.cancel(request.getUniqueKey());
+        NettyServerStream.grant(request.getUniqueKey(), 4);
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    public void idleStreamIsEndedWithTimeout() {
+        AresRequest request = request(1);
+        NettyServerStream.open(ctx, request, new CountingIterator(CHUNK_SIZE * 5), DIRECT);
+        assertChunk(readFrame(), CHUNK_SIZE);
+
+        NettyServerStream.endIdleStreams(System.currentTimeMillis() + 10000, 1000);
+        AresResponse end = readFrame();
+        assertEquals(MessageTypeEnum.StreamEnd, end.getMessageType());
+        assertEquals(ResponseStatusEnum.DeadlineExceeded, end.getStatus());
+        assertEquals(request.getUniqueKey(), end.getUniqueKey());
+
+        //流已结束,迟到的授信不再推送
+        NettyServerStream.grant(request.getUniqueKey(), 4);
+        assertNull(channel.readOutbound());
+    }
+
+    private AresResponse readFrame() {
+        return channel.readOutbound();
+    }
+
+    private static void assertChunk(AresResponse frame, int size) {
+        assertEquals(MessageTypeEnum.StreamChunk, frame.getMessageType());
+        assertTrue(frame.getResult() instanceof List);
+        assertEquals(size, ((List<?>) frame.getResult()).size());
+    }
+
+    private static AresRequest request(int credit) {
+        AresRequest request = new AresRequest();
+        request.setUniqueKey(UUID.randomUUID().toString());
+        request.setInvokeTimeout(1000);
+        request.setMessageType(MessageTypeEnum.Stream);
+        request.setStreamCredit(credit);
+        return request;
+    }
+
+    private static class CountingIterator implements Iterator<Integer> {
+
+        private final int size;
+        private int next = 0;
+
+        private CountingIterator(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < size;
+        }
+
+        @Override
+        public Integer next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return next++;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove");
+        }
+    }
+}
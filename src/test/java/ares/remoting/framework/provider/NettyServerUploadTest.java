@@ -0,0 +1,122 @@
+package ares.remoting.framework.provider;
+
+import ares.remoting.framework.helper.PropertyConfigeHelper;
+import ares.remoting.framework.model.AresRequest;
+import ares.remoting.framework.model.AresResponse;
+import ares.remoting.framework.model.MessageTypeEnum;
+import com.google.common.collect.Lists;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 服务端上传调用：授信、分块消费与中止
+ *
+ * @version $Id$
+ */
+public class NettyServerUploadTest {
+
+    private static final int WINDOW = PropertyConfigeHelper.getServerUploadWindow();
+
+    private EmbeddedChannel channel;
+    private ChannelHandlerContext ctx;
+    private AresRequest request;
+
+    @Before
+    public void setUp() {
+        channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        ctx = channel.pipeline().firstContext();
+        request = new AresRequest();
+        request.setUniqueKey(UUID.randomUUID().toString());
+        request.setInvokeTimeout(1000);
+        request.setMessageType(MessageTypeEnum.Upload);
+        request.setArgs(new Object[]{"name", null});
+        request.setUploadArgIndex(1);
+    }
+
+    @Test
+    public void openReplacesArgAndGrantsWindow() {
+        assertTrue(NettyServerUpload.open(ctx, request));
+        assertTrue(request.getArgs()[1] instanceof NettyServerUpload);
+        assertEquals(WINDOW, readCredit());
+    }
+
+    @Test
+    public void illegalArgIndexIsRejected() {
+        request.setUploadArgIndex(2);
+        assertFalse(NettyServerUpload.open(ctx, request));
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    public void chunksAreIteratedAndCreditedEveryHalfWindow() {
+        NettyServerUpload.open(ctx, request);
+        readCredit();
+        for (int i = 0; i < WINDOW / 2; i++) {
+            NettyServerUpload.onFrame(frame(MessageTypeEnum.UploadChunk, i * 2, i * 2 + 1));
+        }
+        NettyServerUpload.onFrame(frame(MessageTypeEnum.UploadEnd));
+
+        List<Object> values = Lists.newArrayList();
+        Iterator<?> upload = (Iterator<?>) request.getArgs()[1];
+        while (upload.hasNext()) {
+            values.add(upload.next());
+        }
+        assertEquals(WINDOW, values.size());
+        assertEquals(WINDOW - 1, values.get(WINDOW - 1));
+        assertEquals(WINDOW / 2, readCredit());
+    }
+
+    @Test
+    public void exceedingWindowAbortsUpload() {
+        NettyServerUpload.open(ctx, request);
+        for (int i = 0; i < WINDOW + 2; i++) {
+            NettyServerUpload.onFrame(frame(MessageTypeEnum.UploadChunk, i));
+        }
+        assertAborted((Iterator<?>) request.getArgs()[1], "upload window exceeded");
+    }
+
+    @Test
+    public void channelCloseAbortsUpload() {
+        NettyServerUpload.open(ctx, request);
+        channel.close();
+        assertAborted((Iterator<?>) request.getArgs()[1], "channel closed");
+    }
+
+    private static void assertAborted(Iterator<?> upload, String reason) {
+        try {
+            while (upload.hasNext()) {
+                upload.next();
+            }
+            fail("upload should be aborted");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains(reason));
+        }
+    }
+
+    private int readCredit() {
+        AresResponse credit = channel.readOutbound();
+        assertEquals(MessageTypeEnum.UploadCredit, credit.getMessageType());
+        return (Integer) credit.getResult();
+    }
+
+    private AresRequest frame(MessageTypeEnum messageType, Object... args) {
+        AresRequest frame = new AresRequest();
+        frame.setUniqueKey(request.getUniqueKey());
+        frame.setMessageType(messageType);
+        frame.setArgs(args);
+        return frame;
+    }
+}
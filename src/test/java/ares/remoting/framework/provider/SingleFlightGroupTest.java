@@ -0,0 +1,65 @@
+package ares.remoting.framework.provider;
+
+import ares.remoting.framework.model.AresRequest;
+import ares.remoting.framework.model.ProviderService;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 服务端相同请求合并执行
+ *
+ * @version $Id$
+ */
+public class SingleFlightGroupTest {
+
+    @Test
+    public void identicalRequestsFollowTheFlight() {
+        AresRequest leader = request("joinFollow", "a");
+        AresRequest follower = request("joinFollow", "a");
+
+        SingleFlightGroup.Flight flight = SingleFlightGroup.join(null, leader);
+        assertNotNull(flight);
+        assertNull(SingleFlightGroup.join(null, follower));
+
+        List<SingleFlightGroup.Follower> followers = SingleFlightGroup.complete(flight);
+        assertEquals(1, followers.size());
+        assertSame(follower, followers.get(0).getRequest());
+    }
+
+    @Test
+    public void differentArgsStartNewFlight() {
+        SingleFlightGroup.Flight flight = SingleFlightGroup.join(null, request("differentArgs", "a"));
+        SingleFlightGroup.Flight other = SingleFlightGroup.join(null, request("differentArgs", "b"));
+
+        assertNotNull(other);
+        assertTrue(SingleFlightGroup.complete(flight).isEmpty());
+        assertTrue(SingleFlightGroup.complete(other).isEmpty());
+    }
+
+    @Test
+    public void requestAfterCompleteExecutesAgain() {
+        SingleFlightGroup.Flight flight = SingleFlightGroup.join(null, request("afterComplete", "a"));
+        SingleFlightGroup.complete(flight);
+
+        SingleFlightGroup.Flight next = SingleFlightGroup.join(null, request("afterComplete", "a"));
+        assertNotNull(next);
+        SingleFlightGroup.complete(next);
+    }
+
+    private static AresRequest request(String methodName, Object arg) {
+        ProviderService providerService = new ProviderService();
+        providerService.setServiceItf(Runnable.class);
+        AresRequest request = new AresRequest();
+        request.setProviderService(providerService);
+        request.setInvokedMethodName(methodName);
+        request.setArgs(new Object[]{arg});
+        return request;
+    }
+}
@@ -0,0 +1,69 @@
+package ares.remoting.framework.revoker;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 默认的广播调用结果合并
+ *
+ * @version $Id$
+ */
+public class DefaultResultMergerTest {
+
+    public interface BroadcastService {
+
+        void refresh();
+
+        List<String> names();
+
+        Set<String> tags();
+
+        Map<String, Integer> counts();
+
+        boolean ready();
+
+        String version();
+    }
+
+    private final ResultMerger merger = new DefaultResultMerger();
+
+    @Test
+    public void voidMergesToNull() throws Exception {
+        assertNull(merger.merge(method("refresh"), Lists.<Object>newArrayList(null, null)));
+    }
+
+    @Test
+    public void collectionsAndMapsAreCombined() throws Exception {
+        assertEquals(Lists.newArrayList("a", "b", "c"),
+                merger.merge(method("names"), Lists.<Object>newArrayList(Lists.newArrayList("a"), null, Lists.newArrayList("b", "c"))));
+        assertEquals(ImmutableSet.of("x", "y"),
+                merger.merge(method("tags"), Lists.<Object>newArrayList(ImmutableSet.of("x"), ImmutableSet.of("x", "y"))));
+        assertEquals(ImmutableMap.of("a", 1, "b", 2),
+                merger.merge(method("counts"), Lists.<Object>newArrayList(ImmutableMap.of("a", 1), ImmutableMap.of("b", 2))));
+    }
+
+    @Test
+    public void booleanIsTrueOnlyWhenAllTrue() throws Exception {
+        assertEquals(true, merger.merge(method("ready"), Lists.<Object>newArrayList(true, true)));
+        assertEquals(false, merger.merge(method("ready"), Lists.<Object>newArrayList(true, false)));
+    }
+
+    @Test
+    public void otherTypesReturnFirstNonNull() throws Exception {
+        assertEquals("v2", merger.merge(method("version"), Lists.<Object>newArrayList(null, "v2", "v3")));
+    }
+
+    private static Method method(String name) throws NoSuchMethodException {
+        return BroadcastService.class.getMethod(name);
+    }
+}
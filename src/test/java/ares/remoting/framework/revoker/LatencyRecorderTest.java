@@ -0,0 +1,44 @@
+package ares.remoting.framework.revoker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 调用耗时分位值
+ *
+ * @version $Id$
+ */
+public class LatencyRecorderTest {
+
+    @Test
+    public void noPercentileBeforeEnoughSamples() {
+        LatencyRecorder recorder = new LatencyRecorder(95);
+        for (int i = 0; i < 31; i++) {
+            recorder.record(10);
+        }
+        assertEquals(-1L, recorder.getPercentileLatency());
+    }
+
+    @Test
+    public void percentileOfRecordedSamples() {
+        LatencyRecorder recorder = new LatencyRecorder(90);
+        for (int i = 1; i <= 100; i++) {
+            recorder.record(i);
+        }
+        //第96个样本时最后一次计算:样本1~96中的90分位
+        assertEquals(87L, recorder.getPercentileLatency());
+    }
+
+    @Test
+    public void onlyRecentSamplesAreKept() {
+        LatencyRecorder recorder = new LatencyRecorder(50);
+        for (int i = 0; i < 256; i++) {
+            recorder.record(1000);
+        }
+        for (int i = 0; i < 256; i++) {
+            recorder.record(10);
+        }
+        assertEquals(10L, recorder.getPercentileLatency());
+    }
+}
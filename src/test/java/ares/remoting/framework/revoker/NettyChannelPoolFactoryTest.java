@@ -0,0 +1,161 @@
+package ares.remoting.framework.revoker;
+
+import ares.remoting.framework.helper.PropertyConfigeHelper;
+import ares.remoting.framework.model.ProviderService;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import io.netty.channel.Channel;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 通道池借出与交还、预热以及随注册中心变更建立与摘除
+ *
+ * @version $Id$
+ */
+public class NettyChannelPoolFactoryTest {
+
+    private final NettyChannelPoolFactory channelPoolFactory = NettyChannelPoolFactory.channelPoolFactoryInstance();
+    private final InetSocketAddress socketAddress = new InetSocketAddress("127.0.0.1", 1);
+    //本地监听的服务提供者(只接受连接,不读写)
+    private ServerSocket serverSocket;
+    private ProviderService provider;
+
+    @Before
+    public void setUp() throws Exception {
+        serverSocket = new ServerSocket(0, 64, InetAddress.getByName("127.0.0.1"));
+        provider = new ProviderService();
+        provider.setServerIp("127.0.0.1");
+        provider.setServerPort(serverSocket.getLocalPort());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        channelPoolFactory.onProviderChange("demo.HelloService", Collections.<ProviderService>emptyList(),
+                Collections.<ProviderService>emptyList(), Lists.newArrayList(provider));
+        serverSocket.close();
+    }
+
+    @Test
+    public void borrowReturnsNullAtDeadline() throws Exception {
+        long start = System.currentTimeMillis();
+        Channel channel = channelPoolFactory.borrow(new ArrayBlockingQueue<Channel>(1), socketAddress, start + 50);
+
+        assertNull(channel);
+        assertTrue(System.currentTimeMillis() - start < 1000);
+    }
+
+    @Test
+    public void borrowSkipsClosedChannel() throws Exception {
+        EmbeddedChannel closed = new EmbeddedChannel();
+        closed.close();
+        EmbeddedChannel open = new EmbeddedChannel();
+        ArrayBlockingQueue<Channel> channelPool = new ArrayBlockingQueue<Channel>(2);
+        channelPool.offer(closed);
+        channelPool.offer(open);
+
+        assertSame(open, channelPoolFactory.borrow(channelPool, socketAddress, System.currentTimeMillis() + 50));
+        assertTrue(channelPool.isEmpty());
+    }
+
+    @Test
+    public void releaseToRemovedPoolClosesChannel() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        ArrayBlockingQueue<Channel> channelPool = new ArrayBlockingQueue<Channel>(1);
+        channelPoolFactory.release(channelPool, channel, socketAddress);
+
+        assertFalse(channel.isOpen());
+        assertTrue(channelPool.isEmpty());
+    }
+
+    @Test
+    public void warmUpWaitsForFirstChannel() {
+        List<ProviderService> providers = Lists.newArrayList(provider);
+        channelPoolFactory.initChannelPoolFactory(ImmutableMap.of("demo.HelloService", providers));
+
+        ArrayBlockingQueue<Channel> channelPool = channelPoolFactory.acquire(providerAddress());
+        assertNotNull(channelPool);
+        assertFalse(channelPool.isEmpty());
+    }
+
+    @Test
+    public void providerChangeOpensAndClosesPool() throws Exception {
+        List<ProviderService> providers = Lists.newArrayList(provider);
+        channelPoolFactory.onProviderChange("demo.HelloService", providers, providers, Collections.<ProviderService>emptyList());
+
+        ArrayBlockingQueue<Channel> channelPool = channelPoolFactory.acquire(providerAddress());
+        awaitPoolSize(channelPool, PropertyConfigeHelper.getChannelConnectSize());
+        Channel borrowed = channelPoolFactory.borrow(channelPool, providerAddress(), System.currentTimeMillis() + 1000);
+        Channel idle = channelPool.peek();
+
+        //服务提供者下线且不再被任何服务引用:摘除通道池,空闲通道关闭,使用中的通道归还时关闭
+        channelPoolFactory.onProviderChange("demo.HelloService", Collections.<ProviderService>emptyList(),
+                Collections.<ProviderService>emptyList(), providers);
+        assertNull(channelPoolFactory.acquire(providerAddress()));
+        assertTrue(channelPool.isEmpty());
+        assertTrue(idle.closeFuture().awaitUninterruptibly(1000));
+
+        assertTrue(borrowed.isOpen());
+        channelPoolFactory.release(channelPool, borrowed, providerAddress());
+        assertTrue(borrowed.closeFuture().awaitUninterruptibly(1000));
+    }
+
+    @Test
+    public void connectsBeyondParallelismAreQueued() throws Exception {
+        //连接总数超过并行连接数,超出的连接排队等待进行中的连接完成
+        int connectSize = PropertyConfigeHelper.getChannelConnectSize();
+        int providerCount = PropertyConfigeHelper.getChannelConnectParallelism() / connectSize + 2;
+        List<ServerSocket> serverSockets = Lists.newArrayList();
+        List<ProviderService> providers = Lists.newArrayList();
+        try {
+            for (int i = 0; i < providerCount; i++) {
+                ServerSocket socket = new ServerSocket(0, 64, InetAddress.getByName("127.0.0.1"));
+                serverSockets.add(socket);
+                ProviderService providerService = new ProviderService();
+                providerService.setServerIp("127.0.0.1");
+                providerService.setServerPort(socket.getLocalPort());
+                providers.add(providerService);
+            }
+            channelPoolFactory.onProviderChange("demo.HelloService", providers, providers, Collections.<ProviderService>emptyList());
+
+            for (ProviderService providerService : providers) {
+                InetSocketAddress address = new InetSocketAddress(providerService.getServerIp(), providerService.getServerPort());
+                awaitPoolSize(channelPoolFactory.acquire(address), connectSize);
+            }
+        } finally {
+            channelPoolFactory.onProviderChange("demo.HelloService", Collections.<ProviderService>emptyList(),
+                    Collections.<ProviderService>emptyList(), providers);
+            for (ServerSocket socket : serverSockets) {
+                socket.close();
+            }
+        }
+    }
+
+    private InetSocketAddress providerAddress() {
+        return new InetSocketAddress(provider.getServerIp(), provider.getServerPort());
+    }
+
+    private static void awaitPoolSize(ArrayBlockingQueue<Channel> channelPool, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (channelPool.size() < size && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(size, channelPool.size());
+    }
+}
@@ -0,0 +1,83 @@
+package ares.remoting.framework.revoker;
+
+import ares.remoting.framework.model.AresRequest;
+import ares.remoting.framework.model.AresResponse;
+import ares.remoting.framework.model.ResponseStatusEnum;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 消费端通道写入批处理
+ *
+ * @version $Id$
+ */
+public class NettyChannelWriteBatcherTest {
+
+    @Test
+    public void queuedRequestsAreWrittenInOrderWithOneFlush() {
+        FlushCounter flushCounter = new FlushCounter();
+        EmbeddedChannel channel = new EmbeddedChannel(flushCounter);
+        AresRequest first = request();
+        AresRequest second = request();
+        AresRequest third = request();
+
+        NettyChannelWriteBatcher.write(channel, first);
+        NettyChannelWriteBatcher.write(channel, second);
+        NettyChannelWriteBatcher.write(channel, third);
+        //调用线程只入队,不写出
+        assertNull(channel.readOutbound());
+
+        channel.runPendingTasks();
+        assertEquals(first, channel.readOutbound());
+        assertEquals(second, channel.readOutbound());
+        assertEquals(third, channel.readOutbound());
+        assertEquals(1, flushCounter.flushes);
+    }
+
+    @Test
+    public void failedWriteEndsPendingResult() {
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+                ReferenceCountUtil.release(msg);
+                promise.setFailure(new IOException("write failed"));
+            }
+        });
+        AresRequest request = request();
+        RevokerResponseHolder.initResponseData(request.getUniqueKey());
+
+        NettyChannelWriteBatcher.write(channel, request);
+        channel.runPendingTasks();
+
+        AresResponse response = RevokerResponseHolder.getValue(request.getUniqueKey(), 1000);
+        assertEquals(ResponseStatusEnum.SendFailed, response.getStatus());
+    }
+
+    private static AresRequest request() {
+        AresRequest request = new AresRequest();
+        request.setUniqueKey(UUID.randomUUID().toString());
+        request.setInvokeTimeout(1000);
+        return request;
+    }
+
+    private static class FlushCounter extends ChannelOutboundHandlerAdapter {
+
+        private int flushes = 0;
+
+        @Override
+        public void flush(ChannelHandlerContext ctx) throws Exception {
+            flushes++;
+            super.flush(ctx);
+        }
+    }
+}
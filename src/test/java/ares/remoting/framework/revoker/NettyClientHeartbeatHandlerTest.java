@@ -0,0 +1,59 @@
+package ares.remoting.framework.revoker;
+
+import ares.remoting.framework.model.AresRequest;
+import ares.remoting.framework.model.AresResponse;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.timeout.IdleStateEvent;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 客户端心跳：读空闲时发送心跳，连续未收到数据时关闭连接
+ *
+ * @version $Id$
+ */
+public class NettyClientHeartbeatHandlerTest {
+
+    @Test
+    public void readerIdleSendsHeartbeat() {
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyClientHeartbeatHandler(3));
+        channel.pipeline().fireUserEventTriggered(IdleStateEvent.FIRST_READER_IDLE_STATE_EVENT);
+
+        AresRequest heartbeat = channel.readOutbound();
+        assertTrue(heartbeat.isHeartbeat());
+    }
+
+    @Test
+    public void outboundTrafficDoesNotTriggerHeartbeat() {
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyClientHeartbeatHandler(3));
+        channel.pipeline().fireUserEventTriggered(IdleStateEvent.FIRST_ALL_IDLE_STATE_EVENT);
+        channel.pipeline().fireUserEventTriggered(IdleStateEvent.FIRST_WRITER_IDLE_STATE_EVENT);
+
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    public void missedHeartbeatsCloseChannel() {
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyClientHeartbeatHandler(2));
+        channel.pipeline().fireUserEventTriggered(IdleStateEvent.FIRST_READER_IDLE_STATE_EVENT);
+        channel.pipeline().fireUserEventTriggered(IdleStateEvent.READER_IDLE_STATE_EVENT);
+        assertTrue(channel.isOpen());
+
+        channel.pipeline().fireUserEventTriggered(IdleStateEvent.READER_IDLE_STATE_EVENT);
+        assertFalse(channel.isOpen());
+    }
+
+    @Test
+    public void heartbeatResponseResetsMissesAndIsConsumed() {
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyClientHeartbeatHandler(1));
+        channel.pipeline().fireUserEventTriggered(IdleStateEvent.FIRST_READER_IDLE_STATE_EVENT);
+        channel.writeInbound(AresResponse.heartbeat());
+        assertNull(channel.readInbound());
+
+        channel.pipeline().fireUserEventTriggered(IdleStateEvent.READER_IDLE_STATE_EVENT);
+        assertTrue(channel.isOpen());
+    }
+}
@@ -0,0 +1,69 @@
+package ares.remoting.framework.revoker;
+
+import ares.remoting.framework.model.AresRequest;
+import ares.remoting.framework.model.AresResponse;
+import ares.remoting.framework.model.MessageTypeEnum;
+import ares.remoting.framework.model.ResponseStatusEnum;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 消费端通道断开时等待响应的调用立即失败
+ *
+ * @version $Id$
+ */
+public class NettyClientInvokeHandlerTest {
+
+    @Test
+    public void pendingCallFailsWhenChannelCloses() {
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyClientInvokeHandler());
+        String uniqueKey = UUID.randomUUID().toString();
+        RevokerResponseHolder.initResponseData(uniqueKey);
+        RevokerResponseHolder.bindChannel(uniqueKey, channel, 1000);
+
+        channel.close();
+
+        AresResponse response = RevokerResponseHolder.getValue(uniqueKey, 10);
+        assertEquals(ResponseStatusEnum.ChannelClosed, response.getStatus());
+        assertEquals(uniqueKey, response.getUniqueKey());
+    }
+
+    @Test
+    public void callOnOtherChannelIsUnaffected() {
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyClientInvokeHandler());
+        EmbeddedChannel other = new EmbeddedChannel(new NettyClientInvokeHandler());
+        String uniqueKey = UUID.randomUUID().toString();
+        RevokerResponseHolder.initResponseData(uniqueKey);
+        RevokerResponseHolder.bindChannel(uniqueKey, other, 1000);
+
+        channel.close();
+
+        assertNull(RevokerResponseHolder.getValue(uniqueKey, 10));
+    }
+
+    @Test
+    public void streamFailsWhenChannelCloses() {
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyClientInvokeHandler());
+        AresRequest request = new AresRequest();
+        request.setUniqueKey(UUID.randomUUID().toString());
+        request.setInvokeTimeout(1000);
+        request.setMessageType(MessageTypeEnum.Stream);
+        RevokerStreamIterator iterator = RevokerStreamIterator.register(request, 4, 1000);
+        iterator.setChannel(channel);
+
+        channel.close();
+        try {
+            iterator.hasNext();
+            fail("stream should fail when its channel closes");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("ChannelClosed"));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package ares.remoting.framework.revoker;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 重试预算
+ *
+ * @version $Id$
+ */
+public class RetryBudgetTest {
+
+    @Test
+    public void startsFullAndDrains() {
+        RetryBudget budget = RetryBudget.of(0.1, 3);
+        assertTrue(budget.tryWithdraw());
+        assertTrue(budget.tryWithdraw());
+        assertTrue(budget.tryWithdraw());
+        assertFalse(budget.tryWithdraw());
+    }
+
+    @Test
+    public void depositsRefillByRatio() {
+        RetryBudget budget = RetryBudget.of(0.1, 3);
+        drain(budget);
+
+        for (int i = 0; i < 9; i++) {
+            budget.deposit();
+        }
+        assertFalse(budget.tryWithdraw());
+        budget.deposit();
+        assertTrue(budget.tryWithdraw());
+        assertFalse(budget.tryWithdraw());
+    }
+
+    @Test
+    public void depositsAreCappedAtMaxTokens() {
+        RetryBudget budget = RetryBudget.of(1, 2);
+        for (int i = 0; i < 100; i++) {
+            budget.deposit();
+        }
+        assertEquals(2, drain(budget));
+    }
+
+    @Test
+    public void concurrentWithdrawsNeverOverdraw() throws Exception {
+        final RetryBudget budget = RetryBudget.of(0.1, 100);
+        final AtomicInteger withdrawn = new AtomicInteger(0);
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < 50; j++) {
+                        if (budget.tryWithdraw()) {
+                            withdrawn.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(100, withdrawn.get());
+    }
+
+    private static int drain(RetryBudget budget) {
+        int withdrawn = 0;
+        while (budget.tryWithdraw()) {
+            withdrawn++;
+        }
+        return withdrawn;
+    }
+}
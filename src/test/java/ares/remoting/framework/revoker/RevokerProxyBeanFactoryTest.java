@@ -0,0 +1,55 @@
+package ares.remoting.framework.revoker;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 批量调用的方法解析
+ *
+ * @version $Id$
+ */
+public class RevokerProxyBeanFactoryTest {
+
+    public interface EchoService {
+
+        String echo(String message);
+
+        int echo(int number);
+
+        String ping(String message);
+    }
+
+    private final BatchInvoker batchInvoker =
+            (BatchInvoker) new RevokerProxyBeanFactory(EchoService.class, 1000, null).getProxy();
+
+    @Test
+    public void overloadedMethodByNameFailsFast() {
+        try {
+            batchInvoker.invokeAll("echo", Collections.<Object[]>emptyList());
+            fail("overloaded method should not resolve by name");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("overloaded"));
+        }
+    }
+
+    @Test
+    public void overloadedMethodResolvesByParameterTypes() {
+        List<Object> results = batchInvoker.invokeAll("echo", new Class<?>[]{int.class}, Collections.<Object[]>emptyList());
+        assertTrue(results.isEmpty());
+    }
+
+    @Test
+    public void uniqueMethodResolvesByName() {
+        assertTrue(batchInvoker.invokeAll("ping", Collections.<Object[]>emptyList()).isEmpty());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void unknownSignatureFails() {
+        batchInvoker.invokeAll("echo", new Class<?>[]{long.class}, Collections.<Object[]>emptyList());
+    }
+}
@@ -0,0 +1,97 @@
+package ares.remoting.framework.revoker;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 消费端调用结果缓存
+ *
+ * @version $Id$
+ */
+public class RevokerResultCacheTest {
+
+    private Method method;
+    private RevokerResultCache resultCache;
+    private AtomicInteger loads;
+
+    @Before
+    public void setUp() throws Exception {
+        method = String.class.getMethod("valueOf", Object.class);
+        resultCache = RevokerResultCache.of(RevokerResultCacheTest.class.getName(), 60000, 2);
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    public void resultIsLoadedOncePerArgs() {
+        assertEquals("a", resultCache.get(method, new Object[]{"a"}, loader("a")));
+        assertEquals("a", resultCache.get(method, new Object[]{"a"}, loader("other")));
+        assertEquals("b", resultCache.get(method, new Object[]{"b"}, loader("b")));
+
+        assertEquals(2, loads.get());
+        assertEquals(1, resultCache.stats().hitCount());
+        assertEquals(2, resultCache.stats().missCount());
+        assertTrue(RevokerResultCache.getCacheStats().containsKey(RevokerResultCacheTest.class.getName()));
+    }
+
+    @Test
+    public void argsAreComparedByContent() {
+        Object[] args = new Object[]{new int[]{1, 2}};
+        resultCache.get(method, args, loader("a"));
+        //修改原参数数组不影响已缓存的key
+        args[0] = new int[]{3};
+
+        assertEquals("a", resultCache.get(method, new Object[]{new int[]{1, 2}}, loader("other")));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void nullResultIsCached() {
+        assertNull(resultCache.get(method, null, loader(null)));
+        assertNull(resultCache.get(method, null, loader("other")));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void throwableResultIsNotCached() {
+        IllegalStateException error = new IllegalStateException("remote");
+        assertSame(error, resultCache.get(method, new Object[]{"a"}, loader(error)));
+        assertEquals("a", resultCache.get(method, new Object[]{"a"}, loader("a")));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void loaderExceptionIsRethrown() {
+        try {
+            resultCache.get(method, new Object[]{"a"}, new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    throw new IllegalArgumentException("timeout");
+                }
+            });
+            fail("loader exception should be rethrown");
+        } catch (IllegalArgumentException e) {
+            assertEquals("timeout", e.getMessage());
+        }
+        assertEquals("a", resultCache.get(method, new Object[]{"a"}, loader("a")));
+    }
+
+    private Callable<Object> loader(final Object result) {
+        return new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                loads.incrementAndGet();
+                return result;
+            }
+        };
+    }
+}
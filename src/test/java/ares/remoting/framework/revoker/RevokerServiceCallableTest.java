@@ -0,0 +1,88 @@
+package ares.remoting.framework.revoker;
+
+import ares.remoting.framework.model.AresRequest;
+import ares.remoting.framework.model.AresResponse;
+import ares.remoting.framework.model.ProviderService;
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 调用任务被取消(对冲、并行调用的落败者)时的处理
+ *
+ * @version $Id$
+ */
+public class RevokerServiceCallableTest {
+
+    private final NettyChannelPoolFactory channelPoolFactory = NettyChannelPoolFactory.channelPoolFactoryInstance();
+    //只接受连接、从不响应的服务提供者
+    private ServerSocket serverSocket;
+    private List<ProviderService> providers;
+
+    @Before
+    public void setUp() throws Exception {
+        serverSocket = new ServerSocket(0, 64, InetAddress.getByName("127.0.0.1"));
+        ProviderService provider = new ProviderService();
+        provider.setServerIp("127.0.0.1");
+        provider.setServerPort(serverSocket.getLocalPort());
+        providers = Lists.newArrayList(provider);
+        channelPoolFactory.onProviderChange("demo.HelloService", providers, providers, Collections.<ProviderService>emptyList());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        channelPoolFactory.onProviderChange("demo.HelloService", Collections.<ProviderService>emptyList(),
+                Collections.<ProviderService>emptyList(), providers);
+        serverSocket.close();
+    }
+
+    @Test
+    public void cancelledInvokeRestoresInterrupt() throws Exception {
+        AresRequest request = new AresRequest();
+        request.setUniqueKey(UUID.randomUUID().toString());
+        request.setInvokedMethodName("sayHello");
+        request.setInvokeTimeout(5000);
+        final RevokerServiceCallable callable = RevokerServiceCallable.of(
+                new InetSocketAddress("127.0.0.1", serverSocket.getLocalPort()), request);
+
+        final AtomicReference<AresResponse> response = new AtomicReference<AresResponse>();
+        final AtomicBoolean interrupted = new AtomicBoolean(false);
+        final AtomicBoolean returned = new AtomicBoolean(false);
+        Thread invoker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    response.set(callable.call());
+                    returned.set(true);
+                } catch (Exception e) {
+                    //调用被取消时不应抛出异常
+                }
+                interrupted.set(Thread.currentThread().isInterrupted());
+            }
+        });
+        invoker.start();
+        //等待调用线程进入等待结果(服务提供者不响应)
+        Thread.sleep(300);
+        invoker.interrupt();
+        invoker.join(5000);
+
+        assertFalse(invoker.isAlive());
+        assertTrue(returned.get());
+        assertNull(response.get());
+        assertTrue(interrupted.get());
+    }
+}
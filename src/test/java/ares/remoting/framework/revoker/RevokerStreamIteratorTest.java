@@ -0,0 +1,177 @@
+package ares.remoting.framework.revoker;
+
+import ares.remoting.framework.cluster.status.EndpointStatus;
+import ares.remoting.framework.model.AresRequest;
+import ares.remoting.framework.model.AresResponse;
+import ares.remoting.framework.model.MessageTypeEnum;
+import ares.remoting.framework.model.ResponseStatusEnum;
+import com.google.common.collect.Lists;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 消费端流式调用迭代器：补发授信、结束、超时与取消，以及端点在途名额的结算
+ *
+ * @version $Id$
+ */
+public class RevokerStreamIteratorTest {
+
+    private EmbeddedChannel channel;
+    private AresRequest request;
+
+    @Before
+    public void setUp() {
+        channel = new EmbeddedChannel();
+        request = new AresRequest();
+        request.setUniqueKey(UUID.randomUUID().toString());
+        request.setInvokeTimeout(1000);
+        request.setMessageType(MessageTypeEnum.Stream);
+    }
+
+    @Test
+    public void iteratesChunksAndGrantsCreditEveryHalfWindow() {
+        RevokerStreamIterator iterator = register(4, 1000);
+        RevokerStreamIterator.onFrame(chunk(1, 2));
+        RevokerStreamIterator.onFrame(chunk(3));
+        RevokerStreamIterator.onFrame(end(ResponseStatusEnum.Success, null));
+
+        List<Object> values = Lists.newArrayList();
+        while (iterator.hasNext()) {
+            values.add(iterator.next());
+        }
+        assertEquals(Lists.<Object>newArrayList(1, 2, 3), values);
+
+        channel.runPendingTasks();
+        AresRequest credit = channel.readOutbound();
+        assertEquals(MessageTypeEnum.StreamCredit, credit.getMessageType());
+        assertEquals(2, credit.getStreamCredit());
+        assertEquals(request.getUniqueKey(), credit.getUniqueKey());
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    public void failedEndThrows() {
+        RevokerStreamIterator iterator = register(4, 1000);
+        RevokerStreamIterator.onFrame(end(ResponseStatusEnum.DeadlineExceeded, new RuntimeException("stream idle timeout")));
+        try {
+            iterator.hasNext();
+            fail("failed stream should throw");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("DeadlineExceeded"));
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void missingChunkTimesOut() {
+        register(4, 20).hasNext();
+    }
+
+    @Test
+    public void closeCancelsStreamAndDropsLateFrames() {
+        RevokerStreamIterator iterator = register(4, 1000);
+        RevokerStreamIterator.onFrame(chunk(1, 2));
+        assertEquals(1, iterator.next());
+
+        iterator.close();
+        RevokerStreamIterator.onFrame(chunk(3));
+        assertFalse(iterator.hasNext());
+
+        channel.runPendingTasks();
+        AresRequest cancel = channel.readOutbound();
+        assertEquals(MessageTypeEnum.StreamCancel, cancel.getMessageType());
+        assertEquals(request.getUniqueKey(), cancel.getUniqueKey());
+        assertTrue(cancel.isOneway());
+    }
+
+    @Test
+    public void closeAfterEndSendsNothing() {
+        RevokerStreamIterator iterator = register(4, 1000);
+        RevokerStreamIterator.onFrame(end(ResponseStatusEnum.Success, null));
+        assertFalse(iterator.hasNext());
+
+        iterator.close();
+        channel.runPendingTasks();
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    public void endSettlesEndpointSlot() {
+        EndpointStatus status = EndpointStatus.of("10.0.1.1", 8801);
+        RevokerStreamIterator iterator = register(4, 1000);
+        iterator.bindEndpoint(status, status.tryBeginInvoke());
+        RevokerStreamIterator.onFrame(chunk(1));
+        assertEquals(1, status.getActive());
+
+        //调用方未迭代完,结束消息到达即释放名额
+        RevokerStreamIterator.onFrame(end(ResponseStatusEnum.Success, null));
+        assertEquals(0, status.getActive());
+        iterator.close();
+        assertEquals(0, status.getActive());
+    }
+
+    @Test
+    public void timeoutSettlesEndpointSlot() {
+        EndpointStatus status = EndpointStatus.of("10.0.1.2", 8801);
+        RevokerStreamIterator iterator = register(4, 20);
+        iterator.bindEndpoint(status, status.tryBeginInvoke());
+        try {
+            iterator.hasNext();
+            fail("missing chunk should time out");
+        } catch (RuntimeException e) {
+            assertEquals(0, status.getActive());
+        }
+    }
+
+    @Test
+    public void closeReleasesEndpointSlot() {
+        EndpointStatus status = EndpointStatus.of("10.0.1.3", 8801);
+        RevokerStreamIterator iterator = register(4, 1000);
+        iterator.bindEndpoint(status, status.tryBeginInvoke());
+
+        iterator.close();
+        assertEquals(0, status.getActive());
+        RevokerStreamIterator.onFrame(end(ResponseStatusEnum.Success, null));
+        assertEquals(0, status.getActive());
+    }
+
+    @Test
+    public void overloadEndReleasesEndpointSlot() {
+        EndpointStatus status = EndpointStatus.of("10.0.1.4", 8801);
+        RevokerStreamIterator iterator = register(4, 1000);
+        iterator.bindEndpoint(status, status.tryBeginInvoke());
+
+        RevokerStreamIterator.onFrame(end(ResponseStatusEnum.Overload, null));
+        assertEquals(0, status.getActive());
+        assertTrue(status.isOverloaded());
+    }
+
+    private RevokerStreamIterator register(int window, long timeout) {
+        RevokerStreamIterator iterator = RevokerStreamIterator.register(request, window, timeout);
+        iterator.setChannel(channel);
+        return iterator;
+    }
+
+    private AresResponse chunk(Object... values) {
+        AresResponse response = AresResponse.of(request, ResponseStatusEnum.Success);
+        response.setMessageType(MessageTypeEnum.StreamChunk);
+        response.setResult(Lists.newArrayList(values));
+        return response;
+    }
+
+    private AresResponse end(ResponseStatusEnum status, Object result) {
+        AresResponse response = AresResponse.of(request, status);
+        response.setMessageType(MessageTypeEnum.StreamEnd);
+        response.setResult(result);
+        return response;
+    }
+}
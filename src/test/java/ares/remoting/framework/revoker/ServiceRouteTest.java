@@ -0,0 +1,72 @@
+package ares.remoting.framework.revoker;
+
+import ares.remoting.framework.cluster.ClusterStrategy;
+import ares.remoting.framework.model.ProviderService;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 服务路由快照
+ *
+ * @version $Id$
+ */
+public class ServiceRouteTest {
+
+    /** 总是选取列表中的第一个服务提供者 */
+    private static final ClusterStrategy FIRST = new ClusterStrategy() {
+        @Override
+        public ProviderService select(List<ProviderService> providerServices) {
+            return providerServices.get(0);
+        }
+    };
+
+    @Test
+    public void endpointsFollowProviderOrder() {
+        ProviderService first = provider("10.0.2.1");
+        ProviderService second = provider("10.0.2.2");
+        ServiceRoute route = ServiceRoute.of("demo", Lists.newArrayList(first, second), FIRST);
+
+        assertEquals(2, route.getEndpoints().size());
+        assertSame(first, route.getEndpoints().get(0).getProviderService());
+        assertSame(route.getEndpoints().get(0), route.select());
+        assertEquals(8801, route.select().getSocketAddress().getPort());
+    }
+
+    @Test
+    public void excludedEndpointIsSkipped() {
+        ServiceRoute route = ServiceRoute.of("demo", Lists.newArrayList(provider("10.0.2.3"), provider("10.0.2.4")), FIRST);
+        ServiceRoute.RouteEndpoint first = route.getEndpoints().get(0);
+        ServiceRoute.RouteEndpoint second = route.getEndpoints().get(1);
+
+        assertSame(second, route.select(ImmutableSet.of(first)));
+        assertNull(route.select(ImmutableSet.of(first, second)));
+    }
+
+    @Test
+    public void rebuiltSnapshotGetsNewVersion() {
+        ServiceRoute route = ServiceRoute.of("demo", Lists.newArrayList(provider("10.0.2.5")), FIRST);
+        ServiceRoute rebuilt = ServiceRoute.of("demo", route.getProviderServices(), FIRST);
+        assertTrue(rebuilt.getVersion() > route.getVersion());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void emptyRouteFailsFast() {
+        ServiceRoute.of("demo", null, FIRST).select();
+    }
+
+    private static ProviderService provider(String serverIp) {
+        ProviderService providerService = new ProviderService();
+        providerService.setServerIp(serverIp);
+        providerService.setServerPort(8801);
+        providerService.setWeight(1);
+        return providerService;
+    }
+}
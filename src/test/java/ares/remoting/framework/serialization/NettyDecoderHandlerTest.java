@@ -0,0 +1,81 @@
+package ares.remoting.framework.serialization;
+
+import ares.remoting.framework.model.AresRequest;
+import ares.remoting.framework.serialization.common.SerializeType;
+import ares.remoting.framework.serialization.engine.SerializerEngine;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 解码端报文长度校验
+ *
+ * @version $Id$
+ */
+public class NettyDecoderHandlerTest {
+
+    private static final SerializeType SERIALIZE_TYPE = SerializeType.HessianSerializer;
+
+    @Test
+    public void decodeFrameSplitAcrossReads() {
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyDecoderHandler(AresRequest.class, SERIALIZE_TYPE));
+        ByteBuf frame = frame(request("a"));
+
+        channel.writeInbound(frame.readRetainedSlice(3));
+        assertNull(channel.readInbound());
+        channel.writeInbound(frame);
+        AresRequest request = channel.readInbound();
+        assertEquals("a", request.getUniqueKey());
+    }
+
+    @Test
+    public void oversizeFrameClosesChannel() {
+        ByteBuf small = frame(request("b"));
+        int maxFrameLength = small.readableBytes() - 4;
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyDecoderHandler(AresRequest.class, SERIALIZE_TYPE, maxFrameLength));
+        long rejected = rejected();
+
+        //只到达超长报文的长度头即拒绝,不等待报文体
+        ByteBuf large = frame(request("bbbbbbbbbbbbbbbb"));
+        channel.writeInbound(large.readRetainedSlice(4));
+
+        assertNull(channel.readInbound());
+        assertFalse(channel.isActive());
+        assertEquals(rejected + 1, rejected());
+        large.release();
+        small.release();
+    }
+
+    @Test
+    public void negativeLengthClosesChannel() {
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyDecoderHandler(AresRequest.class, SERIALIZE_TYPE));
+        long rejected = rejected();
+
+        channel.writeInbound(Unpooled.buffer().writeInt(-1).writeInt(0));
+
+        assertNull(channel.readInbound());
+        assertFalse(channel.isActive());
+        assertEquals(rejected + 1, rejected());
+    }
+
+    private static long rejected() {
+        Long rejected = NettyDecoderHandler.getRejectedFrames().get("embedded");
+        return rejected == null ? 0 : rejected;
+    }
+
+    private static AresRequest request(String uniqueKey) {
+        AresRequest request = new AresRequest();
+        request.setUniqueKey(uniqueKey);
+        return request;
+    }
+
+    static ByteBuf frame(Object obj) {
+        byte[] data = SerializerEngine.serialize(obj, SERIALIZE_TYPE.getSerializeType());
+        return Unpooled.buffer().writeInt(data.length).writeBytes(data);
+    }
+}
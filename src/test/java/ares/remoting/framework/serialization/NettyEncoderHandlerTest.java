@@ -0,0 +1,49 @@
+package ares.remoting.framework.serialization;
+
+import ares.remoting.framework.model.AresRequest;
+import ares.remoting.framework.serialization.common.SerializeType;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.EncoderException;
+import io.netty.handler.codec.TooLongFrameException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 编码端报文长度校验
+ *
+ * @version $Id$
+ */
+public class NettyEncoderHandlerTest {
+
+    @Test
+    public void encodeWithLengthHeader() {
+        AresRequest request = new AresRequest();
+        request.setUniqueKey("a");
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyEncoderHandler(SerializeType.HessianSerializer));
+
+        channel.writeOutbound(request);
+
+        ByteBuf encoded = channel.readOutbound();
+        assertEquals(NettyDecoderHandlerTest.frame(request), encoded);
+    }
+
+    @Test
+    public void oversizeFrameFailsWrite() {
+        AresRequest request = new AresRequest();
+        request.setUniqueKey("a");
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyEncoderHandler(SerializeType.HessianSerializer, 1));
+
+        try {
+            channel.writeOutbound(request);
+            fail("oversize frame should not be written");
+        } catch (EncoderException e) {
+            assertTrue(e.getCause() instanceof TooLongFrameException);
+        }
+        assertNull(channel.readOutbound());
+    }
+}
@@ -0,0 +1,88 @@
+package ares.remoting.framework.zookeeper;
+
+import ares.remoting.framework.helper.PropertyConfigeHelper;
+import ares.remoting.framework.model.ProviderService;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 注册中心本地快照的写入与读取
+ *
+ * @version $Id$
+ */
+public class LocalRegistrySnapshotTest {
+
+    private final String appKey = "ares-test-" + System.nanoTime();
+
+    @After
+    public void deleteSnapshot() {
+        snapshotFile().delete();
+    }
+
+    @Test
+    public void savedProvidersLoadAsServiceNodes() {
+        LocalRegistrySnapshot snapshot = LocalRegistrySnapshot.of(appKey, "default");
+        List<ProviderService> providers = Lists.newArrayList(provider("10.0.3.1", 8801), provider("10.0.3.2", 8802));
+        snapshot.save(ImmutableMap.<String, List<ProviderService>>of("demo.HelloService", providers));
+
+        Map<String, List<String>> serviceNodeMap = snapshot.load();
+        assertEquals(1, serviceNodeMap.size());
+        assertEquals(Lists.newArrayList("10.0.3.1|8801|2|10|default", "10.0.3.2|8802|2|10|default"),
+                serviceNodeMap.get("demo.HelloService"));
+    }
+
+    @Test
+    public void udsPathIsSavedAsSixthField() {
+        LocalRegistrySnapshot snapshot = LocalRegistrySnapshot.of(appKey, "default");
+        ProviderService provider = provider("10.0.3.1", 8801);
+        provider.setUdsPath("/tmp/ares-8801.sock");
+        snapshot.save(ImmutableMap.<String, List<ProviderService>>of("demo.HelloService", Lists.newArrayList(provider)));
+
+        assertEquals(Lists.newArrayList("10.0.3.1|8801|2|10|default|%2Ftmp%2Fares-8801.sock"),
+                snapshot.load().get("demo.HelloService"));
+    }
+
+    @Test
+    public void missingSnapshotLoadsEmpty() {
+        assertTrue(LocalRegistrySnapshot.of(appKey, "default").load().isEmpty());
+    }
+
+    @Test
+    public void malformedLinesAreSkipped() throws Exception {
+        File file = snapshotFile();
+        file.getParentFile().mkdirs();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write("garbage\ndemo.HelloService\t10.0.3.3|8803|1|10|default\n".getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+
+        Map<String, List<String>> serviceNodeMap = LocalRegistrySnapshot.of(appKey, "default").load();
+        assertEquals(Lists.newArrayList("10.0.3.3|8803|1|10|default"), serviceNodeMap.get("demo.HelloService"));
+    }
+
+    private File snapshotFile() {
+        return new File(PropertyConfigeHelper.getRegistrySnapshotDir(), "ares-registry-" + appKey + "-default.snapshot");
+    }
+
+    private static ProviderService provider(String serverIp, int serverPort) {
+        ProviderService providerService = new ProviderService();
+        providerService.setServerIp(serverIp);
+        providerService.setServerPort(serverPort);
+        providerService.setWeight(2);
+        providerService.setWorkerThreads(10);
+        providerService.setGroupName("default");
+        return providerService;
+    }
+}
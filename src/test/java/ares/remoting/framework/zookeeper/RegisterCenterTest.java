@@ -0,0 +1,123 @@
+package ares.remoting.framework.zookeeper;
+
+import ares.remoting.framework.model.ProviderService;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * 消费端服务提供者列表：按端点差异增量刷新，整体替换不可变快照
+ *
+ * @version $Id$
+ */
+public class RegisterCenterTest {
+
+    private final RegisterCenter registerCenter = RegisterCenter.singleton();
+
+    @Test
+    public void unchangedProvidersAreRetained() {
+        String serviceKey = Runnable.class.getName();
+        RecordingListener listener = subscribe(serviceKey);
+        registerCenter.refreshServiceMetaDataMap(serviceKey, Lists.newArrayList("127.0.0.1|1|1|10|default", "127.0.0.1|2|1|10|default"));
+        List<ProviderService> providers = providers(serviceKey);
+        assertEquals(2, listener.added.size());
+
+        registerCenter.refreshServiceMetaDataMap(serviceKey, Lists.newArrayList("127.0.0.1|2|1|10|default", "127.0.0.1|1|1|10|default"));
+        //无变化不替换快照、不通知
+        assertSame(providers, providers(serviceKey));
+        assertEquals(1, listener.notified);
+
+        registerCenter.refreshServiceMetaDataMap(serviceKey, Lists.newArrayList("127.0.0.1|2|1|10|default", "127.0.0.1|3|1|10|default"));
+        List<ProviderService> refreshed = providers(serviceKey);
+        assertEquals(2, refreshed.size());
+        assertSame(providers.get(1), refreshed.get(0));
+        assertEquals(3, refreshed.get(1).getServerPort());
+        assertEquals(1, listener.removed.get(0).getServerPort());
+        assertEquals(3, listener.added.get(0).getServerPort());
+    }
+
+    @Test
+    public void snapshotIsImmutable() {
+        String serviceKey = Comparable.class.getName();
+        registerCenter.refreshServiceMetaDataMap(serviceKey, Lists.newArrayList("127.0.0.1|1|1|10|default"));
+        try {
+            providers(serviceKey).clear();
+            fail("provider list snapshot should be immutable");
+        } catch (UnsupportedOperationException expected) {
+        }
+        try {
+            registerCenter.getServiceMetaDataMap4Consume().remove(serviceKey);
+            fail("service map snapshot should be immutable");
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+
+    @Test
+    public void emptyNodeListKeepsLastProviders() {
+        String serviceKey = Cloneable.class.getName();
+        registerCenter.refreshServiceMetaDataMap(serviceKey, Lists.newArrayList("127.0.0.1|1|1|10|default"));
+        List<ProviderService> providers = providers(serviceKey);
+
+        registerCenter.refreshServiceMetaDataMap(serviceKey, Collections.<String>emptyList());
+        assertSame(providers, providers(serviceKey));
+    }
+
+    @Test
+    public void changedWeightOrUdsPathReplacesProvider() {
+        String serviceKey = Iterable.class.getName();
+        RecordingListener listener = subscribe(serviceKey);
+        registerCenter.refreshServiceMetaDataMap(serviceKey, Lists.newArrayList("127.0.0.1|1|1|10|default"));
+
+        registerCenter.refreshServiceMetaDataMap(serviceKey, Lists.newArrayList("127.0.0.1|1|5|10|default"));
+        assertEquals(1, listener.removed.get(0).getWeight());
+        assertEquals(5, listener.added.get(0).getWeight());
+
+        registerCenter.refreshServiceMetaDataMap(serviceKey, Lists.newArrayList("127.0.0.1|1|5|10|default|%2Ftmp%2Fares-1.sock"));
+        assertEquals("/tmp/ares-1.sock", listener.added.get(0).getUdsPath());
+        assertEquals(1, providers(serviceKey).size());
+        assertEquals("/tmp/ares-1.sock", providers(serviceKey).get(0).getUdsPath());
+        assertEquals(3, listener.notified);
+    }
+
+    private List<ProviderService> providers(String serviceKey) {
+        return registerCenter.getServiceMetaDataMap4Consume().get(serviceKey);
+    }
+
+    private RecordingListener subscribe(String serviceKey) {
+        RecordingListener listener = new RecordingListener(serviceKey);
+        registerCenter.subscribeProviderChange(listener);
+        return listener;
+    }
+
+    /**
+     * 记录某个服务最近一次变更通知
+     */
+    static class RecordingListener implements ProviderChangeListener {
+
+        private final String serviceKey;
+        int notified = 0;
+        List<ProviderService> added = Collections.emptyList();
+        List<ProviderService> removed = Collections.emptyList();
+
+        RecordingListener(String serviceKey) {
+            this.serviceKey = serviceKey;
+        }
+
+        @Override
+        public void onProviderChange(String serviceKey, List<ProviderService> providerServices,
+                                     List<ProviderService> addedProviders, List<ProviderService> removedProviders) {
+            if (!this.serviceKey.equals(serviceKey)) {
+                return;
+            }
+            notified++;
+            added = addedProviders;
+            removed = removedProviders;
+        }
+    }
+}